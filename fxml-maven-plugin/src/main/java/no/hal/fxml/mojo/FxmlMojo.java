@@ -1,9 +1,11 @@
 package no.hal.fxml.mojo;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -12,8 +14,11 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import no.hal.fxml.model.FxmlCode.Document;
 import no.hal.fxml.model.JavaCode;
 import no.hal.fxml.model.QName;
+import no.hal.fxml.parser.FxmlBinaryFormat;
+import no.hal.fxml.parser.FxmlParser;
 import no.hal.fxml.translator.FxLoaderProviderGenerator;
 import no.hal.fxml.translator.FxmlTranslator;
 import no.hal.fxml.translator.FxmlTranslator.FxmlTranslation;
@@ -33,6 +38,17 @@ public class FxmlMojo extends AbstractMojo {
     @Parameter(required = true, readonly = true)
     String fxLoaderProviderClass;
 
+    // whether to also write the parsed documents in the binary format, as .fxmlb files, for loading without parsing xml
+    @Parameter(defaultValue = "false")
+    boolean writeBinaryFxml;
+
+    @Parameter(defaultValue = "${project.build.outputDirectory}")
+    File binaryFxmlDirectory;
+
+    // whether to build the content of tabs, titled panes and invisible nodes when first shown, rather than when loaded
+    @Parameter(defaultValue = "false")
+    boolean lazySubtrees;
+
     public void execute() throws MojoExecutionException, MojoFailureException {
         try {
             Path source = basedir.toPath().resolve(resourceDirectory.toPath());
@@ -40,10 +56,17 @@ public class FxmlMojo extends AbstractMojo {
             if (! Files.isDirectory(source)) {
                 throw new IllegalArgumentException("sourceDirectory %s isn't a directory".formatted(sourceDirectory));
             }
-            var translations = Files.find(source, Integer.MAX_VALUE, (path, attributes) -> path.getFileName().toString().endsWith(".fxml"))
-                .map(path -> translateFxml(source, path, target))
-                .filter(Objects::nonNull)
-                .toList();
+            FxmlTranslator.Config config = new FxmlTranslator.Config().withLazySubtrees(lazySubtrees);
+            List<FxmlTranslation> translations = new ArrayList<>();
+            for (var parsed : FxmlParser.parseFxmlTree(source)) {
+                if (parsed.exception() != null) {
+                    throw new RuntimeException("Failed parsing " + parsed.path(), parsed.exception());
+                }
+                translations.add(FxmlTranslator.translateDocument(source, parsed.path(), parsed.document(), target, config));
+                if (writeBinaryFxml) {
+                    writeBinaryFxml(source.relativize(parsed.path()), parsed.document());
+                }
+            }
             var providerClass = new FxLoaderProviderGenerator().generateFxLoaderProvider(QName.valueOf(fxLoaderProviderClass), translations);
             var javaSource = JavaCode.toJavaSource(new JavaCode.CompilationUnit(new JavaCode.Comment("// generated"), providerClass));
             var javaPath = target.resolve(providerClass.className().toString().replace(".", "/") + ".java");
@@ -53,11 +76,9 @@ public class FxmlMojo extends AbstractMojo {
         }
     }
 
-    private FxmlTranslation translateFxml(Path basePath, Path fxmlPath, Path outputFolder) {
-        try {
-            return FxmlTranslator.translateFile(basePath, fxmlPath, outputFolder);
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
-        }
+    private void writeBinaryFxml(Path resourcePath, Document document) throws IOException {
+        var binaryPath = binaryFxmlDirectory.toPath().resolve(resourcePath.toString().replace(".fxml", FxmlBinaryFormat.FILE_EXTENSION));
+        Files.createDirectories(binaryPath.getParent());
+        FxmlBinaryFormat.write(document, binaryPath);
     }
 }
@@ -1,22 +1,36 @@
 package no.hal.fxml.runtime;
 
 import java.util.Map;
+import java.util.function.Function;
 
 public abstract class AbstractFxControllerHelper<C> {
             
-    private final Map<String, Object> namespace;
+    private final Function<String, Object> fxmlObjects;
     protected final C controller;
     
-    protected AbstractFxControllerHelper(Map<String, Object> namespace, C controller) {
-        this.namespace = namespace;
+    private AbstractFxControllerHelper(Function<String, Object> fxmlObjects, C controller) {
+        this.fxmlObjects = fxmlObjects;
         this.controller = controller;
     }
 
+    protected AbstractFxControllerHelper(Map<String, Object> namespace, C controller) {
+        this(namespace::get, controller);
+    }
+
+    // gets the objects from the loader, so generated loaders needn't fill the namespace
+    protected AbstractFxControllerHelper(FxLoader<?, ?> fxLoader, C controller) {
+        this(fxLoader::getFxmlObject, controller);
+    }
+
     //
 
     public <T> T getFxmlObject(String id) {
-        return (T) namespace.get(id);
+        return (T) fxmlObjects.apply(id);
     }
 
     public abstract void initializeController();
+
+    // overridden by generated helpers, to inject the objects again, when lazy subtrees are built
+    public void injectFxmlObjects() {
+    }
 }
@@ -1,19 +1,23 @@
 package no.hal.fxml.runtime;
 
+import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.scene.Node;
 
 public abstract class AbstractFxLoader<N extends Node, C> implements FxLoader<N, C> {
             
-    private Map<String, Object> namespace = new HashMap<>();
+    // created when first needed, since generated loaders keep the objects with fx:id in fields, see putFxmlObjects
+    private Map<String, Object> namespace = null;
     
     public AbstractFxLoader() {
     }
 
     public AbstractFxLoader(Map<String, Object> mappings) {
-        namespace.putAll(mappings);
+        namespace = new HashMap<>(mappings);
     }
 
     private N root = null;
@@ -37,11 +41,32 @@ public abstract class AbstractFxLoader<N extends Node, C> implements FxLoader<N,
 
     //
 
+    // filled with the fields of generated loaders, each time it's asked for
     @Override
     public Map<String, Object> getNamespace() {
+        if (namespace == null) {
+            namespace = new HashMap<>();
+        }
+        putFxmlObjects(namespace);
         return namespace;
     }
 
+    // overridden by generated loaders, to put the objects kept in fields
+    protected void putFxmlObjects(Map<String, Object> namespace) {
+    }
+
+    protected void putFxmlObject(Map<String, Object> namespace, String id, Object fxmlObject) {
+        if (fxmlObject != null) {
+            namespace.put(id, fxmlObject);
+        }
+    }
+
+    // overridden by generated loaders, to get the objects kept in fields, without creating the namespace
+    @Override
+    public <T> T getFxmlObject(String id) {
+        return (namespace != null ? (T) namespace.get(id) : null);
+    }
+
     @Override
     public N load(FxLoaderContext fxLoaderContext) {
         N node = build(fxLoaderContext);
@@ -63,4 +88,39 @@ public abstract class AbstractFxLoader<N extends Node, C> implements FxLoader<N,
 
     protected void initializeController() {
     }
+
+    // overridden by generated loaders with a controller, to inject the objects of subtrees built after loading
+    protected void injectFxmlObjects() {
+    }
+
+    // builds a deferred subtree the first time the condition is true, e.g. when a tab is selected,
+    // used by generated loaders for lazy subtrees
+    protected void buildWhen(ObservableValue<Boolean> condition, Runnable builder) {
+        if (Boolean.TRUE.equals(condition.getValue())) {
+            builder.run();
+            return;
+        }
+        condition.addListener(new ChangeListener<Boolean>() {
+            @Override
+            public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue) {
+                if (Boolean.TRUE.equals(newValue)) {
+                    observable.removeListener(this);
+                    builder.run();
+                    // when loading, the controller is initialized afterwards
+                    if (controller != null) {
+                        injectFxmlObjects();
+                    }
+                }
+            }
+        });
+    }
+
+    //
+
+    // the external form of a resource's url, or null if it's missing,
+    // used by generated loaders for @ locations, which are resolved into constants when translating
+    protected static String getResourceLocation(Class<?> loaderClass, String resourceName) {
+        URL url = loaderClass.getResource(resourceName);
+        return (url != null ? url.toExternalForm() : null);
+    }
 }
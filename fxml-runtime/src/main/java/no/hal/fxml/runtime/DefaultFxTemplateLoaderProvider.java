@@ -0,0 +1,26 @@
+package no.hal.fxml.runtime;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class DefaultFxTemplateLoaderProvider implements FxTemplateLoaderProvider {
+
+    protected Map<List<String>, Function<Map<String, Object>, FxLoader<?, ?>>> fxLoaderMap = new HashMap<>();
+
+    public DefaultFxTemplateLoaderProvider(Map<List<String>, Function<Map<String, Object>, FxLoader<?, ?>>> fxLoaderMap) {
+        this.fxLoaderMap.putAll(fxLoaderMap);
+    }
+
+    @Override
+    public boolean hasFxLoader(List<String> fragments) {
+        return this.fxLoaderMap.containsKey(fragments);
+    }
+
+    @Override
+    public FxLoader<?, ?> getFxLoader(List<String> fragments, Map<String, Object> namespace) {
+        var fxLoaderFactory = this.fxLoaderMap.get(fragments);
+        return (fxLoaderFactory != null ? fxLoaderFactory.apply(namespace) : null);
+    }
+}
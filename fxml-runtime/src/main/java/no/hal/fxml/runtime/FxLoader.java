@@ -22,5 +22,10 @@ public interface FxLoader<N extends Node, C> {
         return (T) getNamespace().get(id);
     }
 
+    // converts the object to the given type, e.g. when the namespace is provided by a string template
+    public default <T> T getFxmlObject(String id, Class<T> type) {
+        return (T) FxmlCoercion.coerce(getFxmlObject(id), type);
+    }
+
     public N load(FxLoaderContext fxLoaderContext);
 }
@@ -0,0 +1,15 @@
+package no.hal.fxml.runtime;
+
+import java.util.List;
+import java.util.Map;
+
+// provides loaders generated at compile-time for string templates, registered with ServiceLoader
+public interface FxTemplateLoaderProvider {
+    // a loader for the template with the given fragments, with the slot values in the namespace, or null
+    FxLoader<?, ?> getFxLoader(List<String> fragments, Map<String, Object> namespace);
+
+    // whether there is a loader for the template, without creating one
+    default boolean hasFxLoader(List<String> fragments) {
+        return getFxLoader(fragments, Map.of()) != null;
+    }
+}
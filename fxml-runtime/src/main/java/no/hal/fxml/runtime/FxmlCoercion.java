@@ -0,0 +1,102 @@
+package no.hal.fxml.runtime;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+
+// converts values to the type of the property they are assigned to, like FXMLLoader does
+public class FxmlCoercion {
+
+    private FxmlCoercion() {
+    }
+
+    private static final Map<Class<?>, Class<?>> wrapperClasses = Map.of(
+        boolean.class, Boolean.class,
+        char.class, Character.class,
+        byte.class, Byte.class,
+        short.class, Short.class,
+        int.class, Integer.class,
+        long.class, Long.class,
+        float.class, Float.class,
+        double.class, Double.class
+    );
+
+    private static final ClassValue<Method> valueOfMethods = new ClassValue<>() {
+        @Override
+        protected Method computeValue(Class<?> type) {
+            for (var paramType : new Class<?>[]{ String.class, Object.class }) {
+                try {
+                    var method = type.getMethod("valueOf", paramType);
+                    if (Modifier.isStatic(method.getModifiers()) && type.isAssignableFrom(method.getReturnType())) {
+                        return method;
+                    }
+                } catch (NoSuchMethodException e) {
+                    // try next
+                }
+            }
+            return null;
+        }
+    };
+
+    public static Object coerce(Object value, Class<?> type) {
+        if (value == null || type == Object.class) {
+            return value;
+        }
+        if (type.isPrimitive()) {
+            type = wrapperClasses.get(type);
+        }
+        if (type.isInstance(value)) {
+            return value;
+        }
+        if (type == String.class) {
+            return value.toString();
+        }
+        if (value instanceof Number number) {
+            if (type == Double.class) {
+                return number.doubleValue();
+            } else if (type == Integer.class) {
+                return number.intValue();
+            } else if (type == Long.class) {
+                return number.longValue();
+            } else if (type == Float.class) {
+                return number.floatValue();
+            } else if (type == Short.class) {
+                return number.shortValue();
+            } else if (type == Byte.class) {
+                return number.byteValue();
+            }
+        }
+        var stringValue = value.toString();
+        if (type == Character.class && stringValue.length() == 1) {
+            return stringValue.charAt(0);
+        }
+        if (type.isEnum()) {
+            return enumValue(type, stringValue);
+        }
+        var valueOf = valueOfMethods.get(type);
+        if (valueOf != null) {
+            try {
+                return valueOf.invoke(null, stringValue);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Couldn't convert " + stringValue + " to " + type, e);
+            }
+        }
+        throw new IllegalArgumentException("Couldn't convert " + value + " to " + type);
+    }
+
+    private static Object enumValue(Class<?> type, String name) {
+        for (var constant : type.getEnumConstants()) {
+            if (((Enum<?>) constant).name().equals(name)) {
+                return constant;
+            }
+        }
+        // FXMLLoader also accepts camel case, e.g. topLeft for TOP_LEFT
+        var upperCaseName = name.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase();
+        for (var constant : type.getEnumConstants()) {
+            if (((Enum<?>) constant).name().equals(upperCaseName)) {
+                return constant;
+            }
+        }
+        throw new IllegalArgumentException("No " + name + " constant in " + type);
+    }
+}
@@ -0,0 +1,820 @@
+package no.hal.fxml.templateprocessor;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+import javafx.beans.property.Property;
+import javafx.beans.value.ObservableValue;
+import javafx.event.Event;
+import javafx.event.EventHandler;
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import no.hal.fxml.model.FxmlCode.BeanProperty;
+import no.hal.fxml.model.FxmlCode.Define;
+import no.hal.fxml.model.FxmlCode.Document;
+import no.hal.fxml.model.FxmlCode.FxmlElement;
+import no.hal.fxml.model.FxmlCode.Include;
+import no.hal.fxml.model.FxmlCode.InstanceElement;
+import no.hal.fxml.model.FxmlCode.InstantiationElement;
+import no.hal.fxml.model.FxmlCode.PropertyElement;
+import no.hal.fxml.model.FxmlCode.PropertyValue;
+import no.hal.fxml.model.FxmlCode.Reference;
+import no.hal.fxml.model.FxmlCode.Root;
+import no.hal.fxml.model.FxmlCode.StaticProperty;
+import no.hal.fxml.model.Instantiation;
+import no.hal.fxml.model.QName;
+import no.hal.fxml.model.ValueExpression;
+import no.hal.fxml.runtime.FxmlCoercion;
+import no.hal.fxml.translator.ClassResolver;
+import no.hal.fxml.translator.ReflectionHelper;
+
+// builds objects from an FxmlCode document, with classes, constructors and setters resolved and constants coerced up front
+public class FxmlBuildPlan {
+
+    // steps providing an instance
+    sealed interface InstanceStep permits Instantiate, IdInstance, SlotInstance {
+    }
+
+    record Instantiate(Class<?> type, Creator creator, String id, Method idSetter, List<PropertyStep> properties) implements InstanceStep {
+    }
+
+    // fx:reference and $id
+    record IdInstance(String id) implements InstanceStep {
+    }
+
+    record SlotInstance(int slot) implements InstanceStep {
+    }
+
+    // ways of creating an instance
+    sealed interface Creator permits ConstructorCreator, MethodCreator, ConstantCreator {
+    }
+
+    record ConstructorCreator(Constructor<?> constructor, List<ValueStep> args) implements Creator {
+    }
+
+    // fx:factory and fx:value
+    record MethodCreator(Method method, Object arg) implements Creator {
+    }
+
+    // fx:constant, String fx:value
+    record ConstantCreator(Object value) implements Creator {
+    }
+
+    // steps providing a value
+    sealed interface ValueStep permits ConstantValue, IdValue, SlotValue, InstanceValue, ControllerMethodValue {
+    }
+
+    record ConstantValue(Object value) implements ValueStep {
+    }
+
+    record IdValue(String id, Class<?> type) implements ValueStep {
+    }
+
+    record SlotValue(int slot, Class<?> type) implements ValueStep {
+    }
+
+    record InstanceValue(InstanceStep instance, Class<?> type) implements ValueStep {
+    }
+
+    record ControllerMethodValue(String methodName) implements ValueStep {
+    }
+
+    // steps applying a value to an instance
+    sealed interface PropertyStep permits SetProperty, AddToList, PutInMap, SetStaticProperty, SlotAttributes, DefineInstances {
+    }
+
+    record SetProperty(Method setter, ValueStep value) implements PropertyStep {
+    }
+
+    record AddToList(Method getter, ValueStep value) implements PropertyStep {
+    }
+
+    record PutInMap(String key, ValueStep value) implements PropertyStep {
+    }
+
+    record SetStaticProperty(Method setter, ValueStep value) implements PropertyStep {
+    }
+
+    // Map of attributes, which are only known when building
+    record SlotAttributes(int slot) implements PropertyStep {
+    }
+
+    record DefineInstances(List<InstanceStep> instances) implements PropertyStep {
+    }
+
+    //
+
+    private final ClassLoader classLoader;
+    private final List<InstanceStep> roots;
+    // the root that provides the result, the others are defined with fx:define
+    private final InstanceStep result;
+    private final List<String> ids;
+    private final Class<?> controllerClass;
+
+    private FxmlBuildPlan(ClassLoader classLoader, List<InstanceStep> roots, InstanceStep result, List<String> ids, Class<?> controllerClass) {
+        this.classLoader = classLoader;
+        this.roots = roots;
+        this.result = result;
+        this.ids = ids;
+        this.controllerClass = controllerClass;
+    }
+
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    private static class Compiler {
+
+        private final ClassResolver classResolver;
+        private final ReflectionHelper reflectionHelper = new ReflectionHelper();
+        private final ToIntFunction<String> slotIndex;
+        private final List<String> ids = new ArrayList<>();
+
+        Compiler(ClassLoader classLoader, Document document, ToIntFunction<String> slotIndex) {
+            this.classResolver = new ClassResolver(classLoader, document.imports());
+            this.slotIndex = slotIndex;
+        }
+
+        private Class<?> resolve(QName className) {
+            var clazz = classResolver.resolve(className);
+            if (clazz == null) {
+                throw new IllegalArgumentException("Couldn't resolve class: " + className);
+            }
+            return clazz;
+        }
+
+        InstanceStep instanceStep(InstanceElement instanceElement) {
+            return switch (instanceElement) {
+                case InstantiationElement instantiationElement -> instantiate(instantiationElement);
+                case Reference(String source) -> {
+                    int slot = slotIndex.applyAsInt(source);
+                    yield (slot >= 0 ? new SlotInstance(slot) : new IdInstance(source));
+                }
+                case Include include -> throw new UnsupportedOperationException("Unsupported element: " + include.toShortString());
+                case Root root -> throw new UnsupportedOperationException("Unsupported element: " + root.toShortString());
+            };
+        }
+
+        private Instantiate instantiate(InstantiationElement instantiationElement) {
+            var type = resolve(instantiationElement.className());
+            var remainingChildren = new ArrayList<>(instantiationElement.children());
+            Creator creator = switch (instantiationElement.instantiation()) {
+                case Instantiation.Constructor _ -> reflectionHelper.getNoArgsConstructor(type)
+                    .<Creator>map(constructor -> new ConstructorCreator(constructor, List.of()))
+                    .orElseGet(() -> namedArgsCreator(type, remainingChildren));
+                case Instantiation.Factory(String methodName) -> new MethodCreator(getMethod(type, methodName), null);
+                case Instantiation.Value(String valueString) -> (type == String.class
+                    ? new ConstantCreator(valueString)
+                    : new MethodCreator(getValueOfMethod(type), valueString)
+                );
+                case Instantiation.Constant(String constantName) -> new ConstantCreator(getConstant(type, constantName));
+            };
+            if (instantiationElement.id() != null) {
+                ids.add(instantiationElement.id());
+            }
+            Method idSetter = (instantiationElement.id() != null ? reflectionHelper.getSetter(type, "id").orElse(null) : null);
+            return new Instantiate(type, creator, instantiationElement.id(), idSetter, propertySteps(type, remainingChildren));
+        }
+
+        private Creator namedArgsCreator(Class<?> type, List<FxmlElement> children) {
+            var constructor = reflectionHelper.getNamedArgsConstructor(type)
+                .orElseThrow(() -> new IllegalArgumentException("Couldn't create instance of " + type));
+            var namedArgs = reflectionHelper.getNamedConstructorArgs(constructor);
+            Map<String, ValueStep> argSteps = new HashMap<>();
+            // prefill with default values, that may be overwritten
+            for (var namedArg : namedArgs.values()) {
+                if (! namedArg.defaultValue().isBlank()) {
+                    argSteps.put(namedArg.name(), new ConstantValue(FxmlCoercion.coerce(namedArg.defaultValue(), namedArg.type())));
+                }
+            }
+            for (var child : List.copyOf(children)) {
+                if (child instanceof BeanProperty beanProperty && namedArgs.containsKey(beanProperty.propertyName())) {
+                    var valueSteps = valueSteps(beanProperty, namedArgs.get(beanProperty.propertyName()).type());
+                    if (valueSteps.size() != 1) {
+                        throw new IllegalArgumentException("Property should only have one value: " + beanProperty);
+                    }
+                    argSteps.put(beanProperty.propertyName(), valueSteps.getFirst());
+                    children.remove(child);
+                }
+            }
+            if (namedArgs.size() > argSteps.size()) {
+                var missingProperties = new ArrayList<>(namedArgs.keySet());
+                missingProperties.removeAll(argSteps.keySet());
+                throw new IllegalArgumentException("Missing properties: " + missingProperties);
+            }
+            return new ConstructorCreator(constructor, namedArgs.keySet().stream().map(argSteps::get).toList());
+        }
+
+        private Method getMethod(Class<?> type, String methodName) {
+            try {
+                return type.getMethod(methodName);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("No " + methodName + " method in " + type, e);
+            }
+        }
+
+        private Method getValueOfMethod(Class<?> type) {
+            return reflectionHelper.getMethod(type, "valueOf", reflectionHelper.singleMethodParamTest(String.class))
+                .or(() -> reflectionHelper.getMethod(type, "valueOf", reflectionHelper.singleMethodParamTest(Object.class)))
+                .filter(method -> Modifier.isStatic(method.getModifiers()))
+                .orElseThrow(() -> new IllegalArgumentException("No valueOf method in " + type));
+        }
+
+        private Object getConstant(Class<?> type, String constantName) {
+            try {
+                return type.getField(constantName).get(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("No " + constantName + " constant in " + type, e);
+            }
+        }
+
+        private List<PropertyStep> propertySteps(Class<?> beanClass, Iterable<? extends FxmlElement> children) {
+            Optional<String> defaultProperty = reflectionHelper.getDefaultProperty(beanClass);
+            List<PropertyStep> propertySteps = new ArrayList<>();
+            for (var child : children) {
+                switch (child) {
+                    case PropertyValue(String propertyName, ValueExpression.IdReference(String source))
+                        when propertyName.equals(source) && slotIndex.applyAsInt(source) >= 0 ->
+                        propertySteps.add(new SlotAttributes(slotIndex.applyAsInt(source)));
+                    case StaticProperty staticProperty -> propertySteps.add(staticPropertyStep(staticProperty));
+                    case BeanProperty beanProperty -> propertySteps.addAll(propertySteps(beanClass, beanProperty));
+                    case InstanceElement instanceElement -> propertySteps.addAll(propertySteps(beanClass,
+                        new PropertyElement(defaultProperty.orElseThrow(() -> new IllegalArgumentException("No default property for " + beanClass)), instanceElement)
+                    ));
+                    case Define define -> propertySteps.add(new DefineInstances(define.children().stream().map(this::instanceStep).toList()));
+                    default -> throw new IllegalArgumentException("Unsupported element: " + child.toShortString());
+                }
+            }
+            return propertySteps;
+        }
+
+        private List<PropertyStep> propertySteps(Class<?> beanClass, BeanProperty property) {
+            var setter = reflectionHelper.getSetter(beanClass, property.propertyName());
+            if (setter.isPresent()) {
+                return valueSteps(property, setter.get().getParameterTypes()[0]).stream()
+                    .<PropertyStep>map(valueStep -> new SetProperty(setter.get(), valueStep))
+                    .toList();
+            }
+            var getter = reflectionHelper.getGetter(beanClass, property.propertyName())
+                .filter(method -> reflectionHelper.implementsList(method.getReturnType()));
+            if (getter.isPresent()) {
+                return valueSteps(property, Object.class).stream()
+                    .<PropertyStep>map(valueStep -> new AddToList(getter.get(), valueStep))
+                    .toList();
+            }
+            if (reflectionHelper.implementsMap(beanClass)) {
+                return valueSteps(property, Object.class).stream()
+                    .<PropertyStep>map(valueStep -> new PutInMap(property.propertyName(), valueStep))
+                    .toList();
+            }
+            throw new IllegalArgumentException("No property access for " + property.propertyName() + " of " + beanClass);
+        }
+
+        private PropertyStep staticPropertyStep(StaticProperty staticProperty) {
+            var ownerClass = resolve(QName.valueOf(staticProperty.className()));
+            var setterName = methodName("set", staticProperty.propertyName());
+            var setter = reflectionHelper.getMethod(ownerClass, setterName, exec -> ((Method) exec).getParameterCount() == 2)
+                .filter(method -> Modifier.isStatic(method.getModifiers()))
+                .orElseThrow(() -> new IllegalArgumentException("No static property " + staticProperty.propertyName() + " of " + ownerClass));
+            return new SetStaticProperty(setter, valueStep(staticProperty.value(), setter.getParameterTypes()[1]));
+        }
+
+        private List<ValueStep> valueSteps(BeanProperty property, Class<?> type) {
+            return switch (property) {
+                case PropertyElement propertyElement -> propertyElement.children().stream()
+                    .<ValueStep>map(child -> new InstanceValue(instanceStep(child), type))
+                    .toList();
+                case PropertyValue propertyValue -> List.of(valueStep(propertyValue.value(), type));
+                case StaticProperty staticProperty -> throw new IllegalArgumentException("Unexpected static property: " + staticProperty);
+            };
+        }
+
+        private ValueStep valueStep(ValueExpression valueExpression, Class<?> type) {
+            return switch (valueExpression) {
+                case ValueExpression.String(String value) -> new ConstantValue(FxmlCoercion.coerce(value, type));
+                case ValueExpression.IdReference(String source) -> {
+                    int slot = slotIndex.applyAsInt(source);
+                    yield (slot >= 0 ? new SlotValue(slot, type) : new IdValue(source, type));
+                }
+                case ValueExpression.MethodReference(String methodName) -> new ControllerMethodValue(methodName);
+                case ValueExpression.Binding binding -> throw new UnsupportedOperationException("Unsupported expression: " + binding.toShortString());
+                case ValueExpression.Location location -> throw new UnsupportedOperationException("Unsupported expression: " + location.toShortString());
+            };
+        }
+    }
+
+    public static FxmlBuildPlan compile(Document document, ClassLoader classLoader, ToIntFunction<String> slotIndex) {
+        return compile(document, List.of(document.instanceElement()), classLoader, slotIndex);
+    }
+
+    // compiles the content of the document's root element, rather than the root element itself
+    public static FxmlBuildPlan compileContent(Document document, ClassLoader classLoader, ToIntFunction<String> slotIndex) {
+        if (! (document.instanceElement() instanceof InstantiationElement rootElement)) {
+            throw new IllegalArgumentException("Unsupported root element: " + document.instanceElement().toShortString());
+        }
+        return compile(document, rootElement.children(), classLoader, slotIndex);
+    }
+
+    private static FxmlBuildPlan compile(Document document, List<? extends FxmlElement> elements, ClassLoader classLoader, ToIntFunction<String> slotIndex) {
+        var compiler = new Compiler(classLoader, document, slotIndex);
+        List<InstanceStep> roots = new ArrayList<>();
+        InstanceStep result = null;
+        for (var element : elements) {
+            switch (element) {
+                case InstanceElement instanceElement -> {
+                    var root = compiler.instanceStep(instanceElement);
+                    roots.add(root);
+                    if (result == null) {
+                        result = root;
+                    }
+                }
+                case Define define -> define.children().forEach(child -> roots.add(compiler.instanceStep(child)));
+                default -> throw new IllegalArgumentException("Unsupported element: " + element.toShortString());
+            }
+        }
+        Class<?> controllerClass = null;
+        if (document.controllerClassName() != null) {
+            controllerClass = compiler.resolve(document.controllerClassName());
+        }
+        if (result == null) {
+            throw new IllegalArgumentException("No instance element");
+        }
+        return new FxmlBuildPlan(classLoader, List.copyOf(roots), result, List.copyOf(compiler.ids), controllerClass);
+    }
+
+    //
+
+    // where a slot value ended up, so it can be replaced without rebuilding
+    public sealed interface SlotBinding permits SetterBinding, StaticSetterBinding, ListBinding, MapBinding, AttributesBinding {
+    }
+
+    record SetterBinding(Object instance, Method setter) implements SlotBinding {
+    }
+
+    record StaticSetterBinding(Object instance, Method setter) implements SlotBinding {
+    }
+
+    // offset is the number of elements before the slot's elements, that aren't provided by other slots
+    record ListBinding(List<Object> list, int offset) implements SlotBinding {
+    }
+
+    record MapBinding(Map<Object, Object> map, String key) implements SlotBinding {
+    }
+
+    record AttributesBinding(Object instance) implements SlotBinding {
+    }
+
+    private record BuildContext(List<?> values, Map<String, Object> namespace, Object controller, Map<Integer, SlotBinding> slotBindings,
+        // number of list elements provided by slots, for computing ListBinding offsets
+        Map<List<?>, Integer> slotElementCounts) {
+
+        void bind(ValueStep value, SlotBinding slotBinding) {
+            if (slotBindings != null) {
+                switch (value) {
+                    case SlotValue(int slot, Class<?> _) -> slotBindings.put(slot, slotBinding);
+                    case InstanceValue(SlotInstance(int slot), Class<?> _) -> slotBindings.put(slot, slotBinding);
+                    default -> {}
+                }
+            }
+        }
+    }
+
+    // builds all the roots, and returns the first one that isn't defined with fx:define
+    public Object build(List<?> values, Map<String, Object> namespace, Object controller) {
+        return build(values, namespace, controller, null);
+    }
+
+    // builds like above, and records in slotBindings where slot values are used as property values or list elements
+    public Object build(List<?> values, Map<String, Object> namespace, Object controller, Map<Integer, SlotBinding> slotBindings) {
+        if (controller == null && controllerClass != null) {
+            controller = newInstance(controllerClass);
+        }
+        var context = new BuildContext(values, namespace, controller, slotBindings, (slotBindings != null ? new IdentityHashMap<>() : null));
+        Object resultInstance = null;
+        for (var root : roots) {
+            var instance = build(root, context);
+            if (root == result) {
+                resultInstance = instance;
+            }
+        }
+        if (resultInstance instanceof Collection<?> col && result instanceof SlotInstance(int slot)) {
+            if (col.isEmpty()) {
+                throw new IllegalArgumentException("The root is an empty collection, given for slot " + slot);
+            }
+            resultInstance = col.iterator().next();
+        }
+        if (controller != null) {
+            initializeController(controller, namespace);
+        }
+        return resultInstance;
+    }
+
+    private Object build(InstanceStep step, BuildContext context) {
+        return switch (step) {
+            case Instantiate(Class<?> type, Creator creator, String id, Method idSetter, List<PropertyStep> properties) -> {
+                var instance = create(creator, context);
+                if (id != null) {
+                    context.namespace().put(id, instance);
+                    if (idSetter != null) {
+                        invoke(idSetter, instance, id);
+                    }
+                }
+                for (var property : properties) {
+                    apply(instance, property, context);
+                }
+                yield instance;
+            }
+            case IdInstance(String id) -> lookup(id, context);
+            case SlotInstance(int slot) -> context.values().get(slot);
+        };
+    }
+
+    private Object create(Creator creator, BuildContext context) {
+        return switch (creator) {
+            case ConstructorCreator(Constructor<?> constructor, List<ValueStep> args) -> {
+                Object[] argValues = new Object[args.size()];
+                for (int i = 0; i < argValues.length; i++) {
+                    argValues[i] = value(args.get(i), context);
+                }
+                yield newInstance(constructor, argValues);
+            }
+            case MethodCreator(Method method, Object arg) -> (arg != null ? invoke(method, null, arg) : invoke(method, null));
+            case ConstantCreator(Object value) -> value;
+        };
+    }
+
+    private Object lookup(String id, BuildContext context) {
+        if (! context.namespace().containsKey(id)) {
+            throw new IllegalArgumentException("Unknown id: " + id);
+        }
+        return context.namespace().get(id);
+    }
+
+    private Object value(ValueStep step, BuildContext context) {
+        return switch (step) {
+            case ConstantValue(Object value) -> value;
+            case IdValue(String id, Class<?> type) -> FxmlCoercion.coerce(lookup(id, context), type);
+            case SlotValue(int slot, Class<?> type) -> FxmlCoercion.coerce(context.values().get(slot), type);
+            case InstanceValue(InstanceStep instance, Class<?> type) -> FxmlCoercion.coerce(build(instance, context), type);
+            case ControllerMethodValue(String methodName) -> controllerMethodHandler(context.controller(), methodName);
+        };
+    }
+
+    private void apply(Object instance, PropertyStep step, BuildContext context) {
+        switch (step) {
+            case SetProperty(Method setter, ValueStep value) -> {
+                context.bind(value, new SetterBinding(instance, setter));
+                if (value instanceof SlotValue(int slot, Class<?> _)) {
+                    setOrBind(instance, setter, context.values().get(slot));
+                } else {
+                    invoke(setter, instance, value(value, context));
+                }
+            }
+            case AddToList(Method getter, ValueStep value) -> {
+                List<Object> list = uncheckedCast(invoke(getter, instance));
+                var element = value(value, context);
+                if (value instanceof InstanceValue(SlotInstance _, Class<?> _)) {
+                    if (context.slotBindings() != null) {
+                        int slotElementCount = context.slotElementCounts().getOrDefault(list, 0);
+                        context.bind(value, new ListBinding(list, list.size() - slotElementCount));
+                        context.slotElementCounts().put(list, slotElementCount + elements(element).size());
+                    }
+                    // collections in element position are expanded
+                    list.addAll(elements(element));
+                } else {
+                    list.add(element);
+                }
+            }
+            case PutInMap(String key, ValueStep value) -> {
+                Map<Object, Object> map = uncheckedCast(instance);
+                context.bind(value, new MapBinding(map, key));
+                map.put(key, value(value, context));
+            }
+            case SetStaticProperty(Method setter, ValueStep value) -> {
+                context.bind(value, new StaticSetterBinding(instance, setter));
+                invoke(setter, null, instance, value(value, context));
+            }
+            case SlotAttributes(int slot) -> {
+                if (context.slotBindings() != null) {
+                    context.slotBindings().put(slot, new AttributesBinding(instance));
+                }
+                if (! (context.values().get(slot) instanceof Map<?, ?> attributes)) {
+                    throw new IllegalArgumentException("Only Map values are supported in ATTRIBUTE position");
+                }
+                for (var entry : attributes.entrySet()) {
+                    setProperty(instance, entry.getKey().toString(), entry.getValue());
+                }
+            }
+            case DefineInstances(List<InstanceStep> instances) -> instances.forEach(defined -> build(defined, context));
+        }
+    }
+
+    //
+
+    private static List<?> elements(Object value) {
+        return switch (value) {
+            case List<?> list -> list;
+            case Collection<?> col -> List.copyOf(col);
+            case null -> List.of();
+            default -> List.of(value);
+        };
+    }
+
+    // the position of a slot's elements, after the slots before it have been updated
+    private static int listPosition(Map<Integer, SlotBinding> slotBindings, int slot, ListBinding listBinding, List<?> newValues) {
+        int pos = listBinding.offset();
+        for (int otherSlot = 0; otherSlot < slot; otherSlot++) {
+            if (slotBindings.get(otherSlot) instanceof ListBinding other && other.list() == listBinding.list()) {
+                pos += elements(newValues.get(otherSlot)).size();
+            }
+        }
+        return pos;
+    }
+
+    private static boolean canUpdate(SlotBinding slotBinding, Object oldValue, Object newValue) {
+        return switch (slotBinding) {
+            case null -> false;
+            case SetterBinding _, StaticSetterBinding _, MapBinding _ -> true;
+            case ListBinding _ -> true;
+            // properties can be changed, but not unset
+            case AttributesBinding _ -> oldValue instanceof Map<?, ?> oldMap && newValue instanceof Map<?, ?> newMap && newMap.keySet().containsAll(oldMap.keySet());
+        };
+    }
+
+    private static void update(SlotBinding slotBinding, Object oldValue, Object newValue, int listPosition) {
+        switch (slotBinding) {
+            case SetterBinding(Object instance, Method setter) -> {
+                unbind(instance, setter, oldValue);
+                setOrBind(instance, setter, newValue);
+            }
+            case StaticSetterBinding(Object instance, Method setter) -> invoke(setter, null, instance, FxmlCoercion.coerce(newValue, setter.getParameterTypes()[1]));
+            case ListBinding(List<Object> list, int _) -> {
+                if (newValue instanceof KeyedList<?, ?> newKeyedList && oldValue instanceof KeyedList<?, ?> oldKeyedList) {
+                    newKeyedList.reconcile(oldKeyedList, list, listPosition);
+                } else {
+                    list.subList(listPosition, listPosition + elements(oldValue).size()).clear();
+                    list.addAll(listPosition, elements(newValue));
+                }
+            }
+            case MapBinding(Map<Object, Object> map, String key) -> map.put(key, newValue);
+            case AttributesBinding(Object instance) -> {
+                var oldMap = (Map<?, ?>) oldValue;
+                for (var entry : ((Map<?, ?>) newValue).entrySet()) {
+                    if (! Objects.equals(entry.getValue(), oldMap.get(entry.getKey()))) {
+                        setProperty(instance, entry.getKey().toString(), entry.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    // applies the slots that have changed to what was built, using the slot bindings recorded when building
+    // returns false without changing anything, if some changed slot isn't bound and a rebuild is needed
+    public static boolean update(Map<Integer, SlotBinding> slotBindings, List<?> oldValues, List<?> newValues) {
+        if (oldValues.size() != newValues.size()) {
+            return false;
+        }
+        List<Integer> changedSlots = new ArrayList<>();
+        for (int slot = 0; slot < newValues.size(); slot++) {
+            var oldValue = oldValues.get(slot);
+            var newValue = newValues.get(slot);
+            if (! Objects.equals(oldValue, newValue)) {
+                if (! canUpdate(slotBindings.get(slot), oldValue, newValue)) {
+                    return false;
+                }
+                changedSlots.add(slot);
+            }
+        }
+        // in slot order, so list positions can be computed from the new values of the slots before
+        for (int slot : changedSlots) {
+            var slotBinding = slotBindings.get(slot);
+            int listPosition = (slotBinding instanceof ListBinding listBinding ? listPosition(slotBindings, slot, listBinding, newValues) : -1);
+            update(slotBinding, oldValues.get(slot), newValues.get(slot), listPosition);
+        }
+        return true;
+    }
+
+    //
+
+    private static String methodName(String prefix, String propertyName) {
+        return prefix + Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
+    }
+
+    // the values of getters and the values given to setOrBind, that are known to be lists, maps or properties of objects
+    @SuppressWarnings("unchecked")
+    private static <T> T uncheckedCast(Object value) {
+        return (T) value;
+    }
+
+    // methods by property name, per class, so the cache doesn't keep classes and their class loaders reachable
+    private static ClassValue<Map<String, Optional<Method>>> propertyMethods() {
+        return new ClassValue<>() {
+            @Override
+            protected Map<String, Optional<Method>> computeValue(Class<?> beanClass) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+    }
+
+    private final static ClassValue<Map<String, Optional<Method>>> setters = propertyMethods();
+    private final static ClassValue<Map<String, Optional<Method>>> listGetters = propertyMethods();
+
+    private static Optional<Method> findMethod(Class<?> beanClass, String methodName, int paramCount) {
+        for (var method : beanClass.getMethods()) {
+            if (method.getName().equals(methodName) && method.getParameterCount() == paramCount && (! Modifier.isStatic(method.getModifiers()))) {
+                return Optional.of(method);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private final static ClassValue<Map<String, Optional<Method>>> propertyGetters = propertyMethods();
+
+    // the JavaFX property that the setter sets, e.g. textProperty() for setText, or null if there is none
+    private static Property<Object> property(Object instance, Method setter) {
+        var setterName = setter.getName();
+        var beanClass = instance.getClass();
+        var propertyName = Character.toLowerCase(setterName.charAt(3)) + setterName.substring(4);
+        var propertyGetter = propertyGetters.get(beanClass).computeIfAbsent(propertyName, name -> findMethod(beanClass, name + "Property", 0)
+            .filter(method -> Property.class.isAssignableFrom(method.getReturnType())));
+        return (propertyGetter.isPresent() ? uncheckedCast(invoke(propertyGetter.get(), instance)) : null);
+    }
+
+    // an ObservableValue, that isn't itself a valid property value, is bound to the property instead of set,
+    // bidirectionally if it's a Property with values of the right type, otherwise one-way, with values coerced if needed
+    // without a JavaFX property, the current value is set
+    private static void setOrBind(Object instance, Method setter, Object value) {
+        var type = setter.getParameterTypes()[0];
+        if (value instanceof ObservableValue<?> observable && (! type.isInstance(value))) {
+            var property = property(instance, setter);
+            var currentValue = observable.getValue();
+            if (property == null) {
+                value = currentValue;
+            } else if (FxmlCoercion.coerce(currentValue, type) != currentValue) {
+                property.bind(observable.map(observableValue -> FxmlCoercion.coerce(observableValue, type)));
+                return;
+            } else if (observable instanceof Property<?> observableProperty) {
+                property.bindBidirectional(uncheckedCast(observableProperty));
+                return;
+            } else {
+                property.bind(observable);
+                return;
+            }
+        }
+        invoke(setter, instance, FxmlCoercion.coerce(value, type));
+    }
+
+    // undoes the binding made by setOrBind for the old value
+    private static void unbind(Object instance, Method setter, Object oldValue) {
+        if (oldValue instanceof ObservableValue<?> && (! setter.getParameterTypes()[0].isInstance(oldValue))) {
+            var property = property(instance, setter);
+            if (property != null) {
+                if (oldValue instanceof Property<?> oldProperty) {
+                    property.unbindBidirectional(uncheckedCast(oldProperty));
+                }
+                property.unbind();
+            }
+        }
+    }
+
+    // sets a property, given its name, used for attributes that aren't known up front
+    static void setProperty(Object instance, String propertyName, Object value) {
+        var beanClass = instance.getClass();
+        var setter = setters.get(beanClass).computeIfAbsent(propertyName, name -> findMethod(beanClass, methodName("set", name), 1));
+        if (setter.isPresent()) {
+            invoke(setter.get(), instance, FxmlCoercion.coerce(value, setter.get().getParameterTypes()[0]));
+            return;
+        }
+        var getter = listGetters.get(beanClass).computeIfAbsent(propertyName, name -> findMethod(beanClass, methodName("get", name), 0)
+            .filter(method -> List.class.isAssignableFrom(method.getReturnType())));
+        if (getter.isPresent()) {
+            List<Object> list = uncheckedCast(invoke(getter.get(), instance));
+            list.add(value);
+        } else if (instance instanceof Map<?, ?> map) {
+            Map<Object, Object> objectMap = uncheckedCast(map);
+            objectMap.put(propertyName, value);
+        } else {
+            throw new IllegalArgumentException("No property access for " + propertyName + " of " + instance.getClass());
+        }
+    }
+
+    //
+
+    private static final ClassValue<Map<String, Method>> controllerMethods = new ClassValue<>() {
+        @Override
+        protected Map<String, Method> computeValue(Class<?> controllerClass) {
+            Map<String, Method> methods = new HashMap<>();
+            for (var clazz = controllerClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+                for (var method : clazz.getDeclaredMethods()) {
+                    if ((method.isAnnotationPresent(FXML.class) || Modifier.isPublic(method.getModifiers()))
+                        && method.getParameterCount() <= 1 && (! methods.containsKey(method.getName()))) {
+                        method.setAccessible(true);
+                        methods.put(method.getName(), method);
+                    }
+                }
+            }
+            return methods;
+        }
+    };
+
+    private static final ClassValue<Map<String, Field>> controllerFields = new ClassValue<>() {
+        @Override
+        protected Map<String, Field> computeValue(Class<?> controllerClass) {
+            Map<String, Field> fields = new HashMap<>();
+            for (var clazz = controllerClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+                for (var field : clazz.getDeclaredFields()) {
+                    if ((field.isAnnotationPresent(FXML.class) || Modifier.isPublic(field.getModifiers()))
+                        && (! Modifier.isStatic(field.getModifiers())) && (! fields.containsKey(field.getName()))) {
+                        field.setAccessible(true);
+                        fields.put(field.getName(), field);
+                    }
+                }
+            }
+            return fields;
+        }
+    };
+
+    private static EventHandler<Event> controllerMethodHandler(Object controller, String methodName) {
+        if (controller == null) {
+            throw new IllegalStateException("No controller for #" + methodName);
+        }
+        var method = controllerMethods.get(controller.getClass()).get(methodName);
+        if (method == null) {
+            throw new IllegalArgumentException("No " + methodName + " method in " + controller.getClass());
+        }
+        return (method.getParameterCount() == 1
+            ? event -> invoke(method, controller, event)
+            : event -> invoke(method, controller)
+        );
+    }
+
+    private void initializeController(Object controller, Map<String, Object> namespace) {
+        var fields = controllerFields.get(controller.getClass());
+        for (var id : ids) {
+            var field = fields.get(id);
+            if (field != null) {
+                try {
+                    field.set(controller, namespace.get(id));
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        // like FXMLLoader, without a location or resources
+        if (controller instanceof Initializable initializable) {
+            initializable.initialize(null, null);
+            return;
+        }
+        var initialize = controllerMethods.get(controller.getClass()).get("initialize");
+        if (initialize != null && initialize.getParameterCount() == 0) {
+            invoke(initialize, controller);
+        }
+    }
+
+    //
+
+    private static Object newInstance(Class<?> clazz) {
+        try {
+            return newInstance(clazz.getConstructor());
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("No no-args constructor in " + clazz, e);
+        }
+    }
+
+    private static Object newInstance(Constructor<?> constructor, Object... args) {
+        try {
+            return constructor.newInstance(args);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package no.hal.fxml.templateprocessor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import javafx.scene.Node;
+import no.hal.fxml.model.JavaCode;
+import no.hal.fxml.model.JavaCode.ClassDeclaration;
+import no.hal.fxml.model.QName;
+import no.hal.fxml.runtime.AbstractFxLoader;
+import no.hal.fxml.runtime.FxLoader;
+
+// compiles generated loader classes in memory, and defines them as hidden classes in this package,
+// so they can be unloaded when no longer used
+public class FxmlHiddenClassCompiler {
+
+    private FxmlHiddenClassCompiler() {
+    }
+
+    private static final AtomicInteger classCount = new AtomicInteger();
+
+    // a unique name for a class to compile, hidden classes must be in the package of the lookup class
+    public static QName newClassName(String prefix) {
+        return new QName(FxmlHiddenClassCompiler.class.getPackageName(), prefix + classCount.getAndIncrement());
+    }
+
+    private static String classPath() {
+        Set<String> classPath = new LinkedHashSet<>(List.of(System.getProperty("java.class.path").split(File.pathSeparator)));
+        // in case the class path is provided otherwise, e.g. by a manifest
+        for (var clazz : List.of(FxmlHiddenClassCompiler.class, AbstractFxLoader.class, Node.class)) {
+            try {
+                classPath.add(Path.of(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+            } catch (Exception e) {
+                // not a file
+            }
+        }
+        return String.join(File.pathSeparator, classPath);
+    }
+
+    private static class ClassFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+        private final Map<String, ByteArrayOutputStream> classBytes = new HashMap<>();
+
+        ClassFileManager(JavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return classBytes.computeIfAbsent(className, _ -> new ByteArrayOutputStream());
+                }
+            };
+        }
+    }
+
+    // compiles the class to bytecode, the class must not have nested classes
+    static byte[] compileClass(ClassDeclaration classDeclaration) {
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new UnsupportedOperationException("No java compiler available");
+        }
+        var className = classDeclaration.className().toString();
+        var source = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return JavaCode.toJavaSource(classDeclaration);
+            }
+        };
+        var fileManager = new ClassFileManager(compiler.getStandardFileManager(null, null, null));
+        var diagnostics = new StringWriter();
+        var success = compiler.getTask(diagnostics, fileManager, null, List.of("-classpath", classPath(), "-proc:none", "-g:none"), null, List.of(source)).call();
+        if (! success) {
+            throw new IllegalArgumentException("Compiling " + className + " failed: " + diagnostics);
+        }
+        if (fileManager.classBytes.size() != 1) {
+            throw new UnsupportedOperationException("Nested classes are not supported: " + fileManager.classBytes.keySet());
+        }
+        return fileManager.classBytes.get(className).toByteArray();
+    }
+
+    // compiles the loader class, with a constructor taking the namespace, and returns a factory for its instances
+    public static Function<Map<String, Object>, FxLoader<?, ?>> compileLoader(ClassDeclaration classDeclaration) throws Exception {
+        var bytes = compileClass(classDeclaration);
+        var hiddenLookup = MethodHandles.lookup().defineHiddenClass(bytes, false);
+        MethodHandle constructor = hiddenLookup.findConstructor(hiddenLookup.lookupClass(), MethodType.methodType(void.class, Map.class));
+        return namespace -> {
+            try {
+                return (FxLoader<?, ?>) constructor.invoke(namespace);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,63 @@
+package no.hal.fxml.templateprocessor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javafx.fxml.FXMLLoader;
+
+// FXMLLoaders configured like a prototype, that are reset after each use, so nothing is retained between invocations
+// a loader is used by one thread at a time, while the pool itself is lock-free, so it may be shared by many (virtual) threads
+class FxmlLoaderPool {
+
+    private final FXMLLoader prototype;
+    private final int maxIdle;
+
+    private final Queue<FXMLLoader> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    FxmlLoaderPool(FXMLLoader prototype, int maxIdle) {
+        this.prototype = prototype;
+        this.maxIdle = maxIdle;
+    }
+
+    FXMLLoader getPrototype() {
+        return prototype;
+    }
+
+    private FXMLLoader createLoader() {
+        var fxmlLoader = new FXMLLoader(prototype.getLocation(), prototype.getResources(), prototype.getBuilderFactory(),
+            prototype.getControllerFactory(), prototype.getCharset());
+        fxmlLoader.setClassLoader(prototype.getClassLoader());
+        return fxmlLoader;
+    }
+
+    // a loader with an empty namespace, except for the entries of the prototype's namespace
+    FXMLLoader acquire() {
+        var fxmlLoader = idle.poll();
+        if (fxmlLoader != null) {
+            idleCount.decrementAndGet();
+        } else {
+            fxmlLoader = createLoader();
+        }
+        fxmlLoader.getNamespace().putAll(prototype.getNamespace());
+        fxmlLoader.setController(prototype.getController());
+        return fxmlLoader;
+    }
+
+    // forgets everything from the last load, and makes the loader available for reuse
+    void release(FXMLLoader fxmlLoader) {
+        fxmlLoader.setRoot(null);
+        fxmlLoader.setController(null);
+        fxmlLoader.getNamespace().clear();
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(fxmlLoader);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    int getIdleCount() {
+        return idleCount.get();
+    }
+}
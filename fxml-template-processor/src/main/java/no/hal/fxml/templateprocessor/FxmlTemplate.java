@@ -0,0 +1,215 @@
+package no.hal.fxml.templateprocessor;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import javafx.beans.value.ObservableValue;
+import no.hal.fxml.model.FlatDocument;
+import no.hal.fxml.model.FxmlCode.Document;
+import no.hal.fxml.parser.FxmlParser;
+import no.hal.fxml.runtime.FxLoader;
+import no.hal.fxml.runtime.FxTemplateLoaderProvider;
+import no.hal.fxml.translator.FxmlTemplateTranslator;
+import no.hal.fxml.translator.FxmlTemplateTranslator.SlotKind;
+
+// the compiled form of the fragments of a string template, shared by all uses of the same call site
+public class FxmlTemplate {
+
+    private final List<String> fragments;
+    private final List<SlotKind> slotKinds;
+
+    // the complete fxml, valid as long as no slot value changes the markup (attribute maps and collections)
+    private final String fxml;
+
+    private FxmlTemplate(List<String> fragments) {
+        this.fragments = List.copyOf(fragments);
+        this.slotKinds = FxmlTemplateTranslator.slotKinds(this.fragments);
+        this.fxml = (slotKinds.contains(SlotKind.ATTRIBUTE) ? null : fxml(null, null));
+    }
+
+    public static FxmlTemplate compile(List<String> fragments) {
+        return new FxmlTemplate(fragments);
+    }
+
+    public List<String> getFragments() {
+        return fragments;
+    }
+
+    public List<SlotKind> getSlotKinds() {
+        return slotKinds;
+    }
+
+    public int getSlotCount() {
+        return slotKinds.size();
+    }
+
+    public static String slotName(int slot) {
+        return FxmlTemplateTranslator.slotName(slot);
+    }
+
+    boolean changesMarkup(List<?> values) {
+        for (int i = 0; i < slotKinds.size(); i++) {
+            if (slotKinds.get(i) != SlotKind.ATTRIBUTE_VALUE && values.get(i) instanceof Collection) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // whether some attribute value is an ObservableValue, that must be bound rather than set
+    boolean bindsValues(List<?> values) {
+        for (int i = 0; i < slotKinds.size(); i++) {
+            if (slotKinds.get(i) == SlotKind.ATTRIBUTE_VALUE && values.get(i) instanceof ObservableValue) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // binds the values in the namespace and returns the corresponding fxml
+    public String fxml(List<?> values, Map<String, Object> namespace) {
+        if (values != null && fxml != null && (! changesMarkup(values))) {
+            for (int i = 0; i < values.size(); i++) {
+                namespace.put(slotName(i), values.get(i));
+            }
+            return fxml;
+        }
+        StringBuilder builder = new StringBuilder(FxmlTemplateTranslator.FXML_PREFIX);
+        for (int i = 0; i < slotKinds.size(); i++) {
+            builder.append(fragments.get(i));
+            var value = (values != null ? values.get(i) : null);
+            switch (slotKinds.get(i)) {
+                case ATTRIBUTE_VALUE -> {
+                    appendVariable(builder, "$", slotName(i), "", value, namespace);
+                }
+                case ATTRIBUTE -> {
+                    if (value instanceof Map<?, ?> map) {
+                        for (var entry : map.entrySet()) {
+                            var attributeName = entry.getKey().toString();
+                            builder.append(" ");
+                            builder.append(attributeName);
+                            appendVariable(builder, "=\"$", slotName(i) + "_" + attributeName, "\"", entry.getValue(), namespace);
+                        }
+                    } else {
+                        throw new IllegalArgumentException("Only Map values are supported in ATTRIBUTE position");
+                    }
+                }
+                case ELEMENT -> {
+                    if (value instanceof Collection<?> col) {
+                        int num = 0;
+                        for (var val : col) {
+                            appendVariable(builder, "<fx:reference source=\"", slotName(i) + "_" + num++, "\"/>", val, namespace);
+                        }
+                    } else {
+                        appendVariable(builder, "<fx:reference source=\"", slotName(i), "\"/>", value, namespace);
+                    }
+                }
+            }
+        }
+        builder.append(fragments.getLast());
+        builder.append(FxmlTemplateTranslator.FXML_SUFFIX);
+        return builder.toString();
+    }
+
+    // the fxml used for building from the model, where slots are id references that are resolved when building
+    String modelFxml() {
+        return FxmlTemplateTranslator.modelFxml(fragments, slotKinds);
+    }
+
+    // the slot for a name created by slotName, or -1 if it isn't a slot name
+    public int slotIndex(String name) {
+        return FxmlTemplateTranslator.slotIndex(name, slotKinds.size());
+    }
+
+    // the document and build plan are computed lazily, racing threads may compute them more than once, but will get equivalent results
+    // templates are kept in the cache, so the document is kept in the compact flattened form
+    private volatile FlatDocument document;
+
+    public Document getDocument() {
+        var flat = document;
+        if (flat == null) {
+            try {
+                Document parsed = FxmlParser.parseFxml(modelFxml());
+                document = FlatDocument.of(parsed);
+                return parsed;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return flat.toDocument();
+    }
+
+    private volatile FxmlBuildPlan buildPlan;
+
+    // the build plan for the given class loader, the last one is kept since the class loader seldom changes
+    public FxmlBuildPlan getBuildPlan(ClassLoader classLoader) {
+        var plan = buildPlan;
+        if (plan == null || plan.getClassLoader() != classLoader) {
+            plan = FxmlBuildPlan.compileContent(getDocument(), classLoader, this::slotIndex);
+            buildPlan = plan;
+        }
+        return plan;
+    }
+
+    private record ClassLoaderTieredCompilation(ClassLoader classLoader, TieredCompilation tieredCompilation) {
+    }
+
+    private volatile ClassLoaderTieredCompilation tieredCompilation;
+
+    // the tiered compilation for the given class loader, the last one is kept, like the build plan
+    public synchronized TieredCompilation getTieredCompilation(ClassLoader classLoader, int threshold) {
+        var compilation = tieredCompilation;
+        if (compilation == null || compilation.classLoader() != classLoader) {
+            compilation = new ClassLoaderTieredCompilation(classLoader, new TieredCompilation(() ->
+                FxmlTemplateTranslator.translateTemplate(fragments, FxmlHiddenClassCompiler.newClassName("FxmlTemplateLoader"), classLoader), threshold
+            ));
+            tieredCompilation = compilation;
+        }
+        return compilation.tieredCompilation();
+    }
+
+    private record CompiledLoaderProvider(ClassLoader classLoader, FxTemplateLoaderProvider provider) {
+    }
+
+    // the provider of the loader generated by FxmlTemplateCompiler, null provider if the template wasn't compiled
+    private volatile CompiledLoaderProvider compiledLoaderProvider;
+
+    // the providers are searched once per class loader
+    private CompiledLoaderProvider getCompiledLoaderProvider(ClassLoader classLoader) {
+        var compiled = compiledLoaderProvider;
+        if (compiled == null || compiled.classLoader() != classLoader) {
+            FxTemplateLoaderProvider templateProvider = null;
+            for (var provider : ServiceLoader.load(FxTemplateLoaderProvider.class, classLoader)) {
+                if (provider.hasFxLoader(fragments)) {
+                    templateProvider = provider;
+                    break;
+                }
+            }
+            compiled = new CompiledLoaderProvider(classLoader, templateProvider);
+            compiledLoaderProvider = compiled;
+        }
+        return compiled;
+    }
+
+    // whether a loader was generated from this template at compile-time, checked before preparing its namespace
+    public boolean hasCompiledLoader(ClassLoader classLoader) {
+        return getCompiledLoaderProvider(classLoader).provider() != null;
+    }
+
+    // a loader generated from this template at compile-time, with the given namespace, or null if there is none
+    public FxLoader<?, ?> getCompiledLoader(ClassLoader classLoader, Map<String, Object> namespace) {
+        var provider = getCompiledLoaderProvider(classLoader).provider();
+        return (provider != null ? provider.getFxLoader(fragments, namespace) : null);
+    }
+
+    private void appendVariable(StringBuilder builder, String prefix, String varName, String suffix, Object value, Map<String, Object> namespace) {
+        builder.append(prefix);
+        builder.append(varName);
+        builder.append(suffix);
+        if (namespace != null) {
+            namespace.put(varName, value);
+        }
+    }
+}
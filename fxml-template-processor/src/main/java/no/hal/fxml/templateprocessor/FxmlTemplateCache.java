@@ -0,0 +1,67 @@
+package no.hal.fxml.templateprocessor;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// bounded, least-recently-used cache of compiled templates, keyed by the fragments of the string template
+public class FxmlTemplateCache {
+
+    public record Stats(long hits, long misses, long evictions, int size) {
+    }
+
+    private final int maxSize;
+
+    private final Map<List<String>, FxmlTemplate> templates;
+
+    private long hits = 0, misses = 0, evictions = 0;
+
+    public FxmlTemplateCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.templates = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, FxmlTemplate> eldest) {
+                if (size() > FxmlTemplateCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public FxmlTemplate get(List<String> fragments) {
+        synchronized (this) {
+            var template = templates.get(fragments);
+            if (template != null) {
+                hits++;
+                return template;
+            }
+            misses++;
+        }
+        // compile outside the lock, if another thread wins the race, its template is used
+        var compiled = FxmlTemplate.compile(fragments);
+        synchronized (this) {
+            var template = templates.putIfAbsent(compiled.getFragments(), compiled);
+            return (template != null ? template : compiled);
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, templates.size());
+    }
+
+    public synchronized void clear() {
+        templates.clear();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+}
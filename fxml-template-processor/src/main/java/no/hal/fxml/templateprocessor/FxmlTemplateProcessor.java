@@ -2,118 +2,192 @@ package no.hal.fxml.templateprocessor;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.Collection;
+import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.layout.Pane;
+import no.hal.fxml.runtime.DefaultFxLoaderContext;
+import no.hal.fxml.templateprocessor.FxmlBuildPlan.SlotBinding;
 
+// may be shared and used concurrently, e.g. to build node graphs on (virtual) background threads,
+// as long as the prototype FXMLLoader isn't modified meanwhile
 public class FxmlTemplateProcessor implements StringTemplate.Processor<Node, RuntimeException> {
 
-    private static final String FXML_PREFIX = """
-    <?xml version="1.0" encoding="UTF-8"?>
-    
-    <?import javafx.stage.*?>
-    <?import javafx.scene.*?>
-    <?import javafx.scene.control.*?>
-    <?import javafx.scene.layout.*?>
-    <?import javafx.scene.paint.*?>
-    <?import javafx.scene.shape.*?>
+    private static final FxmlTemplateCache TEMPLATE_CACHE = new FxmlTemplateCache(256);
 
-    <Pane xmlns:fx="http://javafx.com/fxml">
-    """;
+    public static FxmlTemplateCache getTemplateCache() {
+        return TEMPLATE_CACHE;
+    }
 
-    private static final String FXML_SUFFIX = """
+    // how nodes are built from the template
+    public enum Engine {
+        // generates fxml text that is loaded by an FXMLLoader
+        FXML_LOADER,
+        // builds directly from the parsed FxmlCode model of the template, the FXMLLoader only provides controller, class loader and namespace
+        FXML_MODEL,
+        // builds from the model until the template has been used TIERED_COMPILE_THRESHOLD times,
+        // then compiles it into a loader in the background, see TieredCompilation
+        TIERED
+    }
 
-    </Pane>
-    """;
+    public static final int TIERED_COMPILE_THRESHOLD = 100;
 
+    private final Engine engine;
+    // the loader provided by the user is only used as a prototype, each invocation loads with a pooled copy
     private final FXMLLoader fxmlLoader;
+    private final FxmlLoaderPool loaderPool;
+    private final FxmlTemplateCache templateCache;
 
-    private FxmlTemplateProcessor(FXMLLoader fxmlLoader) {
+    private FxmlTemplateProcessor(Engine engine, FXMLLoader fxmlLoader, FxmlTemplateCache templateCache) {
+        this.engine = engine;
         this.fxmlLoader = fxmlLoader;
+        this.loaderPool = new FxmlLoaderPool(fxmlLoader, Runtime.getRuntime().availableProcessors());
+        this.templateCache = templateCache;
+    }
+
+    private FxmlTemplateProcessor(FXMLLoader fxmlLoader, FxmlTemplateCache templateCache) {
+        this(Engine.FXML_LOADER, fxmlLoader, templateCache);
+    }
+
+    private FxmlTemplateProcessor(FXMLLoader fxmlLoader) {
+        this(fxmlLoader, TEMPLATE_CACHE);
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    FxmlTemplate getTemplate(StringTemplate stringTemplate) {
+        return templateCache.get(stringTemplate.fragments());
     }
 
     @Override
     public Node process(StringTemplate stringTemplate) throws RuntimeException {
-        try {
-            var fxml = fxml(stringTemplate.fragments(), stringTemplate.values());
-            //System.out.println(stringTemplate.fragments());
-            //System.out.println(stringTemplate.values());
-            //System.out.println(fxml);
-            //System.out.println(fxmlLoader.getNamespace());
-            Pane wrapper = fxmlLoader.load(new ByteArrayInputStream(fxml.getBytes()));
-            return wrapper.getChildrenUnmodifiable().getFirst();
-        } catch (IOException ioex) {
-            throw new RuntimeException(ioex);
+        var template = getTemplate(stringTemplate);
+        var compiled = loadCompiled(template, stringTemplate.values());
+        if (compiled != null) {
+            return compiled;
         }
+        return switch (engine) {
+            case FXML_LOADER -> load(template, stringTemplate.values());
+            case FXML_MODEL -> build(template, stringTemplate.values(), null);
+            case TIERED -> loadTiered(template, stringTemplate.values());
+        };
+    }
+
+    // processes the template into a node that may later be updated with new values, see RenderedTemplate
+    // this always builds from the model, since that's where it's known which properties and elements each slot provides
+    public RenderedTemplate render(StringTemplate stringTemplate) {
+        return new RenderedTemplate(this, getTemplate(stringTemplate), stringTemplate.values());
     }
 
-    private enum ValueType { ELEMENT, ATTRIBUTE, ATTRIBUTE_VALUE }
-
-    private ValueType valueType(List<String> fragments, int pos) {
-        int quoteCount = 0;
-        for (int i = pos; i >= 0; i--) {
-            var fragment = fragments.get(pos);
-            for (int j = fragment.length() - 1; j >= 0; j--) {
-                char c = fragment.charAt(j);
-                if (c == '\"') {
-                    quoteCount++;
-                } else if (c == '>') {
-                    return ValueType.ELEMENT;
-                } else if (c == '<') {
-                    return quoteCount % 2 == 1 ? ValueType.ATTRIBUTE_VALUE : ValueType.ATTRIBUTE;
-                }
+    Node build(FxmlTemplate template, List<Object> values, Map<Integer, SlotBinding> slotBindings) {
+        return build(template.getBuildPlan(fxmlLoader.getClassLoader()), values, slotBindings);
+    }
+
+    private Node build(FxmlBuildPlan buildPlan, List<?> values, Map<Integer, SlotBinding> slotBindings) {
+        var namespace = new HashMap<>(fxmlLoader.getNamespace());
+        return (Node) buildPlan.build(values, namespace, fxmlLoader.getController(), slotBindings);
+    }
+
+    // batches at least this large are built in parallel
+    public static final int PARALLEL_BATCH_THRESHOLD = 64;
+
+    // processes the template's fragments with each list of values, e.g. to create many rows or cards
+    // the template is compiled (and for FXML_MODEL, its build plan resolved) once for the whole batch,
+    // and large batches are built in parallel in the common fork/join pool, unless there is a shared controller
+    public List<Node> processBatch(StringTemplate stringTemplate, List<? extends List<?>> valuesList) {
+        var template = getTemplate(stringTemplate);
+        for (var values : valuesList) {
+            if (values.size() != template.getSlotCount()) {
+                throw new IllegalArgumentException("Expected " + template.getSlotCount() + " values, but got " + values.size());
             }
         }
-        return ValueType.ELEMENT;
+        Function<List<?>, Node> engineBuilder = switch (engine) {
+            case FXML_LOADER -> values -> load(template, values);
+            case FXML_MODEL -> {
+                var buildPlan = template.getBuildPlan(fxmlLoader.getClassLoader());
+                yield values -> build(buildPlan, values, null);
+            }
+            case TIERED -> values -> loadTiered(template, values);
+        };
+        Function<List<?>, Node> builder = values -> {
+            var compiled = loadCompiled(template, values);
+            return (compiled != null ? compiled : engineBuilder.apply(values));
+        };
+        var parallel = valuesList.size() >= PARALLEL_BATCH_THRESHOLD && fxmlLoader.getController() == null;
+        return (parallel ? valuesList.parallelStream() : valuesList.stream())
+            .<Node>map(builder)
+            .toList();
     }
 
-    private String fxml(List<String> fragments, List<Object> values) {
-        StringBuilder builder = new StringBuilder(FXML_PREFIX);
+    // the prototype's namespace, with the values as slot entries
+    private Map<String, Object> slotNamespace(List<?> values) {
+        Map<String, Object> namespace = new HashMap<>(fxmlLoader.getNamespace());
         for (int i = 0; i < values.size(); i++) {
-            builder.append(fragments.get(i));
-            var value = values.get(i);
-            switch (valueType(fragments, i)) {
-                case ATTRIBUTE_VALUE -> {
-                    appendVariable(builder, "$", "value_" + i, "", value, fxmlLoader.getNamespace());
-                }
-                case ATTRIBUTE -> {
-                    if (value instanceof Map<?, ?> map) {
-                        for (var entry : map.entrySet()) {
-                            var attributeName = entry.getKey().toString();
-                            builder.append(" ");
-                            builder.append(attributeName);
-                            appendVariable(builder, "=\"$", "value_" + i + "_" + attributeName, "\"", entry.getValue(), fxmlLoader.getNamespace());
-                        }
-                    } else {
-                        throw new IllegalArgumentException("Only Map values are supported in ATTRIBUTE position");
-                    }
-                }
-                case ELEMENT -> {
-                    if (value instanceof Collection col) {
-                        int num = 0;
-                        for (var val : col) {
-                            appendVariable(builder, "<fx:reference source=\"", "value_" + i + "_" + num, "\"/>", val, fxmlLoader.getNamespace());
-                        }
-                    } else {
-                        appendVariable(builder, "<fx:reference source=\"", "value_" + i, "\"/>", value, fxmlLoader.getNamespace());
-                    }
-                }
+            namespace.put(FxmlTemplate.slotName(i), values.get(i));
+        }
+        return namespace;
+    }
+
+    // loads with the loader generated by FxmlTemplateCompiler, or returns null if the template wasn't compiled,
+    // or the values require the markup to change or binding, or there is a controller, which the generated loaders don't support
+    // the (cached) provider is checked first, so the namespace is only prepared when the template was compiled
+    private Node loadCompiled(FxmlTemplate template, List<?> values) {
+        if (fxmlLoader.getController() != null || (! template.hasCompiledLoader(fxmlLoader.getClassLoader()))
+            || template.changesMarkup(values) || template.bindsValues(values)) {
+            return null;
+        }
+        var fxLoader = template.getCompiledLoader(fxmlLoader.getClassLoader(), slotNamespace(values));
+        if (fxLoader == null) {
+            return null;
+        }
+        var wrapper = (Pane) fxLoader.load(new DefaultFxLoaderContext(Path.of("")));
+        return wrapper.getChildren().getFirst();
+    }
+
+    // the tiered compilation of the template, e.g. to check its tier or stats, or to compile it up front
+    public TieredCompilation getTieredCompilation(StringTemplate stringTemplate) {
+        return getTemplate(stringTemplate).getTieredCompilation(fxmlLoader.getClassLoader(), TIERED_COMPILE_THRESHOLD);
+    }
+
+    // the values are put in the namespace of the compiled loader, like for loaders compiled by FxmlTemplateCompiler
+    private Node loadTiered(FxmlTemplate template, List<?> values) {
+        if (fxmlLoader.getController() == null && (! template.changesMarkup(values)) && (! template.bindsValues(values))) {
+            Map<String, Object> namespace = slotNamespace(values);
+            var fxLoader = template.getTieredCompilation(fxmlLoader.getClassLoader(), TIERED_COMPILE_THRESHOLD).use(namespace);
+            if (fxLoader != null) {
+                var wrapper = (Pane) fxLoader.load(new DefaultFxLoaderContext(Path.of("")));
+                return wrapper.getChildren().getFirst();
             }
         }
-        builder.append(fragments.getLast());
-        builder.append(FXML_SUFFIX);
-        return builder.toString();
+        return build(template.getBuildPlan(fxmlLoader.getClassLoader()), values, null);
     }
 
-    private void appendVariable(StringBuilder builder, String prefix, String varName, String suffix, Object value, Map<String, Object> namespace) {
-        builder.append(prefix);
-        builder.append(varName);
-        builder.append(suffix);
-        namespace.put(varName, value);
+    private Node load(FxmlTemplate template, List<?> values) {
+        if (template.bindsValues(values)) {
+            // only the model knows which property each slot sets, and thus which property to bind
+            return build(template.getBuildPlan(this.fxmlLoader.getClassLoader()), values, null);
+        }
+        var fxmlLoader = loaderPool.acquire();
+        try {
+            var fxml = template.fxml(values, fxmlLoader.getNamespace());
+            //System.out.println(template.getFragments());
+            //System.out.println(values);
+            //System.out.println(fxml);
+            //System.out.println(fxmlLoader.getNamespace());
+            Pane wrapper = fxmlLoader.load(new ByteArrayInputStream(fxml.getBytes()));
+            return wrapper.getChildrenUnmodifiable().getFirst();
+        } catch (IOException ioex) {
+            throw new RuntimeException(ioex);
+        } finally {
+            loaderPool.release(fxmlLoader);
+        }
     }
 
     //
@@ -122,6 +196,10 @@ public class FxmlTemplateProcessor implements StringTemplate.Processor<Node, Run
         return new FxmlTemplateProcessor(fxmlLoader);
     }
 
+    public static FxmlTemplateProcessor FXML(FXMLLoader fxmlLoader, FxmlTemplateCache templateCache) {
+        return new FxmlTemplateProcessor(fxmlLoader, templateCache);
+    }
+
     public static FxmlTemplateProcessor FXML() {
         return FXML(new FXMLLoader());
     }
@@ -131,4 +209,18 @@ public class FxmlTemplateProcessor implements StringTemplate.Processor<Node, Run
         fxmlLoader.setController(controller);
         return new FxmlTemplateProcessor(fxmlLoader);
     }
+
+    public static FxmlTemplateProcessor FXML(Engine engine, FXMLLoader fxmlLoader) {
+        return new FxmlTemplateProcessor(engine, fxmlLoader, TEMPLATE_CACHE);
+    }
+
+    public static FxmlTemplateProcessor FXML(Engine engine) {
+        return FXML(engine, new FXMLLoader());
+    }
+
+    public static FxmlTemplateProcessor FXML(Engine engine, Object controller) {
+        var fxmlLoader = new FXMLLoader();
+        fxmlLoader.setController(controller);
+        return FXML(engine, fxmlLoader);
+    }
 }
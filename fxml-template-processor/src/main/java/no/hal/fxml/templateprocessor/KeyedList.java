@@ -0,0 +1,171 @@
+package no.hal.fxml.templateprocessor;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import javafx.scene.Node;
+
+// a list of nodes created from items, for an element slot
+// when a RenderedTemplate is updated, the nodes of items with the same key are reused,
+// and the parent's children are patched with as few removals and insertions as possible
+public final class KeyedList<T, K> extends AbstractList<Node> {
+
+    private final List<T> items;
+    private final Function<? super T, ? extends K> keyFn;
+    private final Function<? super T, ? extends Node> nodeFactory;
+    private final BiConsumer<? super T, ? super Node> nodeUpdater;
+
+    // created when needed
+    private final Node[] nodes;
+
+    private KeyedList(List<T> items, Function<? super T, ? extends K> keyFn, Function<? super T, ? extends Node> nodeFactory, BiConsumer<? super T, ? super Node> nodeUpdater) {
+        this.items = List.copyOf(items);
+        this.keyFn = keyFn;
+        this.nodeFactory = nodeFactory;
+        this.nodeUpdater = nodeUpdater;
+        this.nodes = new Node[items.size()];
+    }
+
+    public static <T, K> KeyedList<T, K> of(List<T> items, Function<? super T, ? extends K> keyFn, Function<? super T, ? extends Node> nodeFactory) {
+        return new KeyedList<>(items, keyFn, nodeFactory, null);
+    }
+
+    // nodeUpdater is called when a node is reused for an item that isn't equal to the one it was created for
+    public static <T, K> KeyedList<T, K> of(List<T> items, Function<? super T, ? extends K> keyFn, Function<? super T, ? extends Node> nodeFactory, BiConsumer<? super T, ? super Node> nodeUpdater) {
+        return new KeyedList<>(items, keyFn, nodeFactory, nodeUpdater);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public Node get(int index) {
+        if (nodes[index] == null) {
+            nodes[index] = nodeFactory.apply(items.get(index));
+        }
+        return nodes[index];
+    }
+
+    // the nodes are reconciled, rather than compared, when updating
+    @Override
+    public boolean equals(Object o) {
+        return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    //
+
+    private static <T> Map<Object, Integer> keyIndices(KeyedList<T, ?> keyedList) {
+        Map<Object, Integer> keyIndices = new HashMap<>();
+        for (int i = 0; i < keyedList.items.size(); i++) {
+            var key = keyedList.keyFn.apply(keyedList.items.get(i));
+            if (keyIndices.put(key, i) != null) {
+                throw new IllegalArgumentException("Duplicate key: " + key);
+            }
+        }
+        return keyIndices;
+    }
+
+    // replaces the nodes of the old list, starting at pos in the target list, with this list's nodes
+    void reconcile(KeyedList<?, ?> old, List<Object> target, int pos) {
+        var oldKeyIndices = keyIndices(old);
+        var keyIndices = keyIndices(this);
+        // for each new item, the index of the old item with the same key, or -1
+        int[] oldIndices = new int[items.size()];
+        for (var keyIndex : keyIndices.entrySet()) {
+            int i = keyIndex.getValue();
+            var item = items.get(i);
+            var oldIndex = oldKeyIndices.get(keyIndex.getKey());
+            if (oldIndex != null && old.nodes[oldIndex] != null) {
+                oldIndices[i] = oldIndex;
+                nodes[i] = old.nodes[oldIndex];
+                if (nodeUpdater != null && (! Objects.equals(item, old.items.get(oldIndex)))) {
+                    nodeUpdater.accept(item, nodes[i]);
+                }
+            } else {
+                oldIndices[i] = -1;
+            }
+        }
+        // the reused nodes that are already in the right order stay, all others are removed and (re)inserted
+        boolean[] stays = new boolean[old.size()];
+        for (int oldIndex : longestIncreasingSubsequence(oldIndices)) {
+            stays[oldIndex] = true;
+        }
+        // remove contiguous runs, from the end so positions before are unaffected
+        int runEnd = old.size();
+        for (int oldIndex = old.size() - 1; oldIndex >= -1; oldIndex--) {
+            if (oldIndex < 0 || stays[oldIndex]) {
+                if (oldIndex + 1 < runEnd) {
+                    target.subList(pos + oldIndex + 1, pos + runEnd).clear();
+                }
+                runEnd = oldIndex;
+            }
+        }
+        // insert contiguous runs, in order, so the nodes that stay end up in the right position
+        List<Node> run = new ArrayList<>();
+        for (int i = 0; i <= items.size(); i++) {
+            if (i == items.size() || (oldIndices[i] >= 0 && stays[oldIndices[i]])) {
+                if (! run.isEmpty()) {
+                    target.addAll(pos + i - run.size(), run);
+                    run.clear();
+                }
+            } else {
+                run.add(get(i));
+            }
+        }
+    }
+
+    // the values of the longest increasing subsequence, ignoring negative values
+    static int[] longestIncreasingSubsequence(int[] values) {
+        // tails[k] is the index of the smallest last value of an increasing subsequence of length k + 1
+        int[] tails = new int[values.length];
+        int[] predecessors = new int[values.length];
+        int length = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] < 0) {
+                continue;
+            }
+            int low = 0, high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[tails[mid]] < values[i]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            predecessors[i] = (low > 0 ? tails[low - 1] : -1);
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        int[] result = new int[length];
+        for (int k = length - 1, i = (length > 0 ? tails[length - 1] : -1); k >= 0; k--, i = predecessors[i]) {
+            result[k] = values[i];
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyedList" + Arrays.toString(items.toArray());
+    }
+}
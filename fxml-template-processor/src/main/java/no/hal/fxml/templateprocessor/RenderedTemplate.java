@@ -0,0 +1,77 @@
+package no.hal.fxml.templateprocessor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+import no.hal.fxml.templateprocessor.FxmlBuildPlan.SlotBinding;
+
+// a node built from a template, that may be updated with new values for the same template
+public class RenderedTemplate {
+
+    private final FxmlTemplateProcessor processor;
+
+    private FxmlTemplate template;
+    private List<Object> values;
+    private Map<Integer, SlotBinding> slotBindings;
+    private Node node;
+
+    private int updateCount = 0, rebuildCount = 0;
+
+    RenderedTemplate(FxmlTemplateProcessor processor, FxmlTemplate template, List<Object> values) {
+        this.processor = processor;
+        build(template, values);
+    }
+
+    private void build(FxmlTemplate template, List<Object> values) {
+        this.template = template;
+        this.values = new ArrayList<>(values);
+        this.slotBindings = new HashMap<>();
+        this.node = processor.build(template, values, slotBindings);
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    public int getUpdateCount() {
+        return updateCount;
+    }
+
+    public int getRebuildCount() {
+        return rebuildCount;
+    }
+
+    // applies the values of the string template, values are compared with equals to decide what has changed
+    // for the same template, only changed property values and elements are set, otherwise the node is rebuilt
+    // returns true if the node was updated in place, or false if it was rebuilt,
+    // in which case the new node replaces the old one in its parent, if it's a Pane or Group
+    public boolean update(StringTemplate stringTemplate) {
+        var newValues = stringTemplate.values();
+        if (template.getFragments().equals(stringTemplate.fragments()) && FxmlBuildPlan.update(slotBindings, values, newValues)) {
+            values = new ArrayList<>(newValues);
+            updateCount++;
+            return true;
+        }
+        var oldNode = node;
+        build(processor.getTemplate(stringTemplate), newValues);
+        rebuildCount++;
+        replace(oldNode, node);
+        return false;
+    }
+
+    private static void replace(Node oldNode, Node newNode) {
+        var children = switch (oldNode.getParent()) {
+            case Pane pane -> pane.getChildren();
+            case Group group -> group.getChildren();
+            case null, default -> null;
+        };
+        if (children != null) {
+            children.set(children.indexOf(oldNode), newNode);
+        }
+    }
+}
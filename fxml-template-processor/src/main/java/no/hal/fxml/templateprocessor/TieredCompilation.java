@@ -0,0 +1,89 @@
+package no.hal.fxml.templateprocessor;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import no.hal.fxml.model.JavaCode.ClassDeclaration;
+import no.hal.fxml.runtime.FxLoader;
+
+// the tier of a document or template, which is interpreted (built from the model) until it has been used threshold times,
+// and then translated into a loader class, that is compiled in the background and used from then on
+public class TieredCompilation {
+
+    public enum Tier { INTERPRETED, COMPILING, COMPILED, FAILED }
+
+    public record Stats(Tier tier, long interpretedUses, long compiledUses, long compileNanos, String failure) {
+    }
+
+    // compilation uses javac, which is expensive, so one at a time
+    private static final Executor COMPILER_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "fxml-tiered-compiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Callable<ClassDeclaration> translator;
+    private final int threshold;
+
+    private final AtomicLong interpretedUses = new AtomicLong();
+    private final AtomicLong compiledUses = new AtomicLong();
+
+    private volatile Tier tier = Tier.INTERPRETED;
+    private volatile Function<Map<String, Object>, FxLoader<?, ?>> loaderFactory;
+    private volatile long compileNanos;
+    private volatile String failure;
+    private CompletableFuture<Tier> compilation;
+
+    public TieredCompilation(Callable<ClassDeclaration> translator, int threshold) {
+        this.translator = translator;
+        this.threshold = threshold;
+    }
+
+    public Tier getTier() {
+        return tier;
+    }
+
+    public Stats getStats() {
+        return new Stats(tier, interpretedUses.get(), compiledUses.get(), compileNanos, failure);
+    }
+
+    // a use, returns the compiled loader with the given namespace,
+    // or null if it must be interpreted, and then starts compiling when reaching the threshold
+    public FxLoader<?, ?> use(Map<String, Object> namespace) {
+        var factory = loaderFactory;
+        if (factory != null) {
+            compiledUses.incrementAndGet();
+            return factory.apply(namespace);
+        }
+        if (interpretedUses.incrementAndGet() == threshold) {
+            compile();
+        }
+        return null;
+    }
+
+    // starts compiling, unless already started, and returns the resulting tier when done
+    public synchronized CompletableFuture<Tier> compile() {
+        if (compilation == null) {
+            tier = Tier.COMPILING;
+            compilation = CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                try {
+                    loaderFactory = FxmlHiddenClassCompiler.compileLoader(translator.call());
+                    tier = Tier.COMPILED;
+                } catch (Exception e) {
+                    // stays interpreted
+                    failure = e.toString();
+                    tier = Tier.FAILED;
+                }
+                compileNanos = System.nanoTime() - start;
+                return tier;
+            }, COMPILER_EXECUTOR);
+        }
+        return compilation;
+    }
+}
@@ -0,0 +1,58 @@
+package no.hal.fxml.templateprocessor;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import no.hal.fxml.model.FlatDocument;
+import no.hal.fxml.model.FxmlCode.Document;
+import no.hal.fxml.parser.FxmlBinaryFormat;
+import no.hal.fxml.parser.FxmlParser;
+import no.hal.fxml.runtime.DefaultFxLoaderContext;
+import no.hal.fxml.translator.FxmlTranslator;
+
+// loads fxml that isn't known when building, e.g. fxml supplied at runtime, with tiered compilation:
+// built from the model until loaded threshold times, and then with a loader compiled in the background, see TieredCompilation
+public class TieredFxmlLoader {
+
+    private final FxmlBuildPlan buildPlan;
+    private final TieredCompilation tieredCompilation;
+
+    public TieredFxmlLoader(Document document, ClassLoader classLoader, int threshold) {
+        this.buildPlan = FxmlBuildPlan.compile(document, classLoader, _ -> -1);
+        // the document is only needed if compiled, so it's kept in the compact flattened form until then
+        var flatDocument = FlatDocument.of(document);
+        this.tieredCompilation = new TieredCompilation(() ->
+            FxmlTranslator.translateFxml(flatDocument.toDocument(), FxmlHiddenClassCompiler.newClassName("FxmlDocumentLoader"), classLoader, new FxmlTranslator.Config(false, false, false, true)),
+            threshold
+        );
+    }
+
+    public TieredFxmlLoader(Document document) {
+        this(document, Thread.currentThread().getContextClassLoader(), FxmlTemplateProcessor.TIERED_COMPILE_THRESHOLD);
+    }
+
+    public static TieredFxmlLoader parse(String fxml) throws Exception {
+        return new TieredFxmlLoader(FxmlParser.parseFxml(fxml));
+    }
+
+    // reads an .fxmlb file without parsing xml, or parses an .fxml file
+    public static TieredFxmlLoader read(Path path) throws Exception {
+        return new TieredFxmlLoader(path.toString().endsWith(FxmlBinaryFormat.FILE_EXTENSION) ? FxmlBinaryFormat.read(path) : FxmlParser.parseFxml(path));
+    }
+
+    public TieredCompilation getTieredCompilation() {
+        return tieredCompilation;
+    }
+
+    // loads the document and returns the root, the namespace provides objects for id references, and gets the objects with ids
+    public Object load(Map<String, Object> namespace) {
+        var fxLoader = tieredCompilation.use(namespace);
+        if (fxLoader != null) {
+            var root = fxLoader.load(new DefaultFxLoaderContext(Path.of("")));
+            namespace.putAll(fxLoader.getNamespace());
+            return root;
+        }
+        return buildPlan.build(List.of(), namespace, null);
+    }
+}
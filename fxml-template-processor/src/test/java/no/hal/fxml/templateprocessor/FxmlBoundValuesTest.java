@@ -0,0 +1,78 @@
+package no.hal.fxml.templateprocessor;
+
+import static no.hal.fxml.templateprocessor.FxmlTemplateProcessor.FXML;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.testfx.framework.junit5.ApplicationExtension;
+
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
+import no.hal.fxml.templateprocessor.FxmlTemplateProcessor.Engine;
+
+@ExtendWith(ApplicationExtension.class)
+public class FxmlBoundValuesTest {
+
+    private StringTemplate template(Object text, Object prefWidth) {
+        return StringTemplate.RAW."""
+        <VBox>
+            <Label text="\{text}" prefWidth="\{prefWidth}"/>
+        </VBox>
+        """;
+    }
+
+    @Test
+    public void testBindProperties() {
+        for (var engine : Engine.values()) {
+            var text = new SimpleStringProperty("text1");
+            var width = new SimpleIntegerProperty(100);
+            var vbox = (VBox) FXML(engine).process(template(text, width));
+            var label = (Label) vbox.getChildren().getFirst();
+            Assertions.assertEquals("text1", label.getText(), engine.toString());
+            Assertions.assertEquals(100.0, label.getPrefWidth(), engine.toString());
+            // properties with values of the right type are bound bidirectionally
+            text.set("text2");
+            Assertions.assertEquals("text2", label.getText(), engine.toString());
+            label.setText("text3");
+            Assertions.assertEquals("text3", text.get(), engine.toString());
+            // and otherwise one-way, with coercion
+            width.set(200);
+            Assertions.assertEquals(200.0, label.getPrefWidth(), engine.toString());
+            Assertions.assertTrue(label.prefWidthProperty().isBound(), engine.toString());
+        }
+    }
+
+    @Test
+    public void testBindObservableValue() {
+        var text = new SimpleStringProperty("text");
+        ObservableValue<String> upperCase = text.map(String::toUpperCase);
+        var vbox = (VBox) FXML().process(template(upperCase, 100));
+        var label = (Label) vbox.getChildren().getFirst();
+        Assertions.assertEquals("TEXT", label.getText());
+        text.set("other");
+        Assertions.assertEquals("OTHER", label.getText());
+        Assertions.assertTrue(label.textProperty().isBound());
+    }
+
+    @Test
+    public void testRebind() {
+        var text1 = new SimpleStringProperty("text1");
+        var rendered = FXML().render(template(text1, 100));
+        var label = (Label) ((VBox) rendered.getNode()).getChildren().getFirst();
+        var text2 = new SimpleStringProperty("text2");
+        Assertions.assertTrue(rendered.update(template(text2, 100)));
+        Assertions.assertEquals("text2", label.getText());
+        text1.set("changed");
+        Assertions.assertEquals("text2", label.getText());
+        // replacing a bound value with a plain one unbinds
+        Assertions.assertTrue(rendered.update(template("text3", 100)));
+        Assertions.assertEquals("text3", label.getText());
+        text2.set("changed");
+        Assertions.assertEquals("text3", label.getText());
+        Assertions.assertEquals(0, rendered.getRebuildCount());
+    }
+}
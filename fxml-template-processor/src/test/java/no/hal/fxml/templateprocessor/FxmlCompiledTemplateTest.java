@@ -0,0 +1,93 @@
+package no.hal.fxml.templateprocessor;
+
+import static no.hal.fxml.templateprocessor.FxmlTemplateProcessor.FXML;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.testfx.framework.junit5.ApplicationExtension;
+
+import javafx.fxml.FXMLLoader;
+import javafx.scene.control.Label;
+import javafx.scene.layout.Pane;
+import no.hal.fxml.runtime.AbstractFxLoader;
+import no.hal.fxml.runtime.DefaultFxTemplateLoaderProvider;
+import no.hal.fxml.runtime.FxLoaderContext;
+import no.hal.fxml.templateprocessor.FxmlTemplateProcessor.Engine;
+
+@ExtendWith(ApplicationExtension.class)
+public class FxmlCompiledTemplateTest {
+
+    // what FxmlTemplateCompiler would generate for the template below, except for the id
+    public static class TestTemplateLoader extends AbstractFxLoader<Pane, Object> {
+
+        public TestTemplateLoader(Map<String, Object> namespace) {
+            super(namespace);
+        }
+
+        protected Pane build(FxLoaderContext fxLoaderContext) {
+            Pane pane = new Pane();
+            Label label = new Label();
+            label.setId("compiled");
+            label.setText(this.getFxmlObject("value_0", String.class));
+            label.setPrefWidth(this.getFxmlObject("value_1", double.class));
+            pane.getChildren().add(label);
+            return pane;
+        }
+    }
+
+    public static class TestTemplateLoaderProvider extends DefaultFxTemplateLoaderProvider {
+        public TestTemplateLoaderProvider() {
+            super(Map.ofEntries(
+                Map.entry(List.of("<Label text=\"", "\" prefWidth=\"", "\"/>"), namespace -> new TestTemplateLoader(namespace))
+            ));
+        }
+    }
+
+    private StringTemplate template(String text, Object width) {
+        return StringTemplate.RAW."<Label text=\"\{text}\" prefWidth=\"\{width}\"/>";
+    }
+
+    @Test
+    public void testCompiledLoader() {
+        for (var engine : Engine.values()) {
+            var label = (Label) FXML(engine).process(template("text", "42"));
+            Assertions.assertEquals("compiled", label.getId(), engine.toString());
+            Assertions.assertEquals("text", label.getText(), engine.toString());
+            Assertions.assertEquals(42.0, label.getPrefWidth(), engine.toString());
+        }
+    }
+
+    @Test
+    public void testCompiledLoaderBatch() {
+        var nodes = FXML().processBatch(template(null, null), List.of(List.of("a", 1), List.of("b", 2)));
+        Assertions.assertEquals(List.of("a", "b"), nodes.stream().map(node -> ((Label) node).getText()).toList());
+        Assertions.assertTrue(nodes.stream().allMatch(node -> "compiled".equals(node.getId())));
+    }
+
+    @Test
+    public void testControllerFallback() {
+        // generated loaders don't support controllers, so the template is processed as usual
+        var label = (Label) FXML(new Object()).process(template("text", 42));
+        Assertions.assertNull(label.getId());
+        Assertions.assertEquals("text", label.getText());
+        Assertions.assertEquals(42.0, label.getPrefWidth());
+    }
+
+    @Test
+    public void testNotCompiled() {
+        var label = (Label) FXML().process(StringTemplate.RAW."<Label text=\"\{"text"}\"/>");
+        Assertions.assertNull(label.getId());
+    }
+
+    @Test
+    public void testHasCompiledLoader() {
+        var processor = FXML();
+        var classLoader = new FXMLLoader().getClassLoader();
+        Assertions.assertTrue(processor.getTemplate(template("text", 42)).hasCompiledLoader(classLoader));
+        Assertions.assertFalse(processor.getTemplate(StringTemplate.RAW."<Label text=\"\{"text"}\"/>").hasCompiledLoader(classLoader));
+    }
+}
@@ -0,0 +1,149 @@
+package no.hal.fxml.templateprocessor;
+
+import static no.hal.fxml.templateprocessor.FxmlTemplateProcessor.FXML;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.testfx.framework.junit5.ApplicationExtension;
+
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import no.hal.fxml.templateprocessor.FxmlTemplateProcessor.Engine;
+
+@ExtendWith(ApplicationExtension.class)
+public class FxmlModelEngineTest {
+
+    @Test
+    public void testAttributeValues() {
+        var text = "Hi";
+        var label = (Label) FXML(Engine.FXML_MODEL)."""
+        <Label fx:id="label1" text="\{text}" prefWidth="\{100}" alignment="CENTER_RIGHT" wrapText="true"/>
+        """;
+        Assertions.assertEquals("label1", label.getId());
+        Assertions.assertEquals("Hi", label.getText());
+        Assertions.assertEquals(100.0, label.getPrefWidth());
+        Assertions.assertEquals(Pos.CENTER_RIGHT, label.getAlignment());
+        Assertions.assertTrue(label.isWrapText());
+    }
+
+    @Test
+    public void testAttributesAndElements() {
+        var attributes = Map.of("text", "Hi 2", "prefHeight", "50");
+        var label3 = new Label("Hi 3");
+        var labels = List.of(new Label("Hi 4"), new Label("Hi 5"));
+        var vbox = (VBox) FXML(Engine.FXML_MODEL)."""
+        <VBox spacing="5">
+            <Label \{attributes}/>
+            \{label3}
+            <HBox>
+                \{labels}
+            </HBox>
+        </VBox>
+        """;
+        Assertions.assertEquals(5.0, vbox.getSpacing());
+        Assertions.assertEquals(3, vbox.getChildren().size());
+        var label2 = (Label) vbox.getChildren().getFirst();
+        Assertions.assertEquals("Hi 2", label2.getText());
+        Assertions.assertEquals(50.0, label2.getPrefHeight());
+        Assertions.assertSame(label3, vbox.getChildren().get(1));
+        Assertions.assertEquals(labels, ((HBox) vbox.getChildren().get(2)).getChildren());
+    }
+
+    public static class Controller {
+
+        @FXML
+        private Label label;
+
+        int actionCount = 0;
+        boolean initialized = false;
+
+        @FXML
+        void initialize() {
+            initialized = true;
+        }
+
+        @FXML
+        void handleAction(ActionEvent event) {
+            actionCount++;
+            label.setText("Action " + actionCount);
+        }
+    }
+
+    @Test
+    public void testController() {
+        var controller = new Controller();
+        var vbox = (VBox) FXML(Engine.FXML_MODEL, controller)."""
+        <VBox>
+            <Label fx:id="label"/>
+            <Button fx:id="button" onAction="#handleAction"/>
+        </VBox>
+        """;
+        Assertions.assertTrue(controller.initialized);
+        Assertions.assertSame(vbox.getChildren().getFirst(), controller.label);
+        ((Button) vbox.getChildren().get(1)).fire();
+        Assertions.assertEquals(1, controller.actionCount);
+        Assertions.assertEquals("Action 1", controller.label.getText());
+    }
+
+    public static class InitializableController implements Initializable {
+
+        @FXML
+        Label label;
+
+        String labelText = null;
+
+        @Override
+        public void initialize(URL location, ResourceBundle resources) {
+            labelText = label.getText();
+        }
+    }
+
+    @Test
+    public void testInitializableController() {
+        var controller = new InitializableController();
+        FXML(Engine.FXML_MODEL, controller)."""
+        <VBox>
+            <Label fx:id="label" text="Hi"/>
+        </VBox>
+        """;
+        Assertions.assertEquals("Hi", controller.labelText);
+    }
+
+    @Test
+    public void testSlotRoot() {
+        var labels = List.of(new Label("Hi"));
+        Assertions.assertSame(labels.getFirst(), FXML(Engine.FXML_MODEL)."\{labels}");
+        List<Label> noLabels = List.of();
+        var exception = Assertions.assertThrows(IllegalArgumentException.class, () -> FXML(Engine.FXML_MODEL)."\{noLabels}");
+        Assertions.assertTrue(exception.getMessage().contains("empty collection"), exception.getMessage());
+    }
+
+    @Test
+    public void testSameAsFxmlLoader() {
+        for (var engine : Engine.values()) {
+            var text = "Hi";
+            var vbox = (VBox) FXML(engine)."""
+            <VBox>
+                <fx:define>
+                    <Label fx:id="defined" text="Defined"/>
+                </fx:define>
+                <fx:reference source="defined"/>
+                <Label text="\{text}"/>
+            </VBox>
+            """;
+            Assertions.assertEquals(List.of("Defined", "Hi"), vbox.getChildren().stream().map(node -> ((Label) node).getText()).toList(), engine.toString());
+        }
+    }
+}
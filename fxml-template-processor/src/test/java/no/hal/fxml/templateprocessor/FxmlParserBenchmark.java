@@ -0,0 +1,74 @@
+package no.hal.fxml.templateprocessor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import no.hal.fxml.model.FxmlCode.Document;
+import no.hal.fxml.parser.FxmlParser;
+import no.hal.fxml.parser.FxmlParser.Backend;
+
+// compares the FxmlParser backends, run with main, add -prof gc for allocation rates
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class FxmlParserBenchmark {
+
+    @Param({ "EVENT", "STREAM", "TOKENIZER" })
+    public Backend backend;
+
+    @Param({ "20" })
+    public int cardCount;
+
+    private String fxml;
+
+    @Setup
+    public void setup() {
+        var builder = new StringBuilder("""
+            <?xml version="1.0" encoding="UTF-8"?>
+            <?import javafx.scene.control.*?>
+            <?import javafx.scene.layout.*?>
+            <VBox xmlns:fx="http://javafx.com/fxml" fx:id="root" spacing="10">
+            """);
+        for (int i = 0; i < cardCount; i++) {
+            builder.append("""
+                <!-- card %1$s -->
+                <VBox fx:id="card%1$s" spacing="5" styleClass="card">
+                    <Label fx:id="title%1$s" text="Title %1$s" styleClass="title"/>
+                    <Label text="Description of card %1$s" wrapText="true"/>
+                    <HBox>
+                        <Button text="Open" onAction="#open"/>
+                        <Region prefWidth="%1$s0"/>
+                    </HBox>
+                    <padding><Insets top="5" right="5" bottom="5" left="5"/></padding>
+                </VBox>
+                """.formatted(i));
+        }
+        builder.append("</VBox>\n");
+        fxml = builder.toString();
+    }
+
+    @Benchmark
+    public Document parse() throws Exception {
+        return FxmlParser.parseFxml(fxml, backend);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(FxmlParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,89 @@
+package no.hal.fxml.templateprocessor;
+
+import static no.hal.fxml.templateprocessor.FxmlTemplateProcessor.FXML;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import no.hal.fxml.templateprocessor.FxmlTemplateProcessor.Engine;
+
+// compares processBatch with looping over process, run with main
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class FxmlTemplateBatchBenchmark {
+
+    @Param({ "FXML_LOADER", "FXML_MODEL" })
+    public Engine engine;
+
+    @Param({ "500" })
+    public int batchSize;
+
+    private FxmlTemplateProcessor processor;
+    private List<List<Object>> valuesList;
+
+    @Setup
+    public void setup() {
+        try {
+            Platform.startup(() -> {});
+        } catch (IllegalStateException e) {
+            // already started
+        }
+        processor = FXML(engine);
+        valuesList = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            valuesList.add(List.of("Title " + i, "Description of card " + i, i * 10.0));
+        }
+    }
+
+    private StringTemplate card(Object title, Object description, Object width) {
+        return StringTemplate.RAW."""
+        <VBox spacing="5" styleClass="card">
+            <Label text="\{title}" styleClass="title"/>
+            <Label text="\{description}" wrapText="true"/>
+            <HBox>
+                <Button text="Open"/>
+                <Region prefWidth="\{width}"/>
+            </HBox>
+        </VBox>
+        """;
+    }
+
+    @Benchmark
+    public List<Node> loop() {
+        List<Node> nodes = new ArrayList<>(valuesList.size());
+        for (var values : valuesList) {
+            nodes.add(processor.process(card(values.get(0), values.get(1), values.get(2))));
+        }
+        return nodes;
+    }
+
+    @Benchmark
+    public List<Node> batch() {
+        return processor.processBatch(card(null, null, null), valuesList);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(FxmlTemplateBatchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
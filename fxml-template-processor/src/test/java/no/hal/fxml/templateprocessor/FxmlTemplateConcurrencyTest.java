@@ -0,0 +1,80 @@
+package no.hal.fxml.templateprocessor;
+
+import static no.hal.fxml.templateprocessor.FxmlTemplateProcessor.FXML;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.testfx.framework.junit5.ApplicationExtension;
+
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
+import no.hal.fxml.templateprocessor.FxmlTemplateProcessor.Engine;
+
+@ExtendWith(ApplicationExtension.class)
+public class FxmlTemplateConcurrencyTest {
+
+    private VBox render(FxmlTemplateProcessor processor, int num) {
+        var text = "Label " + num;
+        var attributes = Map.of("id", "label" + num);
+        var labels = List.of(new Label("Child " + num));
+        return (VBox) processor."""
+        <VBox>
+            <Label text="\{text}" \{attributes}/>
+            \{labels}
+        </VBox>
+        """;
+    }
+
+    @Test
+    public void testSharedProcessorOnVirtualThreads() throws Exception {
+        for (var engine : Engine.values()) {
+            var processor = FXML(engine);
+            List<Future<VBox>> futures = new ArrayList<>();
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < 2_000; i++) {
+                    int num = i;
+                    futures.add(executor.submit(() -> render(processor, num)));
+                }
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                var vbox = futures.get(i).get();
+                var label = (Label) vbox.getChildren().getFirst();
+                Assertions.assertEquals("Label " + i, label.getText(), engine.toString());
+                Assertions.assertEquals("label" + i, label.getId(), engine.toString());
+                Assertions.assertEquals("Child " + i, ((Label) vbox.getChildren().get(1)).getText(), engine.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testProcessBatch() {
+        for (var engine : Engine.values()) {
+            var processor = FXML(engine);
+            List<List<?>> valuesList = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                valuesList.add(List.of("Label " + i, Map.of("id", "label" + i), List.of(new Label("Child " + i))));
+            }
+            var nodes = processor.processBatch(StringTemplate.RAW."""
+            <VBox>
+                <Label text="\{null}" \{null}/>
+                \{null}
+            </VBox>
+            """, valuesList);
+            Assertions.assertEquals(valuesList.size(), nodes.size());
+            for (int i = 0; i < nodes.size(); i++) {
+                var vbox = (VBox) nodes.get(i);
+                var label = (Label) vbox.getChildren().getFirst();
+                Assertions.assertEquals("Label " + i, label.getText(), engine.toString());
+                Assertions.assertEquals("label" + i, label.getId(), engine.toString());
+                Assertions.assertSame(((List<?>) valuesList.get(i).get(2)).getFirst(), vbox.getChildren().get(1), engine.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package no.hal.fxml.templateprocessor;
+
+import static no.hal.fxml.templateprocessor.FxmlTemplateProcessor.FXML;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.testfx.framework.junit5.ApplicationExtension;
+
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
+import no.hal.fxml.templateprocessor.FxmlTemplateProcessor.Engine;
+
+@ExtendWith(ApplicationExtension.class)
+public class FxmlTemplateRetentionTest {
+
+    private Node process(FxmlTemplateProcessor processor, Object payload, Map<String, Object> attributes, List<? extends Node> children) {
+        return processor."""
+        <VBox userData="\{payload}">
+            <Label \{attributes}/>
+            \{children}
+        </VBox>
+        """;
+    }
+
+    private static boolean isCollected(WeakReference<?> ref) {
+        for (int i = 0; i < 10 && ref.get() != null; i++) {
+            System.gc();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        return ref.get() == null;
+    }
+
+    @Test
+    public void testValuesAreReleased() {
+        for (var engine : Engine.values()) {
+            var processor = FXML(engine);
+            var payload = new Object();
+            var child = new Label("child");
+            process(processor, payload, Map.of("text", "label"), List.of(child));
+            WeakReference<Object> payloadRef = new WeakReference<>(payload);
+            WeakReference<Object> childRef = new WeakReference<>(child);
+            payload = null;
+            child = null;
+            Assertions.assertTrue(isCollected(payloadRef), engine + " retains value");
+            Assertions.assertTrue(isCollected(childRef), engine + " retains element");
+        }
+    }
+
+    @Test
+    public void testLoadersAreCleared() {
+        // the given loader is only a prototype, so nothing from an invocation is kept in it
+        var prototype = new FXMLLoader();
+        prototype.getNamespace().put("shared", "value");
+        var namespace = new HashMap<>(prototype.getNamespace());
+        process(FXML(prototype), new Object(), Map.of("text", "label"), List.of(new Label()));
+        Assertions.assertEquals(namespace, prototype.getNamespace());
+        Assertions.assertNull(prototype.getRoot());
+        Assertions.assertNull(prototype.getController());
+        // pooled loaders are cleared when released, and get the prototype's namespace when reused
+        var pool = new FxmlLoaderPool(prototype, 1);
+        var fxmlLoader = pool.acquire();
+        var payload = new Object();
+        fxmlLoader.getNamespace().put("value_0", payload);
+        fxmlLoader.setController(new Object());
+        fxmlLoader.setRoot(new VBox());
+        pool.release(fxmlLoader);
+        Assertions.assertTrue(fxmlLoader.getNamespace().isEmpty());
+        Assertions.assertNull(fxmlLoader.getController());
+        Assertions.assertNull(fxmlLoader.getRoot());
+        WeakReference<Object> payloadRef = new WeakReference<>(payload);
+        payload = null;
+        Assertions.assertTrue(isCollected(payloadRef), "pooled loader retains value");
+        Assertions.assertSame(fxmlLoader, pool.acquire());
+        Assertions.assertEquals(namespace, fxmlLoader.getNamespace());
+    }
+}
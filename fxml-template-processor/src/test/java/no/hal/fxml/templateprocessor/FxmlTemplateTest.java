@@ -0,0 +1,52 @@
+package no.hal.fxml.templateprocessor;
+
+import static java.lang.StringTemplate.RAW;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import no.hal.fxml.translator.FxmlTemplateTranslator.SlotKind;
+
+public class FxmlTemplateTest {
+
+    private StringTemplate template(String text, String style, Object attributes, Object child) {
+        return RAW."""
+        <Pane>
+            <Label text="\{text}" style="\{style}" \{attributes}/>
+            \{child}
+        </Pane>
+        """;
+    }
+
+    @Test
+    public void testSlotKinds() {
+        var template = FxmlTemplate.compile(template("text", "style", Map.of(), List.of()).fragments());
+        Assertions.assertEquals(List.of(SlotKind.ATTRIBUTE_VALUE, SlotKind.ATTRIBUTE_VALUE, SlotKind.ATTRIBUTE, SlotKind.ELEMENT), template.getSlotKinds());
+    }
+
+    @Test
+    public void testFxml() {
+        var stringTemplate = template("text", "style", Map.of("id", "label"), List.of("child1", "child2"));
+        var template = FxmlTemplate.compile(stringTemplate.fragments());
+        Map<String, Object> namespace = new HashMap<>();
+        var fxml = template.fxml(stringTemplate.values(), namespace);
+        Assertions.assertTrue(fxml.contains("text=\"$value_0\" style=\"$value_1\"  id=\"$value_2_id\""), fxml);
+        Assertions.assertTrue(fxml.contains("<fx:reference source=\"value_3_0\"/><fx:reference source=\"value_3_1\"/>"), fxml);
+        Assertions.assertEquals(Map.of("value_0", "text", "value_1", "style", "value_2_id", "label", "value_3_0", "child1", "value_3_1", "child2"), namespace);
+    }
+
+    @Test
+    public void testTemplateCache() {
+        var cache = new FxmlTemplateCache(1);
+        var template1 = cache.get(template("text1", "style1", Map.of(), "child1").fragments());
+        Assertions.assertSame(template1, cache.get(template("text2", "style2", Map.of(), "child2").fragments()));
+        Assertions.assertEquals(new FxmlTemplateCache.Stats(1, 1, 0, 1), cache.getStats());
+        cache.get(RAW."<Label text=\"\{"text"}\"/>".fragments());
+        Assertions.assertEquals(new FxmlTemplateCache.Stats(1, 2, 1, 1), cache.getStats());
+        Assertions.assertNotSame(template1, cache.get(template("text1", "style1", Map.of(), "child1").fragments()));
+    }
+}
@@ -0,0 +1,103 @@
+package no.hal.fxml.templateprocessor;
+
+import static no.hal.fxml.templateprocessor.FxmlTemplateProcessor.FXML;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.testfx.framework.junit5.ApplicationExtension;
+
+import javafx.collections.ListChangeListener;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
+
+@ExtendWith(ApplicationExtension.class)
+public class KeyedListTest {
+
+    private record Row(int id, String text) {
+    }
+
+    private KeyedList<Row, Integer> rows(List<Row> rows) {
+        return KeyedList.of(rows, Row::id, row -> new Label(row.text()), (row, node) -> ((Label) node).setText(row.text()));
+    }
+
+    private StringTemplate template(KeyedList<Row, Integer> rows) {
+        return StringTemplate.RAW."""
+        <VBox>
+            <Label text="header"/>
+            \{rows}
+            <Label text="footer"/>
+        </VBox>
+        """;
+    }
+
+    private List<String> texts(VBox vbox) {
+        return vbox.getChildren().stream().map(node -> ((Label) node).getText()).toList();
+    }
+
+    private List<String> expectedTexts(List<Row> rows) {
+        List<String> texts = new ArrayList<>();
+        texts.add("header");
+        rows.forEach(row -> texts.add(row.text()));
+        texts.add("footer");
+        return texts;
+    }
+
+    @Test
+    public void testLongestIncreasingSubsequence() {
+        Assertions.assertArrayEquals(new int[]{ 1, 2, 5 }, KeyedList.longestIncreasingSubsequence(new int[]{ 3, 1, -1, 2, 0, 5 }));
+        Assertions.assertArrayEquals(new int[]{}, KeyedList.longestIncreasingSubsequence(new int[]{ -1, -1 }));
+    }
+
+    @Test
+    public void testReconcile() {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rows.add(new Row(i, "row " + i));
+        }
+        var rendered = FXML().render(template(rows(rows)));
+        var vbox = (VBox) rendered.getNode();
+        var row5 = vbox.getChildren().get(6);
+        List<ListChangeListener.Change<? extends Node>> changes = new ArrayList<>();
+        vbox.getChildren().addListener((ListChangeListener<Node>) changes::add);
+
+        // move row 5 first, remove rows 2 and 3, insert a new row and change the text of row 7
+        List<Row> newRows = new ArrayList<>(rows);
+        newRows.remove(5);
+        newRows.add(0, rows.get(5));
+        newRows.removeIf(row -> row.id() == 2 || row.id() == 3);
+        newRows.add(4, new Row(10, "row 10"));
+        newRows.set(newRows.indexOf(rows.get(7)), new Row(7, "row seven"));
+        Assertions.assertTrue(rendered.update(template(rows(newRows))));
+        Assertions.assertEquals(expectedTexts(newRows), texts(vbox));
+        Assertions.assertSame(row5, vbox.getChildren().get(1));
+        // one removal run for 2, 3, one for 5, and one insertion run for each of 5 and 10
+        Assertions.assertEquals(4, changes.size());
+    }
+
+    @Test
+    public void testReconcileShuffled() {
+        var random = new Random(42);
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            rows.add(new Row(i, "row " + i));
+        }
+        var rendered = FXML().render(template(rows(rows)));
+        var vbox = (VBox) rendered.getNode();
+        for (int n = 0; n < 20; n++) {
+            rows.removeIf(row -> random.nextInt(10) == 0);
+            for (int i = 0; i < 50; i++) {
+                rows.add(random.nextInt(rows.size() + 1), new Row(1000 * (n + 1) + i, "new row " + n + "." + i));
+            }
+            Collections.swap(rows, random.nextInt(rows.size()), random.nextInt(rows.size()));
+            Assertions.assertTrue(rendered.update(template(rows(rows))));
+            Assertions.assertEquals(expectedTexts(rows), texts(vbox));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package no.hal.fxml.templateprocessor;
+
+import static no.hal.fxml.templateprocessor.FxmlTemplateProcessor.FXML;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.testfx.framework.junit5.ApplicationExtension;
+
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.VBox;
+
+@ExtendWith(ApplicationExtension.class)
+public class RenderedTemplateTest {
+
+    private StringTemplate template(String text, Map<String, Object> attributes, Node child, List<? extends Node> children) {
+        return StringTemplate.RAW."""
+        <VBox>
+            <Label text="\{text}"/>
+            <Label \{attributes}/>
+            \{child}
+            <Label text="last"/>
+            \{children}
+        </VBox>
+        """;
+    }
+
+    @Test
+    public void testUpdate() {
+        var processor = FXML();
+        var child1 = new Label("child1");
+        var children = List.of(new Label("a"), new Label("b"));
+        var rendered = processor.render(template("text1", Map.of("text", "attr1"), child1, children));
+        var vbox = (VBox) rendered.getNode();
+        var textLabel = vbox.getChildren().get(0);
+        var lastLabel = vbox.getChildren().get(3);
+
+        // nothing changed
+        Assertions.assertTrue(rendered.update(template("text1", Map.of("text", "attr1"), child1, children)));
+
+        var child2 = new Label("child2");
+        var newChildren = List.of(new Label("c"), new Label("d"), new Label("e"));
+        Assertions.assertTrue(rendered.update(template("text2", Map.of("text", "attr2"), child2, newChildren)));
+        Assertions.assertSame(vbox, rendered.getNode());
+        Assertions.assertSame(textLabel, vbox.getChildren().get(0));
+        Assertions.assertSame(lastLabel, vbox.getChildren().get(3));
+        Assertions.assertEquals("text2", ((Label) textLabel).getText());
+        Assertions.assertEquals("attr2", ((Label) vbox.getChildren().get(1)).getText());
+        Assertions.assertSame(child2, vbox.getChildren().get(2));
+        Assertions.assertEquals(newChildren, vbox.getChildren().subList(4, 7));
+        Assertions.assertEquals(7, vbox.getChildren().size());
+        Assertions.assertEquals(2, rendered.getUpdateCount());
+        Assertions.assertEquals(0, rendered.getRebuildCount());
+    }
+
+    @Test
+    public void testRebuild() {
+        var processor = FXML();
+        var parent = new Pane();
+        var rendered = processor.render(template("text", Map.of("text", "attr", "id", "label"), new Label(), List.of(new Label())));
+        parent.getChildren().add(rendered.getNode());
+        var oldNode = rendered.getNode();
+        // removing an attribute requires a rebuild
+        Assertions.assertFalse(rendered.update(template("text", Map.of("text", "attr"), new Label(), List.of(new Label()))));
+        Assertions.assertNotSame(oldNode, rendered.getNode());
+        Assertions.assertEquals(List.of(rendered.getNode()), parent.getChildren());
+        // lists may become empty and be filled again
+        Assertions.assertTrue(rendered.update(template("text", Map.of("text", "attr"), new Label(), List.of())));
+        var newChildren = List.of(new Label(), new Label());
+        Assertions.assertTrue(rendered.update(template("text", Map.of("text", "attr"), new Label(), newChildren)));
+        Assertions.assertEquals(newChildren, ((VBox) rendered.getNode()).getChildren().subList(4, 6));
+        Assertions.assertEquals(2, rendered.getUpdateCount());
+        Assertions.assertEquals(1, rendered.getRebuildCount());
+    }
+}
@@ -0,0 +1,80 @@
+package no.hal.fxml.templateprocessor;
+
+import static no.hal.fxml.templateprocessor.FxmlTemplateProcessor.FXML;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.testfx.framework.junit5.ApplicationExtension;
+
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
+import no.hal.fxml.parser.FxmlParser;
+import no.hal.fxml.templateprocessor.FxmlTemplateProcessor.Engine;
+import no.hal.fxml.templateprocessor.TieredCompilation.Tier;
+
+@ExtendWith(ApplicationExtension.class)
+public class TieredCompilationTest {
+
+    private StringTemplate template(String text, double prefWidth) {
+        return StringTemplate.RAW."""
+        <VBox>
+            <Label text="\{text}" prefWidth="\{prefWidth}"/>
+        </VBox>
+        """;
+    }
+
+    @Test
+    public void testTieredTemplate() throws Exception {
+        var processor = FXML(Engine.TIERED);
+        var tieredCompilation = processor.getTieredCompilation(template(null, 0));
+        for (int i = 0; i < FxmlTemplateProcessor.TIERED_COMPILE_THRESHOLD; i++) {
+            var vbox = (VBox) processor.process(template("Label " + i, i));
+            Assertions.assertEquals("Label " + i, ((Label) vbox.getChildren().getFirst()).getText());
+        }
+        Assertions.assertNotEquals(Tier.INTERPRETED, tieredCompilation.getTier());
+        Assertions.assertEquals(Tier.COMPILED, tieredCompilation.compile().get(), tieredCompilation.getStats().failure());
+        var vbox = (VBox) processor.process(template("compiled", 42));
+        var label = (Label) vbox.getChildren().getFirst();
+        Assertions.assertEquals("compiled", label.getText());
+        Assertions.assertEquals(42.0, label.getPrefWidth());
+        var stats = tieredCompilation.getStats();
+        Assertions.assertEquals(FxmlTemplateProcessor.TIERED_COMPILE_THRESHOLD, stats.interpretedUses());
+        Assertions.assertEquals(1, stats.compiledUses());
+        Assertions.assertTrue(stats.compileNanos() > 0);
+    }
+
+    @Test
+    public void testUnsupportedTemplate() throws Exception {
+        var processor = FXML(Engine.TIERED);
+        var template = StringTemplate.RAW."<Label \{Map.of("text", "text")}/>";
+        Assertions.assertEquals(Tier.FAILED, processor.getTieredCompilation(template).compile().get());
+        Assertions.assertNotNull(processor.getTieredCompilation(template).getStats().failure());
+        Assertions.assertEquals("text", ((Label) processor.process(template)).getText());
+    }
+
+    @Test
+    public void testTieredDocument() throws Exception {
+        var document = FxmlParser.parseFxml("""
+            <?import javafx.scene.control.*?>
+            <?import javafx.scene.layout.*?>
+            <VBox xmlns:fx="http://javafx.com/fxml">
+                <Label fx:id="label" text="$text"/>
+            </VBox>
+            """);
+        var loader = new TieredFxmlLoader(document, getClass().getClassLoader(), 2);
+        for (int i = 0; i < 3; i++) {
+            if (i == 2) {
+                Assertions.assertEquals(Tier.COMPILED, loader.getTieredCompilation().compile().get(), loader.getTieredCompilation().getStats().failure());
+            }
+            Map<String, Object> namespace = new HashMap<>(Map.of("text", "text " + i));
+            var vbox = (VBox) loader.load(namespace);
+            Assertions.assertSame(vbox.getChildren().getFirst(), namespace.get("label"));
+            Assertions.assertEquals("text " + i, ((Label) namespace.get("label")).getText());
+        }
+        Assertions.assertEquals(1, loader.getTieredCompilation().getStats().compiledUses());
+    }
+}
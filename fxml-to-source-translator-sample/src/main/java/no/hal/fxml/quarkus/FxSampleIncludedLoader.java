@@ -19,10 +19,10 @@ public class FxSampleIncludedLoader extends AbstractFxLoader<Label, java.lang.Ob
    protected Label build(FxLoaderContext fxLoaderContext) {
       // <Label>
       Label label = new Label();
-      label.setPrefHeight(21.0);
-      label.setPrefWidth(264.0);
       label.setLayoutX(14.0);
       label.setLayoutY(44.0);
+      label.setPrefHeight(21.0);
+      label.setPrefWidth(264.0);
       label.setText("Type your name and click!");
       return label;
    }
@@ -25,39 +25,85 @@ public class FxSampleLoader extends AbstractFxLoader<AnchorPane, FxSampleControl
    protected AnchorPane build(FxLoaderContext fxLoaderContext) {
       // <AnchorPane>
       AnchorPane anchorPane = new AnchorPane();
+      anchorPane.setId("AnchorPane");
       anchorPane.setPrefHeight(188.0);
       anchorPane.setPrefWidth(406.0);
-      anchorPane.setId("AnchorPane");
       // <fx:define>
       // <String fx:id="strMessageFormat">
-      java.lang.String string = java.lang.String.valueOf("Hello, %s!");
-      this.setFxmlObject("strMessageFormat", string);
+      this.strMessageFormat = "Hello, %s!";
       // <TextField fx:id="txtName">
       TextField textField = new TextField();
-      this.setFxmlObject("txtName", textField);
+      this.txtName = textField;
       textField.setId("txtName");
-      textField.setOnAction(event -> this.controllerHelper.updateMessage1(event));
-      textField.setPrefWidth(200.0);
       textField.setLayoutX(14.0);
       textField.setLayoutY(14.0);
+      textField.setPrefWidth(200.0);
+      textField.setOnAction(event -> this.controllerHelper.updateMessage1(event));
       anchorPane.getChildren().add(textField);
       // <Button>
       Button button = new Button();
-      button.setOnAction(event -> this.controllerHelper.updateMessage2(event));
       button.setLayoutX(226.0);
       button.setLayoutY(15.0);
-      button.setText("Click!");
       button.setMnemonicParsing(false);
+      button.setOnAction(event -> this.controllerHelper.updateMessage2(event));
+      button.setText("Click!");
       anchorPane.getChildren().add(button);
       // <fx:include source="FxSampleIncluded.fxml"/>
       FxLoader<?, ?> fxIncludeLoader = fxLoaderContext.loadFxml("FxSampleIncluded.fxml");
       Node fxIncludeRoot = fxIncludeLoader.getRoot();
-      this.setFxmlObject("lblMessage", fxIncludeRoot);
-      this.setFxmlObject("lblMessageController", fxIncludeLoader.getController());
+      this.lblMessage = fxIncludeRoot;
+      this.lblMessageController = fxIncludeLoader.getController();
       anchorPane.getChildren().add(fxIncludeRoot);
       return anchorPane;
    }
 
+   private java.lang.String strMessageFormat;
+
+   public java.lang.String getStrMessageFormat() {
+      return this.strMessageFormat;
+   }
+
+   private TextField txtName;
+
+   public TextField getTxtName() {
+      return this.txtName;
+   }
+
+   private Node lblMessage;
+
+   public Node getLblMessage() {
+      return this.lblMessage;
+   }
+
+   private java.lang.Object lblMessageController;
+
+   public java.lang.Object getLblMessageController() {
+      return this.lblMessageController;
+   }
+
+   @SuppressWarnings("unchecked") public <T> T getFxmlObject(java.lang.String id) {
+      if ("strMessageFormat".equals(id)) {
+         return ((T) this.strMessageFormat);
+      }
+      if ("txtName".equals(id)) {
+         return ((T) this.txtName);
+      }
+      if ("lblMessage".equals(id)) {
+         return ((T) this.lblMessage);
+      }
+      if ("lblMessageController".equals(id)) {
+         return ((T) this.lblMessageController);
+      }
+      return super.getFxmlObject(id);
+   }
+
+   protected void putFxmlObjects(Map<String, Object> namespace) {
+      this.putFxmlObject(namespace, "strMessageFormat", this.strMessageFormat);
+      this.putFxmlObject(namespace, "txtName", this.txtName);
+      this.putFxmlObject(namespace, "lblMessage", this.lblMessage);
+      this.putFxmlObject(namespace, "lblMessageController", this.lblMessageController);
+   }
+
    protected FxSampleController createController() {
       return new FxSampleController();
    }
@@ -65,7 +111,7 @@ public class FxSampleLoader extends AbstractFxLoader<AnchorPane, FxSampleControl
    private FxSampleControllerHelper controllerHelper;
 
    protected void initializeController() {
-      this.controllerHelper = new FxSampleControllerHelper(this.getNamespace(), this.controller);
+      this.controllerHelper = new FxSampleControllerHelper(this, this.controller);
       this.controllerHelper.initializeController();
    }
 }
@@ -0,0 +1,211 @@
+package no.hal.fxml.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// the expression of a ${...} binding, e.g. ${slider.value * 2}
+public sealed interface BindingExpression {
+
+    // 'text', "text", 1, 1.5, true, false or null
+    public record Constant(Object value) implements BindingExpression {
+    }
+
+    // label.text, the first name is an id, the rest are properties
+    public record PropertyPath(List<String> names) implements BindingExpression {
+        public PropertyPath(String... names) {
+            this(List.of(names));
+        }
+        public String id() {
+            return names.getFirst();
+        }
+    }
+
+    public enum Operator {
+        NEGATE("-"), NOT("!"),
+        MULTIPLY("*"), DIVIDE("/"), REMAINDER("%"),
+        ADD("+"), SUBTRACT("-"),
+        LESS_THAN("<"), GREATER_THAN(">"), LESS_THAN_OR_EQUAL("<="), GREATER_THAN_OR_EQUAL(">="),
+        EQUAL("=="), NOT_EQUAL("!="),
+        AND("&&"), OR("||");
+
+        public final String token;
+
+        private Operator(String token) {
+            this.token = token;
+        }
+    }
+
+    // -value, !selected
+    public record UnaryOperation(Operator operator, BindingExpression operand) implements BindingExpression {
+    }
+
+    // width * 2, text == 'ok'
+    public record BinaryOperation(Operator operator, BindingExpression left, BindingExpression right) implements BindingExpression {
+    }
+
+    // parses the source of ${...}, throws IllegalArgumentException if it's malformed
+    public static BindingExpression valueOf(String source) {
+        var parser = new Parser(source);
+        var expression = parser.parseExpression(0);
+        parser.skipWhitespace();
+        if (parser.pos < source.length()) {
+            throw parser.error("Unexpected '" + source.charAt(parser.pos) + "'");
+        }
+        return expression;
+    }
+
+    // precedence climbing, with the binary operators from lowest to highest precedence
+    static class Parser {
+
+        private static final List<List<Operator>> BINARY_OPERATORS = List.of(
+            List.of(Operator.OR),
+            List.of(Operator.AND),
+            List.of(Operator.EQUAL, Operator.NOT_EQUAL),
+            // <= and >= before < and >
+            List.of(Operator.LESS_THAN_OR_EQUAL, Operator.GREATER_THAN_OR_EQUAL, Operator.LESS_THAN, Operator.GREATER_THAN),
+            List.of(Operator.ADD, Operator.SUBTRACT),
+            List.of(Operator.MULTIPLY, Operator.DIVIDE, Operator.REMAINDER)
+        );
+
+        private final String source;
+        private int pos = 0;
+
+        Parser(String source) {
+            this.source = source;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + pos + " in binding expression: " + source);
+        }
+
+        void skipWhitespace() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private Operator parseOperator(List<Operator> operators) {
+            skipWhitespace();
+            for (var operator : operators) {
+                if (source.startsWith(operator.token, pos)) {
+                    pos += operator.token.length();
+                    return operator;
+                }
+            }
+            return null;
+        }
+
+        BindingExpression parseExpression(int level) {
+            if (level >= BINARY_OPERATORS.size()) {
+                return parseUnary();
+            }
+            var expression = parseExpression(level + 1);
+            Operator operator;
+            while ((operator = parseOperator(BINARY_OPERATORS.get(level))) != null) {
+                expression = new BinaryOperation(operator, expression, parseExpression(level + 1));
+            }
+            return expression;
+        }
+
+        private BindingExpression parseUnary() {
+            var operator = parseOperator(List.of(Operator.NEGATE, Operator.NOT));
+            return operator != null ? new UnaryOperation(operator, parseUnary()) : parsePrimary();
+        }
+
+        private BindingExpression parsePrimary() {
+            skipWhitespace();
+            if (pos >= source.length()) {
+                throw error("Missing operand");
+            }
+            char c = source.charAt(pos);
+            if (c == '(') {
+                pos++;
+                var expression = parseExpression(0);
+                skipWhitespace();
+                if (pos >= source.length() || source.charAt(pos) != ')') {
+                    throw error("Missing ')'");
+                }
+                pos++;
+                return expression;
+            } else if (c == '\'' || c == '"') {
+                return new Constant(parseString(c));
+            } else if (Character.isDigit(c) || c == '.') {
+                return new Constant(parseNumber());
+            } else if (Character.isJavaIdentifierStart(c)) {
+                List<String> names = new ArrayList<>();
+                names.add(parseName());
+                while (pos < source.length() && source.charAt(pos) == '.') {
+                    pos++;
+                    names.add(parseName());
+                }
+                if (names.size() == 1) {
+                    switch (names.getFirst()) {
+                        case "true" -> { return new Constant(true); }
+                        case "false" -> { return new Constant(false); }
+                        case "null" -> { return new Constant(null); }
+                        default -> {}
+                    }
+                }
+                return new PropertyPath(List.copyOf(names));
+            }
+            throw error("Unexpected '" + c + "'");
+        }
+
+        private String parseName() {
+            int start = pos;
+            if (pos < source.length() && Character.isJavaIdentifierStart(source.charAt(pos))) {
+                pos++;
+                while (pos < source.length() && Character.isJavaIdentifierPart(source.charAt(pos))) {
+                    pos++;
+                }
+            }
+            if (start == pos) {
+                throw error("Missing name");
+            }
+            return NamePool.intern(source.substring(start, pos));
+        }
+
+        private String parseString(char quote) {
+            StringBuilder builder = new StringBuilder();
+            pos++;
+            while (pos < source.length() && source.charAt(pos) != quote) {
+                char c = source.charAt(pos++);
+                if (c == '\\' && pos < source.length()) {
+                    c = source.charAt(pos++);
+                }
+                builder.append(c);
+            }
+            if (pos >= source.length()) {
+                throw error("Unterminated string");
+            }
+            pos++;
+            return builder.toString();
+        }
+
+        private Number parseNumber() {
+            int start = pos;
+            boolean decimal = false;
+            while (pos < source.length()) {
+                char c = source.charAt(pos);
+                if (c == '.' || c == 'e' || c == 'E') {
+                    decimal = true;
+                } else if ((c == '-' || c == '+') && decimal && Character.toLowerCase(source.charAt(pos - 1)) == 'e') {
+                    // exponent sign
+                } else if (! Character.isDigit(c)) {
+                    break;
+                }
+                pos++;
+            }
+            var number = source.substring(start, pos);
+            try {
+                if (decimal) {
+                    return Double.valueOf(number);
+                }
+                long value = Long.parseLong(number);
+                return value == (int) value ? (Number) (int) value : (Number) value;
+            } catch (NumberFormatException ex) {
+                throw error("Malformed number " + number);
+            }
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package no.hal.fxml.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import no.hal.fxml.model.FxmlCode.Define;
+import no.hal.fxml.model.FxmlCode.Document;
+import no.hal.fxml.model.FxmlCode.FxmlElement;
+import no.hal.fxml.model.FxmlCode.Import;
+import no.hal.fxml.model.FxmlCode.Include;
+import no.hal.fxml.model.FxmlCode.InstanceElement;
+import no.hal.fxml.model.FxmlCode.InstantiationElement;
+import no.hal.fxml.model.FxmlCode.PropertyElement;
+import no.hal.fxml.model.FxmlCode.PropertyValue;
+import no.hal.fxml.model.FxmlCode.Reference;
+import no.hal.fxml.model.FxmlCode.Root;
+import no.hal.fxml.model.FxmlCode.StaticProperty;
+
+// immutable, flattened form of a Document, for keeping many documents in memory, e.g. in caches, and walking them without pointer chasing,
+// elements are numbered in document order, with the root element as 0, and stored in parallel arrays,
+// the tree structure as parent, first child and next sibling indices (-1 if none),
+// and strings as indices (-1 for null) into the document's string table, where names are shared with other documents, see NamePool
+public final class FlatDocument {
+
+    public enum Kind { INSTANTIATION_ELEMENT, ROOT, DEFINE, REFERENCE, INCLUDE, PROPERTY_ELEMENT, PROPERTY_VALUE, STATIC_PROPERTY }
+
+    // the variant of INSTANTIATION_ELEMENT
+    public enum InstantiationKind { CONSTRUCTOR, FACTORY, VALUE, CONSTANT }
+
+    // the variant of PROPERTY_VALUE and STATIC_PROPERTY
+    public enum ValueKind { STRING, ID_REFERENCE, BINDING, LOCATION, METHOD_REFERENCE }
+
+    private final static Kind[] KINDS = Kind.values();
+    private final static InstantiationKind[] INSTANTIATION_KINDS = InstantiationKind.values();
+    private final static ValueKind[] VALUE_KINDS = ValueKind.values();
+
+    private final String[] strings;
+
+    // the imports, as qualifier and name, and whether it's a wildcard import
+    private final int[] importQualifiers, importNames;
+    private final boolean[] importWildcards;
+    private final boolean hasController;
+    private final int controllerQualifier, controllerName;
+
+    private final byte[] kinds;
+    // the instantiation or value kind
+    private final byte[] variants;
+    private final int[] parents, firstChildren, nextSiblings;
+    // the package of class names, or the class of static properties
+    private final int[] qualifiers;
+    // the class name, property name or source
+    private final int[] names;
+    private final int[] ids;
+    // the instantiation argument or property value
+    private final int[] values;
+
+    private FlatDocument(Builder builder) {
+        int size = builder.size;
+        this.strings = builder.strings.toArray(String[]::new);
+        this.importQualifiers = builder.importQualifiers;
+        this.importNames = builder.importNames;
+        this.importWildcards = builder.importWildcards;
+        this.hasController = builder.hasController;
+        this.controllerQualifier = builder.controllerQualifier;
+        this.controllerName = builder.controllerName;
+        this.kinds = Arrays.copyOf(builder.kinds, size);
+        this.variants = Arrays.copyOf(builder.variants, size);
+        this.parents = Arrays.copyOf(builder.parents, size);
+        this.firstChildren = Arrays.copyOf(builder.firstChildren, size);
+        this.nextSiblings = Arrays.copyOf(builder.nextSiblings, size);
+        this.qualifiers = Arrays.copyOf(builder.qualifiers, size);
+        this.names = Arrays.copyOf(builder.names, size);
+        this.ids = Arrays.copyOf(builder.ids, size);
+        this.values = Arrays.copyOf(builder.values, size);
+    }
+
+    // element access
+
+    public int size() {
+        return kinds.length;
+    }
+
+    public Kind kind(int element) {
+        return KINDS[kinds[element]];
+    }
+
+    public InstantiationKind instantiationKind(int element) {
+        return INSTANTIATION_KINDS[variants[element]];
+    }
+
+    public ValueKind valueKind(int element) {
+        return VALUE_KINDS[variants[element]];
+    }
+
+    public int parent(int element) {
+        return parents[element];
+    }
+
+    public int firstChild(int element) {
+        return firstChildren[element];
+    }
+
+    public int nextSibling(int element) {
+        return nextSiblings[element];
+    }
+
+    private String string(int index) {
+        return (index >= 0 ? strings[index] : null);
+    }
+
+    public String qualifier(int element) {
+        return string(qualifiers[element]);
+    }
+
+    public String name(int element) {
+        return string(names[element]);
+    }
+
+    public String id(int element) {
+        return string(ids[element]);
+    }
+
+    public String value(int element) {
+        return string(values[element]);
+    }
+
+    // conversion from Document
+
+    public static FlatDocument of(Document document) {
+        var builder = new Builder(document.imports().size());
+        for (int i = 0; i < document.imports().size(); i++) {
+            var fxImport = document.imports().get(i);
+            builder.importQualifiers[i] = builder.name(fxImport.qName().packageName());
+            builder.importNames[i] = builder.name(fxImport.qName().className());
+            builder.importWildcards[i] = fxImport.wildcard();
+        }
+        var controllerClassName = document.controllerClassName();
+        if (controllerClassName != null) {
+            builder.hasController = true;
+            builder.controllerQualifier = builder.name(controllerClassName.packageName());
+            builder.controllerName = builder.name(controllerClassName.className());
+        }
+        builder.add(document.instanceElement(), -1);
+        return new FlatDocument(builder);
+    }
+
+    private static class Builder {
+
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> stringIndices = new HashMap<>();
+
+        private final int[] importQualifiers, importNames;
+        private final boolean[] importWildcards;
+        private boolean hasController = false;
+        private int controllerQualifier, controllerName;
+
+        private int size = 0;
+        private byte[] kinds = new byte[16], variants = new byte[16];
+        private int[] parents = new int[16], firstChildren = new int[16], nextSiblings = new int[16];
+        private int[] qualifiers = new int[16], names = new int[16], ids = new int[16], values = new int[16];
+
+        Builder(int importCount) {
+            importQualifiers = new int[importCount];
+            importNames = new int[importCount];
+            importWildcards = new boolean[importCount];
+        }
+
+        private int string(String string) {
+            if (string == null) {
+                return -1;
+            }
+            return stringIndices.computeIfAbsent(string, s -> {
+                strings.add(s);
+                return strings.size() - 1;
+            });
+        }
+
+        // class and property names are shared with other documents
+        private int name(String name) {
+            if (name == null) {
+                return -1;
+            }
+            var pooled = NamePool.intern(name);
+            int index = string(pooled);
+            // the same string may already be there as a value
+            strings.set(index, pooled);
+            return index;
+        }
+
+        private int newElement(Kind kind, int parent) {
+            if (size == kinds.length) {
+                int capacity = size * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                variants = Arrays.copyOf(variants, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                firstChildren = Arrays.copyOf(firstChildren, capacity);
+                nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+                qualifiers = Arrays.copyOf(qualifiers, capacity);
+                names = Arrays.copyOf(names, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            int element = size++;
+            kinds[element] = (byte) kind.ordinal();
+            parents[element] = parent;
+            firstChildren[element] = -1;
+            nextSiblings[element] = -1;
+            qualifiers[element] = names[element] = ids[element] = values[element] = -1;
+            return element;
+        }
+
+        private void addChildren(List<? extends FxmlElement> children, int parent) {
+            int previous = -1;
+            for (var child : children) {
+                int element = add(child, parent);
+                if (previous < 0) {
+                    firstChildren[parent] = element;
+                } else {
+                    nextSiblings[previous] = element;
+                }
+                previous = element;
+            }
+        }
+
+        private int add(FxmlElement fxmlElement, int parent) {
+            return switch (fxmlElement) {
+                case InstantiationElement(QName className, Instantiation instantiation, String id, List<FxmlElement> children) -> {
+                    int element = newElement(Kind.INSTANTIATION_ELEMENT, parent);
+                    qualifiers[element] = name(className.packageName());
+                    names[element] = name(className.className());
+                    ids[element] = string(id);
+                    switch (instantiation) {
+                        case Instantiation.Constructor() -> variants[element] = (byte) InstantiationKind.CONSTRUCTOR.ordinal();
+                        case Instantiation.Factory(String methodName) -> {
+                            variants[element] = (byte) InstantiationKind.FACTORY.ordinal();
+                            values[element] = string(methodName);
+                        }
+                        case Instantiation.Value(String valueString) -> {
+                            variants[element] = (byte) InstantiationKind.VALUE.ordinal();
+                            values[element] = string(valueString);
+                        }
+                        case Instantiation.Constant(String constantName) -> {
+                            variants[element] = (byte) InstantiationKind.CONSTANT.ordinal();
+                            values[element] = string(constantName);
+                        }
+                    }
+                    addChildren(children, element);
+                    yield element;
+                }
+                case Root(QName typeName, List<FxmlElement> children) -> {
+                    int element = newElement(Kind.ROOT, parent);
+                    qualifiers[element] = name(typeName.packageName());
+                    names[element] = name(typeName.className());
+                    addChildren(children, element);
+                    yield element;
+                }
+                case Define(List<InstantiationElement> children) -> {
+                    int element = newElement(Kind.DEFINE, parent);
+                    addChildren(children, element);
+                    yield element;
+                }
+                case Reference(String source) -> {
+                    int element = newElement(Kind.REFERENCE, parent);
+                    values[element] = string(source);
+                    yield element;
+                }
+                case Include(String id, String source) -> {
+                    int element = newElement(Kind.INCLUDE, parent);
+                    ids[element] = string(id);
+                    values[element] = string(source);
+                    yield element;
+                }
+                case PropertyElement(String propertyName, List<InstanceElement> children) -> {
+                    int element = newElement(Kind.PROPERTY_ELEMENT, parent);
+                    names[element] = name(propertyName);
+                    addChildren(children, element);
+                    yield element;
+                }
+                case PropertyValue(String propertyName, ValueExpression value) -> {
+                    int element = newElement(Kind.PROPERTY_VALUE, parent);
+                    names[element] = name(propertyName);
+                    setValue(element, value);
+                    yield element;
+                }
+                case StaticProperty(String className, String propertyName, ValueExpression value) -> {
+                    int element = newElement(Kind.STATIC_PROPERTY, parent);
+                    qualifiers[element] = name(className);
+                    names[element] = name(propertyName);
+                    setValue(element, value);
+                    yield element;
+                }
+                default -> throw new IllegalArgumentException("Unsupported element: " + fxmlElement);
+            };
+        }
+
+        private void setValue(int element, ValueExpression value) {
+            var valueKind = switch (value) {
+                case ValueExpression.String _ -> ValueKind.STRING;
+                case ValueExpression.IdReference _ -> ValueKind.ID_REFERENCE;
+                case ValueExpression.Binding _ -> ValueKind.BINDING;
+                case ValueExpression.Location _ -> ValueKind.LOCATION;
+                case ValueExpression.MethodReference _ -> ValueKind.METHOD_REFERENCE;
+            };
+            variants[element] = (byte) valueKind.ordinal();
+            values[element] = string(switch (value) {
+                case ValueExpression.String(String string) -> string;
+                case ValueExpression.IdReference(String source) -> source;
+                case ValueExpression.Binding(String source, var _) -> source;
+                case ValueExpression.Location(String location) -> location;
+                case ValueExpression.MethodReference(String methodName) -> methodName;
+            });
+        }
+    }
+
+    // conversion to Document
+
+    public Document toDocument() {
+        List<Import> imports = new ArrayList<>(importNames.length);
+        for (int i = 0; i < importNames.length; i++) {
+            imports.add(new Import(new QName(string(importQualifiers[i]), string(importNames[i])), importWildcards[i]));
+        }
+        QName controllerClassName = (hasController ? new QName(string(controllerQualifier), string(controllerName)) : null);
+        return new Document(imports, (InstanceElement) toElement(0), controllerClassName);
+    }
+
+    private <C extends FxmlElement> List<C> children(int element, Class<C> childClass) {
+        List<C> children = new ArrayList<>();
+        for (int child = firstChildren[element]; child >= 0; child = nextSiblings[child]) {
+            children.add(childClass.cast(toElement(child)));
+        }
+        return children;
+    }
+
+    private QName qName(int element) {
+        return new QName(qualifier(element), name(element));
+    }
+
+    public FxmlElement toElement(int element) {
+        return switch (kind(element)) {
+            case INSTANTIATION_ELEMENT -> new InstantiationElement(qName(element), toInstantiation(element), id(element), children(element, FxmlElement.class));
+            case ROOT -> new Root(qName(element), children(element, FxmlElement.class));
+            case DEFINE -> new Define(children(element, InstantiationElement.class));
+            case REFERENCE -> new Reference(value(element));
+            case INCLUDE -> new Include(id(element), value(element));
+            case PROPERTY_ELEMENT -> new PropertyElement(name(element), children(element, InstanceElement.class));
+            case PROPERTY_VALUE -> new PropertyValue(name(element), toValueExpression(element));
+            case STATIC_PROPERTY -> new StaticProperty(qualifier(element), name(element), toValueExpression(element));
+        };
+    }
+
+    private Instantiation toInstantiation(int element) {
+        return switch (instantiationKind(element)) {
+            case CONSTRUCTOR -> new Instantiation.Constructor();
+            case FACTORY -> new Instantiation.Factory(value(element));
+            case VALUE -> new Instantiation.Value(value(element));
+            case CONSTANT -> new Instantiation.Constant(value(element));
+        };
+    }
+
+    private ValueExpression toValueExpression(int element) {
+        return switch (valueKind(element)) {
+            case STRING -> new ValueExpression.String(value(element));
+            case ID_REFERENCE -> new ValueExpression.IdReference(value(element));
+            case BINDING -> new ValueExpression.Binding(value(element));
+            case LOCATION -> new ValueExpression.Location(value(element));
+            case METHOD_REFERENCE -> new ValueExpression.MethodReference(value(element));
+        };
+    }
+}
@@ -1,5 +1,7 @@
 package no.hal.fxml.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashMap;
@@ -110,7 +112,7 @@ public class JavaCode {
     }
 
     public sealed interface Statement
-        permits Comment, VariableDeclaration, Return, ExecutableCall, FieldAssignment {
+        permits Comment, VariableDeclaration, Return, ExecutableCall, FieldAssignment, If {
     }
 
     public record Comment(String... commentLines) implements Statement {
@@ -164,6 +166,14 @@ public class JavaCode {
         }
     }
 
+    // if (condition) { statements }
+    public record If(Expression condition, List<Statement> statements) implements Statement {
+        @Override
+        public String toString() {
+            return "if (%s) {\n%s\n}".formatted(condition, statements2String(statements));
+        }
+    }
+
     public record Return(Expression expression) implements Statement {
         public Return(String variableName) {
             this(new VariableExpression(variableName));
@@ -175,7 +185,7 @@ public class JavaCode {
     }
 
     public sealed interface Expression
-        permits VariableExpression, Literal, Cast, ExecutableCall, LambdaExpression, LambdaMethodReference, FieldAssignment {
+        permits VariableExpression, Literal, Cast, ExecutableCall, LambdaExpression, LambdaMethodReference, FieldAssignment, UnaryOperation, BinaryOperation {
     }
 
     public record VariableExpression(String variableName)
@@ -193,14 +203,20 @@ public class JavaCode {
         }
         @Override
         public String toString() {
-            if (clazz == String.class) {
-                return "\"%s\"".formatted(literal);
+            if (clazz == String.class || clazz == Object.class) {
+                return "\"%s\"".formatted(escape(literal));
             } else if (clazz.isEnum()) {
                 return "%s.%s".formatted(clazz.getName(), literal);
-            } else {
+            } else if (clazz.isPrimitive()) {
                 return "(%s)%s".formatted(clazz.getName(), literal);
+            } else {
+                // e.g. Double or Color
+                return "%s.valueOf(\"%s\")".formatted(clazz.getCanonicalName(), escape(literal));
             }
         }
+        private static String escape(String s) {
+            return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t");
+        }
     }
 
     public record Cast(TypeRef type, Expression expression)
@@ -211,6 +227,24 @@ public class JavaCode {
         }
     }
 
+    // -(expression), the operand is always parenthesized
+    public record UnaryOperation(String operator, Expression operand)
+        implements Expression {
+        @Override
+        public String toString() {
+            return "%s(%s)".formatted(operator, operand);
+        }
+    }
+
+    // (left operator right), parenthesized, so nesting needn't consider precedence
+    public record BinaryOperation(String operator, Expression left, Expression right)
+        implements Expression {
+        @Override
+        public String toString() {
+            return "(%s %s %s)".formatted(left, operator, right);
+        }
+    }
+
     public sealed interface ObjectTarget
         permits ClassTarget, ExpressionTarget {
 
@@ -332,28 +366,36 @@ public class JavaCode {
     public static class Formatter {
 
         private Imports imports;
+        // whether names that aren't imported, are added to the imports, see formatStart(CompilationUnit)
+        private boolean addsImports = true;
 
-        public Formatter(Imports imports) {
+        private final Appendable output;
+
+        public Formatter(Imports imports, Appendable output) {
             this.imports = imports;
+            this.output = output;
+        }
+
+        public Formatter(Imports imports) {
+            this(imports, new StringBuilder());
         }
 
         public Formatter() {
             this(new Imports());
         }
 
-        private StringBuilder builder = new StringBuilder();
         private int indentLevel = 0;
         private String indentString = "   ";
 
         public static <T> String format(Imports imports, T t, BiConsumer<Formatter, T> format) {
             Formatter formatter = new Formatter(imports);
             format.accept(formatter, t);
-            return formatter.builder.toString();
+            return formatter.output.toString();
         }
         public static <T> String format(Imports imports, Consumer<Formatter> format) {
             Formatter formatter = new Formatter(imports);
             format.accept(formatter);
-            return formatter.builder.toString();
+            return formatter.output.toString();
         }
 
         public <T> String format(T t, BiConsumer<Formatter, T> format) {
@@ -364,12 +406,16 @@ public class JavaCode {
 
         @Override
         public String toString() {
-            return builder.toString();
+            return output.toString();
         }
 
         public boolean append(String s) {
             if (s != null) {
-                builder.append(s);
+                try {
+                    output.append(s);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
                 return s.length() > 0;
             }
             return false;
@@ -409,7 +455,7 @@ public class JavaCode {
         //
 
         public String toString(QName className) {
-            if (imports.importIfAvailable(className)) {
+            if (addsImports ? imports.importIfAvailable(className) : className.equals(imports.imports().get(className.className()))) {
                 return className.className();
             } else {
                 return className.toString();
@@ -452,7 +498,42 @@ public class JavaCode {
             }
         }
 
+        // formats the compilation unit up to the members of the main class, so they can be formatted one by one,
+        // e.g. while generated, so the imports are collected from the main class (and those already added) and fixed,
+        // and names that aren't imported are qualified
+        public void formatStart(CompilationUnit compilationUnit) {
+            if (compilationUnit.prePackageComment() != null) {
+                formatStatement(compilationUnit.prePackageComment());
+            }
+            append("""
+                package %s;
+    
+                """.formatted(compilationUnit.mainClass().className().packageName())
+            );
+            format(compilationUnit.mainClass(), Formatter::format);
+            format(imports);
+            addsImports = false;
+            newline();
+            if (compilationUnit.preClassComment() != null) {
+                formatStatement(compilationUnit.preClassComment());
+            }
+            formatStart(compilationUnit.mainClass());
+        }
+
+        public void formatEnd(CompilationUnit compilationUnit) {
+            formatEnd(compilationUnit.mainClass());
+            for (var classDeclaration : compilationUnit.otherClasses()) {
+                format(classDeclaration);
+            }
+        }
+
         public void format(ClassDeclaration classDeclaration) {
+            formatStart(classDeclaration);
+            classDeclaration.members().forEach(this::format);
+            formatEnd(classDeclaration);
+        }
+
+        public void formatStart(ClassDeclaration classDeclaration) {
             append("public class ");
             append(classDeclaration.className.className());
             if (classDeclaration.superClass() != null) {
@@ -464,7 +545,11 @@ public class JavaCode {
                 formatList("", classDeclaration.superInterfaces(), "", Formatter::format);
             }
             append(" {\n");
-            withIndentation(classDeclaration.members(), (f, m) -> m.forEach(f::format));
+            indentLevel++;
+        }
+
+        public void formatEnd(ClassDeclaration classDeclaration) {
+            indentLevel--;
             append("}\n");
         }
 
@@ -497,6 +582,12 @@ public class JavaCode {
         }
 
         public void format(MethodDeclaration method) {
+            formatStart(method);
+            format(method.body());
+            formatEnd(method);
+        }
+
+        public void formatStart(MethodDeclaration method) {
             indent();
             if (append(method.modifiers())) {
                 space();
@@ -509,7 +600,11 @@ public class JavaCode {
             space();
             append(method.methodName());
             formatList("(", method.parameters(), ") {\n", Formatter::format);
-            withIndentation(method.body(), Formatter::format);
+            indentLevel++;
+        }
+
+        public void formatEnd(MethodDeclaration method) {
+            indentLevel--;
             indent();
             append("}\n");
         }
@@ -560,8 +655,18 @@ public class JavaCode {
                 }
                 case ExecutableCall call -> formatExpression(call);
                 case FieldAssignment fieldAssignment -> formatExpression(fieldAssignment);
+                case If(Expression condition, List<Statement> statements) -> {
+                    append("if (");
+                    formatExpression(condition);
+                    append(") {\n");
+                    indentLevel++;
+                    format(statements);
+                    indentLevel--;
+                    indent();
+                    append("}");
+                }
             }
-            if (! (statement instanceof Comment)) {
+            if (! (statement instanceof Comment || statement instanceof If)) {
                 append(";");
             }
             newline();
@@ -586,9 +691,9 @@ public class JavaCode {
             switch (expression) {
                 case VariableExpression(String variableName) -> append(variableName);
                 case Literal(String literal, Class<?> clazz) -> {
-                    if (String.class.equals(clazz)) {
+                    if (String.class.equals(clazz) || Object.class.equals(clazz)) {
                         append("\"");
-                        append(literal);
+                        append(Literal.escape(literal));
                         append("\"");
                     } else if (clazz.isEnum()) {
                         format(QName.valueOf(clazz.getName()));
@@ -641,6 +746,21 @@ public class JavaCode {
                     append(" = ");
                     formatExpression(valueExpression);
                 }
+                case UnaryOperation(String operator, Expression operand) -> {
+                    append(operator);
+                    append("(");
+                    formatExpression(operand);
+                    append(")");
+                }
+                case BinaryOperation(String operator, Expression left, Expression right) -> {
+                    append("(");
+                    formatExpression(left);
+                    append(" ");
+                    append(operator);
+                    append(" ");
+                    formatExpression(right);
+                    append(")");
+                }
             }
         }
 
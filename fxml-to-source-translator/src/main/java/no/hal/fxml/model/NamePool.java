@@ -0,0 +1,50 @@
+package no.hal.fxml.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// shared pool of class and property names, and the QNames and TypeRefs parsed from them,
+// so the same names in many documents share one instance, and may be compared by identity
+public class NamePool {
+
+    // there are usually a few hundred names, the limit only guards against unbounded growth, e.g. with generated names
+    public final static int MAX_SIZE = 1 << 16;
+
+    private final static Map<String, String> NAMES = new ConcurrentHashMap<>();
+    private final static Map<String, QName> QNAMES = new ConcurrentHashMap<>();
+    private final static Map<String, TypeRef> TYPE_REFS = new ConcurrentHashMap<>();
+
+    public record Stats(int names, int qNames, int typeRefs) {
+    }
+
+    private NamePool() {
+    }
+
+    public static Stats getStats() {
+        return new Stats(NAMES.size(), QNAMES.size(), TYPE_REFS.size());
+    }
+
+    private static <T> T intern(Map<String, T> pool, String key, Function<String, T> factory) {
+        T value = pool.get(key);
+        if (value == null) {
+            if (pool.size() >= MAX_SIZE) {
+                return factory.apply(key);
+            }
+            value = pool.computeIfAbsent(key, factory);
+        }
+        return value;
+    }
+
+    public static String intern(String name) {
+        return (name != null ? intern(NAMES, name, Function.identity()) : null);
+    }
+
+    static QName qName(String name, Function<String, QName> factory) {
+        return intern(QNAMES, name, factory);
+    }
+
+    static TypeRef typeRef(String typeRef, Function<String, TypeRef> factory) {
+        return intern(TYPE_REFS, typeRef, factory);
+    }
+}
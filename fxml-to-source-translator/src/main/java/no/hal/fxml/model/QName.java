@@ -11,13 +11,20 @@ public record QName(String packageName, String className) {
         if (pos >= 0) {
             className = className.substring(0, pos) + "." + className.substring(pos + 1);
         }
+        packageName = NamePool.intern(packageName);
+        className = NamePool.intern(className);
     }
 
     public QName(String className) {
         this(null, className);
     }
     
+    // parsed QNames are pooled, so the same name gives the same instance, see NamePool
     public static QName valueOf(String name) {
+        return NamePool.qName(name, QName::parse);
+    }
+
+    private static QName parse(String name) {
         int pos = name.lastIndexOf('.');
         if (pos < 0) {
             if (Character.isLowerCase(name.charAt(0))) {
@@ -37,8 +37,9 @@ public record TypeRef(QName typeName, List<TypeRef> typeParams) {
         }
     }
 
+    // parsed TypeRefs are pooled, like QNames, see NamePool
     public static TypeRef valueOf(String typeRef) {
-        return new TypeRefParser(typeRef).parse();
+        return NamePool.typeRef(typeRef, tr -> new TypeRefParser(tr).parse());
     }
     public static TypeRef of(Class<?> clazz, Class<?>... typeParams) {
         return valueOf(clazz.getName() + Stream.of(typeParams).map(tp -> tp != null ? tp.getName() : "?").collect(Collectors.joining(", ", "<", ">")));
@@ -79,7 +80,8 @@ class TypeRefParser {
                 throw new IllegalArgumentException("Malformed TypeRef, expected , or > @ " + position + ": " + typeRef);
             }
         }
-        return typeRefs;
+        // shared when pooled, so must be immutable
+        return List.copyOf(typeRefs);
     }
 
     TypeRef parse() {
@@ -22,7 +22,10 @@ public sealed interface ValueExpression {
     }
 
     // ${label.text}
-    public record Binding(java.lang.String source) implements ValueExpression {
+    public record Binding(java.lang.String source, BindingExpression expression) implements ValueExpression {
+        public Binding(java.lang.String source) {
+            this(source, BindingExpression.valueOf(source));
+        }
         @Override
         public java.lang.String toShortString() {
             return "\"{%s}\"".formatted(source);
@@ -0,0 +1,63 @@
+package no.hal.fxml.parser;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamException;
+
+// the children of an element, where the content is parsed when first accessed, see FxmlParser.parseFxmlLazily,
+// the parts that are parsed up front, e.g. the attributes, come first
+class DeferredContent<C> extends AbstractList<C> {
+
+    private final List<C> parsedChildren;
+    private final Class<C> allowsChild;
+    private final Set<String> deferredElements;
+    private FxmlTokenizer contentTokenizer;
+
+    private volatile List<C> children;
+
+    DeferredContent(List<C> parsedChildren, Class<C> allowsChild, FxmlTokenizer contentTokenizer, Set<String> deferredElements) {
+        this.parsedChildren = parsedChildren;
+        this.allowsChild = allowsChild;
+        this.contentTokenizer = contentTokenizer;
+        this.deferredElements = deferredElements;
+    }
+
+    public boolean isParsed() {
+        return children != null;
+    }
+
+    private List<C> children() {
+        var result = children;
+        if (result == null) {
+            synchronized (this) {
+                if (children == null) {
+                    List<C> parsed = new ArrayList<>(parsedChildren);
+                    try {
+                        FxmlParser.parseDeferredContent(contentTokenizer, deferredElements, allowsChild, parsed);
+                    } catch (XMLStreamException e) {
+                        throw new IllegalStateException("Malformed deferred content: " + e.getMessage(), e);
+                    }
+                    children = Collections.unmodifiableList(parsed);
+                    // the characters are no longer needed
+                    contentTokenizer = null;
+                }
+                result = children;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public C get(int index) {
+        return children().get(index);
+    }
+
+    @Override
+    public int size() {
+        return children().size();
+    }
+}
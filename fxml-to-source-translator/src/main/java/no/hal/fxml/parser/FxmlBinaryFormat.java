@@ -0,0 +1,418 @@
+package no.hal.fxml.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import no.hal.fxml.model.FxmlCode.Define;
+import no.hal.fxml.model.FxmlCode.Document;
+import no.hal.fxml.model.FxmlCode.FxmlElement;
+import no.hal.fxml.model.FxmlCode.Import;
+import no.hal.fxml.model.FxmlCode.Include;
+import no.hal.fxml.model.FxmlCode.InstanceElement;
+import no.hal.fxml.model.FxmlCode.InstantiationElement;
+import no.hal.fxml.model.FxmlCode.PropertyElement;
+import no.hal.fxml.model.FxmlCode.PropertyValue;
+import no.hal.fxml.model.FxmlCode.Reference;
+import no.hal.fxml.model.FxmlCode.Root;
+import no.hal.fxml.model.FxmlCode.StaticProperty;
+import no.hal.fxml.model.Instantiation;
+import no.hal.fxml.model.NamePool;
+import no.hal.fxml.model.QName;
+import no.hal.fxml.model.ValueExpression;
+
+// compact binary encoding of a Document, stored in .fxmlb files, so documents can be loaded without parsing xml:
+// magic, version (u16), string count (varint), strings (varint length + UTF-8), document
+// strings (names, ids and values) are stored once in the string table and referenced by index + 1, with 0 for null,
+// elements, instantiations and value expressions are written as a tag byte followed by their components, and ints as varints
+public class FxmlBinaryFormat {
+
+    public final static String FILE_EXTENSION = ".fxmlb";
+
+    private final static byte[] MAGIC = { 'F', 'X', 'M', 'B' };
+    public final static int VERSION = 1;
+
+    // element tags
+    private final static int INSTANTIATION_ELEMENT = 1, ROOT = 2, DEFINE = 3, REFERENCE = 4, INCLUDE = 5,
+        PROPERTY_ELEMENT = 6, PROPERTY_VALUE = 7, STATIC_PROPERTY = 8;
+
+    // instantiation tags
+    private final static int CONSTRUCTOR = 0, FACTORY = 1, VALUE = 2, CONSTANT = 3;
+
+    // value expression tags
+    private final static int STRING = 0, ID_REFERENCE = 1, BINDING = 2, LOCATION = 3, METHOD_REFERENCE = 4;
+
+    private FxmlBinaryFormat() {
+    }
+
+    // writing
+
+    public static byte[] toBytes(Document document) {
+        var writer = new Writer();
+        writer.writeDocument(document);
+        var output = new ByteArrayOutputStream(writer.body.size() + writer.strings.size() * 16 + 16);
+        output.writeBytes(MAGIC);
+        output.write(VERSION >> 8);
+        output.write(VERSION);
+        writeInt(output, writer.strings.size());
+        for (var string : writer.strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeInt(output, bytes.length);
+            output.writeBytes(bytes);
+        }
+        output.writeBytes(writer.body.toByteArray());
+        return output.toByteArray();
+    }
+
+    public static void write(Document document, OutputStream output) throws IOException {
+        output.write(toBytes(document));
+    }
+
+    public static void write(Document document, Path path) throws IOException {
+        Files.write(path, toBytes(document));
+    }
+
+    private static void writeInt(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7f) != 0) {
+            output.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    private static class Writer {
+
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> stringIndices = new HashMap<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        private void writeTag(int tag) {
+            body.write(tag);
+        }
+
+        private void writeInt(int value) {
+            FxmlBinaryFormat.writeInt(body, value);
+        }
+
+        private void writeString(String string) {
+            if (string == null) {
+                writeInt(0);
+            } else {
+                writeInt(stringIndices.computeIfAbsent(string, s -> {
+                    strings.add(s);
+                    return strings.size();
+                }));
+            }
+        }
+
+        private void writeQName(QName qName) {
+            if (qName == null) {
+                writeTag(0);
+            } else {
+                writeTag(1);
+                writeString(qName.packageName());
+                writeString(qName.className());
+            }
+        }
+
+        private void writeDocument(Document document) {
+            writeInt(document.imports().size());
+            for (var fxImport : document.imports()) {
+                writeQName(fxImport.qName());
+                writeTag(fxImport.wildcard() ? 1 : 0);
+            }
+            writeQName(document.controllerClassName());
+            writeElement(document.instanceElement());
+        }
+
+        private void writeElements(List<? extends FxmlElement> elements) {
+            writeInt(elements.size());
+            for (var element : elements) {
+                writeElement(element);
+            }
+        }
+
+        private void writeElement(FxmlElement element) {
+            switch (element) {
+                case InstantiationElement(QName className, Instantiation instantiation, String id, List<FxmlElement> children) -> {
+                    writeTag(INSTANTIATION_ELEMENT);
+                    writeQName(className);
+                    writeInstantiation(instantiation);
+                    writeString(id);
+                    writeElements(children);
+                }
+                case Root(QName typeName, List<FxmlElement> children) -> {
+                    writeTag(ROOT);
+                    writeQName(typeName);
+                    writeElements(children);
+                }
+                case Define(List<InstantiationElement> children) -> {
+                    writeTag(DEFINE);
+                    writeElements(children);
+                }
+                case Reference(String source) -> {
+                    writeTag(REFERENCE);
+                    writeString(source);
+                }
+                case Include(String id, String source) -> {
+                    writeTag(INCLUDE);
+                    writeString(id);
+                    writeString(source);
+                }
+                case PropertyElement(String propertyName, List<InstanceElement> children) -> {
+                    writeTag(PROPERTY_ELEMENT);
+                    writeString(propertyName);
+                    writeElements(children);
+                }
+                case PropertyValue(String propertyName, ValueExpression value) -> {
+                    writeTag(PROPERTY_VALUE);
+                    writeString(propertyName);
+                    writeValueExpression(value);
+                }
+                case StaticProperty(String className, String propertyName, ValueExpression value) -> {
+                    writeTag(STATIC_PROPERTY);
+                    writeString(className);
+                    writeString(propertyName);
+                    writeValueExpression(value);
+                }
+                default -> throw new IllegalArgumentException("Unsupported element: " + element);
+            }
+        }
+
+        private void writeInstantiation(Instantiation instantiation) {
+            switch (instantiation) {
+                case Instantiation.Constructor() -> writeTag(CONSTRUCTOR);
+                case Instantiation.Factory(String methodName) -> {
+                    writeTag(FACTORY);
+                    writeString(methodName);
+                }
+                case Instantiation.Value(String valueString) -> {
+                    writeTag(VALUE);
+                    writeString(valueString);
+                }
+                case Instantiation.Constant(String constantName) -> {
+                    writeTag(CONSTANT);
+                    writeString(constantName);
+                }
+            }
+        }
+
+        private void writeValueExpression(ValueExpression value) {
+            switch (value) {
+                case ValueExpression.String(String string) -> {
+                    writeTag(STRING);
+                    writeString(string);
+                }
+                case ValueExpression.IdReference(String source) -> {
+                    writeTag(ID_REFERENCE);
+                    writeString(source);
+                }
+                case ValueExpression.Binding(String source, var _) -> {
+                    writeTag(BINDING);
+                    writeString(source);
+                }
+                case ValueExpression.Location(String location) -> {
+                    writeTag(LOCATION);
+                    writeString(location);
+                }
+                case ValueExpression.MethodReference(String methodName) -> {
+                    writeTag(METHOD_REFERENCE);
+                    writeString(methodName);
+                }
+            }
+        }
+    }
+
+    // reading
+
+    // reads the document directly from the buffer, e.g. a memory-mapped file, without copying it,
+    // strings are only decoded when first referenced
+    public static Document read(ByteBuffer buffer) throws IOException {
+        try {
+            return new Reader(buffer.slice()).readDocument();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Truncated " + FILE_EXTENSION + " content", e);
+        }
+    }
+
+    public static Document read(byte[] bytes) throws IOException {
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    public static Document read(InputStream input) throws IOException {
+        return read(input.readAllBytes());
+    }
+
+    // memory-maps the file, the mapping stays valid after the channel is closed
+    public static Document read(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // whether the bytes start like the binary format, e.g. to choose between this and FxmlParser
+    public static boolean isBinaryFormat(ByteBuffer buffer) {
+        if (buffer.remaining() < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(buffer.position() + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Reader {
+
+        private final ByteBuffer buffer;
+
+        // offsets and lengths of the strings in the buffer, and the strings decoded so far
+        private int[] stringOffsets;
+        private int[] stringLengths;
+        private String[] strings;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private int readTag() {
+            return buffer.get() & 0xff;
+        }
+
+        private int readInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = buffer.get();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint at " + buffer.position());
+        }
+
+        private String readString() throws IOException {
+            int index = readInt();
+            if (index == 0) {
+                return null;
+            }
+            if (index > strings.length) {
+                throw new IOException("Illegal string index " + index);
+            }
+            String string = strings[index - 1];
+            if (string == null) {
+                byte[] bytes = new byte[stringLengths[index - 1]];
+                buffer.get(stringOffsets[index - 1], bytes);
+                string = new String(bytes, StandardCharsets.UTF_8);
+                strings[index - 1] = string;
+            }
+            return string;
+        }
+
+        // property names are shared with other documents, see NamePool
+        private String readName() throws IOException {
+            return NamePool.intern(readString());
+        }
+
+        private QName readQName() throws IOException {
+            if (readTag() == 0) {
+                return null;
+            }
+            return new QName(readString(), readString());
+        }
+
+        private Document readDocument() throws IOException {
+            if (! isBinaryFormat(buffer)) {
+                throw new IOException("Not " + FILE_EXTENSION + " content");
+            }
+            buffer.position(buffer.position() + MAGIC.length);
+            int version = (readTag() << 8) | readTag();
+            if (version != VERSION) {
+                throw new IOException("Unsupported " + FILE_EXTENSION + " version " + version + ", expected " + VERSION);
+            }
+            int stringCount = readInt();
+            stringOffsets = new int[stringCount];
+            stringLengths = new int[stringCount];
+            strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                stringLengths[i] = readInt();
+                stringOffsets[i] = buffer.position();
+                buffer.position(buffer.position() + stringLengths[i]);
+            }
+            int importCount = readInt();
+            List<Import> imports = new ArrayList<>(importCount);
+            for (int i = 0; i < importCount; i++) {
+                imports.add(new Import(readQName(), readTag() != 0));
+            }
+            QName controllerClassName = readQName();
+            if (! (readElement() instanceof InstanceElement instanceElement)) {
+                throw new IOException("Illegal root element");
+            }
+            return new Document(imports, instanceElement, controllerClassName);
+        }
+
+        private <C extends FxmlElement> List<C> readElements(Class<C> elementClass) throws IOException {
+            int count = readInt();
+            List<C> elements = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                var element = readElement();
+                if (! elementClass.isInstance(element)) {
+                    throw new IOException("Unexpected element: " + element);
+                }
+                elements.add(elementClass.cast(element));
+            }
+            return elements;
+        }
+
+        private FxmlElement readElement() throws IOException {
+            int tag = readTag();
+            return switch (tag) {
+                case INSTANTIATION_ELEMENT -> new InstantiationElement(readQName(), readInstantiation(), readString(), readElements(FxmlElement.class));
+                case ROOT -> new Root(readQName(), readElements(FxmlElement.class));
+                case DEFINE -> new Define(readElements(InstantiationElement.class));
+                case REFERENCE -> new Reference(readString());
+                case INCLUDE -> new Include(readString(), readString());
+                case PROPERTY_ELEMENT -> new PropertyElement(readName(), readElements(InstanceElement.class));
+                case PROPERTY_VALUE -> new PropertyValue(readName(), readValueExpression());
+                case STATIC_PROPERTY -> new StaticProperty(readName(), readName(), readValueExpression());
+                default -> throw new IOException("Unknown element tag " + tag);
+            };
+        }
+
+        private Instantiation readInstantiation() throws IOException {
+            int tag = readTag();
+            return switch (tag) {
+                case CONSTRUCTOR -> new Instantiation.Constructor();
+                case FACTORY -> new Instantiation.Factory(readString());
+                case VALUE -> new Instantiation.Value(readString());
+                case CONSTANT -> new Instantiation.Constant(readString());
+                default -> throw new IOException("Unknown instantiation tag " + tag);
+            };
+        }
+
+        private ValueExpression readValueExpression() throws IOException {
+            int tag = readTag();
+            return switch (tag) {
+                case STRING -> new ValueExpression.String(readString());
+                case ID_REFERENCE -> new ValueExpression.IdReference(readString());
+                case BINDING -> new ValueExpression.Binding(readString());
+                case LOCATION -> new ValueExpression.Location(readString());
+                case METHOD_REFERENCE -> new ValueExpression.MethodReference(readString());
+                default -> throw new IOException("Unknown value expression tag " + tag);
+            };
+        }
+    }
+}
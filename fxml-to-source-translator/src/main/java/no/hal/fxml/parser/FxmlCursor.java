@@ -0,0 +1,45 @@
+package no.hal.fxml.parser;
+
+import javax.xml.stream.XMLStreamException;
+
+// cursor over the parts of xml that fxml uses, provided by each parser backend
+// namespace URIs are XMLConstants.NULL_NS_URI, when there is none
+interface FxmlCursor extends AutoCloseable {
+
+    enum Token { PROCESSING_INSTRUCTION, START_ELEMENT, END_ELEMENT, CHARACTERS, END_DOCUMENT }
+
+    // advances to the next token, skipping comments, the document start and other tokens that fxml doesn't use
+    Token next() throws XMLStreamException;
+
+    // START_ELEMENT
+
+    String getNamespaceURI();
+
+    String getLocalName();
+
+    int getAttributeCount();
+
+    String getAttributeNamespace(int index);
+
+    String getAttributeLocalName(int index);
+
+    String getAttributeValue(int index);
+
+    // the value of the attribute, or null if there is none
+    String getAttributeValue(String namespaceURI, String localName);
+
+    // CHARACTERS
+
+    String getText();
+
+    boolean isWhiteSpace();
+
+    // PROCESSING_INSTRUCTION
+
+    String getPITarget();
+
+    String getPIData();
+
+    @Override
+    void close() throws XMLStreamException;
+}
@@ -1,28 +1,39 @@
 package no.hal.fxml.parser;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.function.Function;
 
 import javax.xml.XMLConstants;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.Characters;
-import javax.xml.stream.events.ProcessingInstruction;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
 import javafx.fxml.FXMLLoader;
+import no.hal.fxml.model.BindingExpression;
+import no.hal.fxml.model.FxmlCode.BeanProperty;
 import no.hal.fxml.model.FxmlCode.Define;
 import no.hal.fxml.model.FxmlCode.Document;
 import no.hal.fxml.model.FxmlCode.FxmlElement;
@@ -40,97 +51,399 @@ import no.hal.fxml.model.Instantiation.Constant;
 import no.hal.fxml.model.Instantiation.Constructor;
 import no.hal.fxml.model.Instantiation.Factory;
 import no.hal.fxml.model.Instantiation.Value;
+import no.hal.fxml.model.NamePool;
 import no.hal.fxml.model.QName;
 import no.hal.fxml.model.ValueExpression;
+import no.hal.fxml.parser.FxmlCursor.Token;
 
 public class FxmlParser {
     
     public final static String FXML_NAMESPACE_URI = "http://javafx.com/fxml";
 
-    private final XMLEventReader xmlEventReader;
+    // how the xml is read
+    public enum Backend {
+        // XMLEventReader, which allocates an event per tag, attribute and text
+        EVENT,
+        // XMLStreamReader cursor access, the default
+        STREAM,
+        // FxmlTokenizer, which reads the characters directly, without StAX setup cost, see FxmlTokenizer
+        TOKENIZER
+    }
+
+    // the factory is created and configured once, since XMLInputFactory.newInstance() is a service lookup,
+    // readers are created while holding its lock, since factories aren't guaranteed to be thread-safe
+    private final static XMLInputFactory XML_INPUT_FACTORY = createXMLInputFactory();
 
-    private FxmlParser(XMLEventReader xmlEventReader) {
-        this.xmlEventReader = xmlEventReader;
+    private static XMLInputFactory createXMLInputFactory() {
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        // text split by entities or CDATA sections is provided as one
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return xmlInputFactory;
     }
 
-    public static Document parseFxml(XMLEventReader xmlEventReader) throws Exception  {
-        FxmlParser parser = new FxmlParser(xmlEventReader);
+    private interface ReaderFactory<T> {
+        T create(XMLInputFactory xmlInputFactory) throws XMLStreamException;
+    }
+
+    private static FxmlCursor createCursor(Backend backend, ReaderFactory<XMLStreamReader> streamReaderFactory, ReaderFactory<XMLEventReader> eventReaderFactory) throws XMLStreamException {
+        synchronized (XML_INPUT_FACTORY) {
+            return switch (backend) {
+                case EVENT -> new XMLEventCursor(eventReaderFactory.create(XML_INPUT_FACTORY));
+                case STREAM -> new XMLStreamCursor(streamReaderFactory.create(XML_INPUT_FACTORY));
+                case TOKENIZER -> throw new IllegalArgumentException(backend + " doesn't use an XMLInputFactory");
+            };
+        }
+    }
+
+    private final FxmlCursor cursor;
+    // elements with content that is parsed when first accessed, see parseFxmlLazily
+    private final Set<String> deferredElements;
+
+    // receives the elements instead of them being added to their parent, see parseFxml(Reader, FxmlVisitor)
+    private final FxmlVisitor visitor;
+
+    private FxmlParser(FxmlCursor cursor, Set<String> deferredElements, FxmlVisitor visitor) {
+        this.cursor = cursor;
+        this.deferredElements = deferredElements;
+        this.visitor = visitor;
+    }
+
+    private FxmlParser(FxmlCursor cursor, Set<String> deferredElements) {
+        this(cursor, deferredElements, null);
+    }
+
+    private FxmlParser(FxmlCursor cursor) {
+        this(cursor, Set.of());
+    }
+
+    private static Document parseFxml(FxmlCursor cursor) throws Exception {
+        FxmlParser parser = new FxmlParser(cursor);
         try {
             return parser.parseFxml();
         } finally {
-            xmlEventReader.close();
+            cursor.close();
+        }
+    }
+
+    public static Document parseFxml(XMLEventReader xmlEventReader) throws Exception  {
+        return parseFxml(new XMLEventCursor(xmlEventReader));
+    }
+
+    public static Document parseFxml(XMLStreamReader xmlStreamReader) throws Exception  {
+        return parseFxml(new XMLStreamCursor(xmlStreamReader));
+    }
+
+    public static Document parseFxml(Reader reader, Backend backend) throws Exception {
+        if (backend == Backend.TOKENIZER) {
+            return parseFxml(new FxmlTokenizer(readChars(reader)));
         }
+        return parseFxml(createCursor(backend, factory -> factory.createXMLStreamReader(reader), factory -> factory.createXMLEventReader(reader)));
+    }
+
+    private static CharSequence readChars(Reader reader) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[8192];
+        int count;
+        while ((count = reader.read(buffer)) >= 0) {
+            builder.append(buffer, 0, count);
+        }
+        return builder;
     }
 
     public static Document parseFxml(Reader reader) throws Exception {
-        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
-        return FxmlParser.parseFxml(xmlInputFactory.createXMLEventReader(reader));
+        return parseFxml(reader, Backend.STREAM);
+    }
+
+    public static Document parseFxml(CharSequence fxml, Backend backend) throws Exception {
+        if (backend == Backend.TOKENIZER) {
+            return parseFxml(new FxmlTokenizer(fxml));
+        }
+        return parseFxml(new StringReader(fxml.toString()), backend);
     }
+
     public static Document parseFxml(String fxml) throws Exception {
         return parseFxml(new StringReader(fxml));
     }
 
+    // tokenizes the characters directly, see Backend.TOKENIZER
+    public static Document parseFxml(char[] fxml) throws Exception {
+        return parseFxml(CharBuffer.wrap(fxml), Backend.TOKENIZER);
+    }
+
+    // the stream is read, but not closed, that's up to the caller
+    public static Document parseFxml(InputStream input, Backend backend) throws Exception {
+        if (backend == Backend.TOKENIZER) {
+            return parseFxml(new FxmlTokenizer(decodeChars(ByteBuffer.wrap(input.readAllBytes()))));
+        }
+        return parseFxml(createCursor(backend, factory -> factory.createXMLStreamReader(input), factory -> factory.createXMLEventReader(input)));
+    }
+
     public static Document parseFxml(InputStream input) throws Exception {
-        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
-        return FxmlParser.parseFxml(xmlInputFactory.createXMLEventReader(input));
+        return parseFxml(input, Backend.STREAM);
     }
 
-    public static Document parseFxml(URL url) throws Exception {
-        return FxmlParser.parseFxml(url.openStream());
+    // decodes with the encoding of the byte order mark or xml declaration, and otherwise UTF-8
+    private static CharSequence decodeChars(ByteBuffer bytes) throws IOException {
+        int start = bytes.position(), length = bytes.remaining();
+        if (length >= 3 && (bytes.get(start) & 0xff) == 0xef && (bytes.get(start + 1) & 0xff) == 0xbb && (bytes.get(start + 2) & 0xff) == 0xbf) {
+            return decode(StandardCharsets.UTF_8, bytes.position(start + 3));
+        }
+        if (length >= 2 && ((bytes.get(start) & 0xff) == 0xfe && (bytes.get(start + 1) & 0xff) == 0xff || (bytes.get(start) & 0xff) == 0xff && (bytes.get(start + 1) & 0xff) == 0xfe)) {
+            return decode(StandardCharsets.UTF_16, bytes);
+        }
+        Charset charset = StandardCharsets.UTF_8;
+        // the xml declaration is ascii
+        byte[] headBytes = new byte[Math.min(length, 100)];
+        bytes.get(start, headBytes);
+        String head = new String(headBytes, StandardCharsets.ISO_8859_1);
+        int declEnd = (head.startsWith("<?xml") ? head.indexOf("?>") : -1);
+        int encodingPos = (declEnd > 0 ? head.indexOf("encoding", 0) : -1);
+        if (encodingPos > 0 && encodingPos < declEnd) {
+            int pos = encodingPos + "encoding".length();
+            while (pos < declEnd && head.charAt(pos) != '"' && head.charAt(pos) != '\'') {
+                pos++;
+            }
+            int end = (pos < declEnd ? head.indexOf(head.charAt(pos), pos + 1) : -1);
+            if (end > pos) {
+                charset = Charset.forName(head.substring(pos + 1, end));
+            }
+        }
+        return decode(charset, bytes);
+    }
+
+    private static CharSequence decode(Charset charset, ByteBuffer bytes) throws IOException {
+        // reports malformed input, rather than replacing it
+        return charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT)
+            .decode(bytes);
+    }
+
+    // files larger than this are memory-mapped rather than read into the heap
+    public final static long MAPPED_SIZE_THRESHOLD = 1 << 20;
+
+    // reads the file with a FileChannel, memory-mapped if large, and closes it before parsing,
+    // since a mapping stays valid after its channel is closed
+    private static ByteBuffer readBytes(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAPPED_SIZE_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer bytes = ByteBuffer.allocate((int) size);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes) < 0) {
+                    break;
+                }
+            }
+            return bytes.flip();
+        }
+    }
+
+    public static Document parseFxml(Path path, Backend backend) throws Exception {
+        return parseFxml(readBytes(path), backend, path.toUri().toString());
+    }
+
+    private static Document parseFxml(ByteBuffer bytes, Backend backend, String systemId) throws Exception {
+        if (backend == Backend.TOKENIZER) {
+            return parseFxml(new FxmlTokenizer(decodeChars(bytes)));
+        }
+        InputStream input = (bytes.hasArray()
+            ? new ByteArrayInputStream(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining())
+            : new ByteBufferInputStream(bytes)
+        );
+        // the system id lets the parser report errors with the file name
+        return parseFxml(createCursor(backend, factory -> factory.createXMLStreamReader(systemId, input), factory -> factory.createXMLEventReader(systemId, input)));
+    }
+
+    public static Document parseFxml(Path path) throws Exception {
+        return parseFxml(path, Backend.STREAM);
     }
 
     public static Document parseFxml(File file) throws Exception {
-        return FxmlParser.parseFxml(new FileInputStream(file));
+        return parseFxml(file.toPath());
     }
 
-    private Document parseFxml() throws XMLStreamException {
-        var initialEvent = xmlEventReader.nextEvent();
-        if (! initialEvent.isStartDocument()) {
-            throw new XMLStreamException("Expected StartDocument");
+    public static Document parseFxml(URL url) throws Exception {
+        if ("file".equals(url.getProtocol())) {
+            return parseFxml(Path.of(url.toURI()));
+        }
+        try (var input = url.openStream()) {
+            return parseFxml(input);
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer bytes;
+
+        ByteBufferInputStream(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            return (bytes.hasRemaining() ? bytes.get() & 0xff : -1);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (! bytes.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, bytes.remaining());
+            bytes.get(buffer, offset, count);
+            return count;
+        }
+    }
+
+    // lazy parsing
+
+    // the elements that are deferred by default, fxml namespace elements are given with the fx: prefix
+    public final static Set<String> DEFAULT_DEFERRED_ELEMENTS = Set.of("fx:" + FXMLLoader.DEFINE_TAG, "Tab", "TitledPane");
+
+    // parses with the TOKENIZER backend, but the content of the given elements is only checked for well-formedness,
+    // and parsed when the children list is first accessed, the characters are kept until then
+    public static Document parseFxmlLazily(CharSequence fxml, Set<String> deferredElements) throws Exception {
+        FxmlParser parser = new FxmlParser(new FxmlTokenizer(fxml), deferredElements);
+        return parser.parseFxml();
+    }
+
+    public static Document parseFxmlLazily(CharSequence fxml) throws Exception {
+        return parseFxmlLazily(fxml, DEFAULT_DEFERRED_ELEMENTS);
+    }
+
+    public static Document parseFxmlLazily(Path path, Set<String> deferredElements) throws Exception {
+        return parseFxmlLazily(decodeChars(readBytes(path)), deferredElements);
+    }
+
+    public static Document parseFxmlLazily(Path path) throws Exception {
+        return parseFxmlLazily(path, DEFAULT_DEFERRED_ELEMENTS);
+    }
+
+    static <C> void parseDeferredContent(FxmlTokenizer contentTokenizer, Set<String> deferredElements, Class<C> allowsChild, List<? super C> children) throws XMLStreamException {
+        new FxmlParser(contentTokenizer, deferredElements).parseContent(allowsChild, children);
+    }
+
+    // parses the content of the current element into children, or skips it and returns a list that parses it when accessed,
+    // if the element is deferred
+    private <C> List<C> parseChildren(String elementName, Class<C> allowsChild, List<C> children) throws XMLStreamException {
+        if (cursor instanceof FxmlTokenizer tokenizer && deferredElements.contains(elementName)) {
+            var contentTokenizer = tokenizer.contentTokenizer();
+            if (contentTokenizer != null) {
+                tokenizer.skipContent();
+                return new DeferredContent<>(children, allowsChild, contentTokenizer, deferredElements);
+            }
+        }
+        parseContent(allowsChild, children);
+        return children;
+    }
+
+    // streaming
+
+    // parses with the STREAM backend, giving the elements to the visitor as they start and end, without building the tree,
+    // so only the elements being parsed are kept
+    public static void parseFxml(Reader reader, FxmlVisitor visitor) throws Exception {
+        parseFxml(createCursor(Backend.STREAM, factory -> factory.createXMLStreamReader(reader), null), visitor);
+    }
+
+    // the stream is read, but not closed, that's up to the caller
+    public static void parseFxml(InputStream input, FxmlVisitor visitor) throws Exception {
+        parseFxml(createCursor(Backend.STREAM, factory -> factory.createXMLStreamReader(input), null), visitor);
+    }
+
+    public static void parseFxml(Path path, FxmlVisitor visitor) throws Exception {
+        try (var input = new BufferedInputStream(Files.newInputStream(path))) {
+            String systemId = path.toUri().toString();
+            parseFxml(createCursor(Backend.STREAM, factory -> factory.createXMLStreamReader(systemId, input), null), visitor);
         }
-        XMLEvent nextEvent;
+    }
+
+    private static void parseFxml(FxmlCursor cursor, FxmlVisitor visitor) throws Exception {
+        FxmlParser parser = new FxmlParser(cursor, Set.of(), visitor);
+        try {
+            parser.parseFxml();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // parsing many files
+
+    public record ParsedFxml(Path path, Document document, Exception exception) {
+    }
+
+    public final static int DEFAULT_MAX_OPEN_FILES = 16;
+
+    // parses all .fxml files in the directory tree, in parallel, but with at most maxOpenFiles files open at a time,
+    // the results are sorted by path, with the exception instead of the document for files that failed
+    public static List<ParsedFxml> parseFxmlTree(Path root, Backend backend, int maxOpenFiles) throws Exception {
+        List<Path> paths;
+        try (var files = Files.find(root, Integer.MAX_VALUE, (path, attributes) -> attributes.isRegularFile() && path.getFileName().toString().endsWith(".fxml"))) {
+            paths = files.sorted().toList();
+        }
+        Semaphore openFiles = new Semaphore(maxOpenFiles);
+        List<Future<ParsedFxml>> futures = new ArrayList<>(paths.size());
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var path : paths) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        ByteBuffer bytes;
+                        openFiles.acquire();
+                        try {
+                            bytes = readBytes(path);
+                        } finally {
+                            openFiles.release();
+                        }
+                        return new ParsedFxml(path, parseFxml(bytes, backend, path.toUri().toString()), null);
+                    } catch (Exception e) {
+                        return new ParsedFxml(path, null, e);
+                    }
+                }));
+            }
+        }
+        List<ParsedFxml> results = new ArrayList<>(futures.size());
+        for (var future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    public static List<ParsedFxml> parseFxmlTree(Path root) throws Exception {
+        return parseFxmlTree(root, Backend.STREAM, DEFAULT_MAX_OPEN_FILES);
+    }
+
+    private Document parseFxml() throws XMLStreamException {
+        Token token;
         List<Import> imports = new ArrayList<>();
-        while (! (nextEvent = xmlEventReader.nextEvent()).isEndDocument()) {
-            if (nextEvent instanceof ProcessingInstruction pi && FXMLLoader.IMPORT_PROCESSING_INSTRUCTION.equals(pi.getTarget())) {
-                imports.add(parseImport(pi));
-            } else if (nextEvent instanceof StartElement element) {
-                FxmlElement fxmlElement = parseStartElement(element);
+        while ((token = cursor.next()) != Token.END_DOCUMENT) {
+            if (token == Token.PROCESSING_INSTRUCTION && FXMLLoader.IMPORT_PROCESSING_INSTRUCTION.equals(cursor.getPITarget())) {
+                imports.add(parseImport(cursor.getPIData()));
+            } else if (token == Token.START_ELEMENT) {
+                String controllerAttr = cursor.getAttributeValue(FXML_NAMESPACE_URI, FXMLLoader.FX_CONTROLLER_ATTRIBUTE);
+                QName controllerClassName = (controllerAttr != null ? QName.valueOf(controllerAttr) : null);
+                if (visitor != null) {
+                    visitor.startDocument(imports, controllerClassName);
+                }
+                FxmlElement fxmlElement = parseStartElement();
                 if (! (fxmlElement instanceof InstanceElement instanceElement)) {
                     throw new XMLStreamException("Illegal root element: " + fxmlElement);
                 }
-                Attribute controllerAttr = element.getAttributeByName(CONTROLLER_QNAME);
-                QName controllerClassName = (controllerAttr != null ? QName.valueOf(controllerAttr.getValue()) : null);
+                if (visitor != null) {
+                    visitor.endDocument();
+                }
                 return new Document(imports, instanceElement, controllerClassName);
             }
         }
         throw new XMLStreamException("Illegal fxml document");
     }
 
-    // element names
-    private final static javax.xml.namespace.QName ROOT_QNAME = new javax.xml.namespace.QName(FXML_NAMESPACE_URI, FXMLLoader.ROOT_TAG);
-    private final static javax.xml.namespace.QName TYPE_QNAME = new javax.xml.namespace.QName(XMLConstants.NULL_NS_URI, FXMLLoader.ROOT_TYPE_ATTRIBUTE);
-
-    private final static javax.xml.namespace.QName DEFINE_QNAME = new javax.xml.namespace.QName(FXML_NAMESPACE_URI, FXMLLoader.DEFINE_TAG);
-    private final static javax.xml.namespace.QName INCLUDE_QNAME = new javax.xml.namespace.QName(FXML_NAMESPACE_URI, FXMLLoader.INCLUDE_TAG);
-    private final static javax.xml.namespace.QName INCLUDE_SOURCE_QNAME = new javax.xml.namespace.QName(XMLConstants.NULL_NS_URI, FXMLLoader.INCLUDE_SOURCE_ATTRIBUTE);
-    private final static javax.xml.namespace.QName REFERENCE_QNAME = new javax.xml.namespace.QName(FXML_NAMESPACE_URI, FXMLLoader.REFERENCE_TAG);
-    private final static javax.xml.namespace.QName REFERENCE_SOURCE_QNAME = new javax.xml.namespace.QName(XMLConstants.NULL_NS_URI, FXMLLoader.REFERENCE_SOURCE_ATTRIBUTE);
-
-    // attribute names
-    private final static javax.xml.namespace.QName FACTORY_QNAME = new javax.xml.namespace.QName(FXML_NAMESPACE_URI, FXMLLoader.FX_FACTORY_ATTRIBUTE);
-    private final static javax.xml.namespace.QName VALUE_QNAME = new javax.xml.namespace.QName(FXML_NAMESPACE_URI, FXMLLoader.FX_VALUE_ATTRIBUTE);
-    private final static javax.xml.namespace.QName CONSTANT_QNAME = new javax.xml.namespace.QName(FXML_NAMESPACE_URI, FXMLLoader.FX_CONSTANT_ATTRIBUTE);
-
-    private final static javax.xml.namespace.QName ID_QNAME = new javax.xml.namespace.QName(FXML_NAMESPACE_URI, FXMLLoader.FX_ID_ATTRIBUTE);
-    private final static javax.xml.namespace.QName CONTROLLER_QNAME = new javax.xml.namespace.QName(FXML_NAMESPACE_URI, FXMLLoader.FX_CONTROLLER_ATTRIBUTE);
-    
     private final static String JAVAFX_NS_URI_PREFIX = "http://javafx.com/javafx/";
 
     private final static Constructor constructorInstantiation = new Constructor();
 
-    private boolean isJavafxQName(javax.xml.namespace.QName name) {
-        var nsUri = name.getNamespaceURI();
-        if (nsUri == null || nsUri.equals(XMLConstants.NULL_NS_URI)) {
+    private boolean isJavafxNamespace(String nsUri) {
+        if (nsUri.equals(XMLConstants.NULL_NS_URI)) {
             return true;
         }
         if (nsUri.startsWith(JAVAFX_NS_URI_PREFIX)) {
@@ -145,91 +458,149 @@ public class FxmlParser {
         return false;
     }
 
-    private FxmlElement parseStartElement(StartElement element) throws XMLStreamException {
-        Attribute idAttr = element.getAttributeByName(ID_QNAME);
-        String fxId = (idAttr != null ? idAttr.getValue() : null);
-        javax.xml.namespace.QName name = element.getName();
-        if (isJavafxQName(name)) {
-            if (Character.isUpperCase(name.getLocalPart().charAt(0))) {
+    private String elementString() {
+        return "<" + cursor.getLocalName() + ">";
+    }
+
+    // parses the element at the cursor, and its contents, leaving the cursor at its end
+    private FxmlElement parseStartElement() throws XMLStreamException {
+        String fxId = cursor.getAttributeValue(FXML_NAMESPACE_URI, FXMLLoader.FX_ID_ATTRIBUTE);
+        String nsUri = cursor.getNamespaceURI();
+        String localName = NamePool.intern(cursor.getLocalName());
+        if (isJavafxNamespace(nsUri)) {
+            // like FXMLLoader, a class name if the last segment is capitalized, so GridPane.rowIndex is a (static) property
+            if (Character.isUpperCase(localName.charAt(localName.lastIndexOf('.') + 1))) {
                 // class name
-                Instantiation instantiation = instantiationFor(element, FACTORY_QNAME, Factory::new)
-                    .or(() -> instantiationFor(element, VALUE_QNAME, Value::new))
-                    .or(() -> instantiationFor(element, CONSTANT_QNAME, Constant::new))
-                    .orElse(constructorInstantiation);
-                return new InstantiationElement(QName.valueOf(name.getLocalPart()), instantiation, fxId, concat(
-                    parseAttributes(element.getAttributes()),
-                    parseChildElements(FxmlElement.class)
-                ));
+                Instantiation instantiation = instantiationFor(FXMLLoader.FX_FACTORY_ATTRIBUTE, Factory::new);
+                if (instantiation == null) {
+                    instantiation = instantiationFor(FXMLLoader.FX_VALUE_ATTRIBUTE, Value::new);
+                }
+                if (instantiation == null) {
+                    instantiation = instantiationFor(FXMLLoader.FX_CONSTANT_ATTRIBUTE, Constant::new);
+                }
+                if (instantiation == null) {
+                    instantiation = constructorInstantiation;
+                }
+                if (visitor != null) {
+                    return visitContent(new InstantiationElement(QName.valueOf(localName), instantiation, fxId, parseAttributes()), FxmlElement.class);
+                }
+                List<FxmlElement> children = parseChildren(localName, FxmlElement.class, parseAttributes());
+                return new InstantiationElement(QName.valueOf(localName), instantiation, fxId, children);
             } else {
                 // property name
-                String propertyName = element.getName().getLocalPart();
-                String text = parseText();
+                List<InstanceElement> children = new ArrayList<>();
+                var propertyElement = new PropertyElement(localName, children);
+                // whether it's a property element is only known at the first child element
+                if (visitor != null) {
+                    pendingStart = propertyElement;
+                }
+                String text = parseContent(InstanceElement.class, children);
+                boolean started = (pendingStart == null);
+                pendingStart = null;
                 if (text != null) {
-                    ValueExpression valueExpression = parseExpression(text);
-                    int pos = propertyName.indexOf('.');
-                    return (pos < 0
-                        ? new PropertyValue(propertyName, valueExpression)
-                        : new StaticProperty(propertyName.substring(0, pos), propertyName.substring(pos + 1), valueExpression)
-                    );
+                    return visit(beanProperty(localName, parseExpression(text)));
+                }
+                if (visitor != null) {
+                    if (! started) {
+                        visitor.startElement(propertyElement);
+                    }
+                    visitor.endElement(propertyElement);
                 }
-                return new PropertyElement(element.getName().getLocalPart(),
-                    parseChildElements(InstanceElement.class)
-                );
+                return propertyElement;
+            }
+        } else if (FXML_NAMESPACE_URI.equals(nsUri)) {
+            switch (localName) {
+                case FXMLLoader.ROOT_TAG -> {
+                    var type = getAttributeValue(XMLConstants.NULL_NS_URI, FXMLLoader.ROOT_TYPE_ATTRIBUTE);
+                    List<FxmlElement> children = parseAttributes();
+                    if (visitor != null) {
+                        return visitContent(new Root(QName.valueOf(type), children), FxmlElement.class);
+                    }
+                    parseContent(FxmlElement.class, children);
+                    return new Root(QName.valueOf(type), children);
+                }
+                case FXMLLoader.DEFINE_TAG -> {
+                    if (visitor != null) {
+                        return visitContent(new Define(new ArrayList<>()), InstantiationElement.class);
+                    }
+                    return new Define(parseChildren("fx:" + FXMLLoader.DEFINE_TAG, InstantiationElement.class, new ArrayList<>()));
+                }
+                case FXMLLoader.INCLUDE_TAG -> {
+                    var include = new Include(getAttributeValue(FXML_NAMESPACE_URI, FXMLLoader.FX_ID_ATTRIBUTE), getAttributeValue(XMLConstants.NULL_NS_URI, FXMLLoader.INCLUDE_SOURCE_ATTRIBUTE));
+                    parseContent(null, null);
+                    return visit(include);
+                }
+                case FXMLLoader.REFERENCE_TAG -> {
+                    var reference = new Reference(getAttributeValue(XMLConstants.NULL_NS_URI, FXMLLoader.REFERENCE_SOURCE_ATTRIBUTE));
+                    parseContent(null, null);
+                    return visit(reference);
+                }
+                default -> {}
             }
-        } else if (ROOT_QNAME.equals(name)) {
-            return new Root(QName.valueOf(getAttributeValue(element, TYPE_QNAME)), concat(
-                parseAttributes(element.getAttributes()),
-                parseChildElements(FxmlElement.class)
-            ));
-        } else if (DEFINE_QNAME.equals(name)) {
-            return new Define(parseChildElements(InstantiationElement.class));
-        } else if (INCLUDE_QNAME.equals(name)) {
-            parseChildElements(null);
-            return new Include(getAttributeValue(element, ID_QNAME), getAttributeValue(element, INCLUDE_SOURCE_QNAME));
-        } else if (REFERENCE_QNAME.equals(name)) {
-            parseChildElements(null);
-            return new Reference(getAttributeValue(element, REFERENCE_SOURCE_QNAME));
         }
-        throw new XMLStreamException("Illegal/unknown element: " + element);
+        throw new XMLStreamException("Illegal/unknown element: " + elementString());
     }
 
-    private Optional<Instantiation> instantiationFor(StartElement element, javax.xml.namespace.QName name, Function<String, Instantiation> creator) {
-        Attribute attr = element.getAttributeByName(name);
-        if (attr != null) {
-            return Optional.of(creator.apply(attr.getValue()));
+    // the element that is started before the first child element, if there is one
+    private FxmlElement pendingStart = null;
+
+    // gives an element without children to the visitor, if any
+    private <E extends FxmlElement> E visit(E element) {
+        if (visitor != null) {
+            visitor.startElement(element);
+            visitor.endElement(element);
         }
-        return Optional.empty();
+        return element;
     }
 
-    private List<FxmlElement> concat(List<? extends FxmlElement> list1, List<? extends FxmlElement> list2) {
-        List<FxmlElement> all = new ArrayList<>(list1);
-        all.addAll(list2);
-        return all;
+    // gives the element to the visitor, and parses and visits the child elements
+    private <E extends FxmlElement> E visitContent(E element, Class<?> allowsChild) throws XMLStreamException {
+        visitor.startElement(element);
+        parseContent(allowsChild, null);
+        visitor.endElement(element);
+        return element;
     }
 
-    private String getAttributeValue(StartElement element, javax.xml.namespace.QName attributeName) throws XMLStreamException {
-        Attribute typeAttr = element.getAttributeByName(attributeName);
-        if (typeAttr == null) {
-            throw new XMLStreamException("Missing " + attributeName + " attribute in " + element + " element");
+    private Instantiation instantiationFor(String fxAttributeName, Function<String, Instantiation> creator) {
+        String attr = cursor.getAttributeValue(FXML_NAMESPACE_URI, fxAttributeName);
+        return (attr != null ? creator.apply(attr) : null);
+    }
+
+    private String getAttributeValue(String nsUri, String attributeName) throws XMLStreamException {
+        String value = cursor.getAttributeValue(nsUri, attributeName);
+        if (value == null) {
+            throw new XMLStreamException("Missing " + attributeName + " attribute in " + elementString() + " element");
         }
-        return typeAttr.getValue();
+        return value;
     }
 
-    private List<PropertyValue> parseAttributes(Iterator<Attribute> attributes) throws XMLStreamException {
-        List<PropertyValue> simpleProperties = new ArrayList<>();
-        while (attributes.hasNext()) {
-            Attribute attr = attributes.next();
-            if (attr.getName().getNamespaceURI() == XMLConstants.NULL_NS_URI) {
-                simpleProperties.add(new PropertyValue(attr.getName().getLocalPart(), parseExpression(attr.getValue())));
+    private List<FxmlElement> parseAttributes() throws XMLStreamException {
+        List<FxmlElement> simpleProperties = new ArrayList<>();
+        for (int i = 0; i < cursor.getAttributeCount(); i++) {
+            if (XMLConstants.NULL_NS_URI.equals(cursor.getAttributeNamespace(i))) {
+                simpleProperties.add(beanProperty(cursor.getAttributeLocalName(i), parseExpression(cursor.getAttributeValue(i))));
             }
         }
         return simpleProperties;
     }
 
+    // GridPane.rowIndex="0" is a static property
+    private static BeanProperty beanProperty(String name, ValueExpression valueExpression) {
+        int pos = name.lastIndexOf('.');
+        return pos < 0
+            ? new PropertyValue(NamePool.intern(name), valueExpression)
+            : new StaticProperty(NamePool.intern(name.substring(0, pos)), NamePool.intern(name.substring(pos + 1)), valueExpression);
+    }
+
     private ValueExpression parseExpression(String value) throws XMLStreamException {
         if (value.startsWith(FXMLLoader.BINDING_EXPRESSION_PREFIX)) {
             if (value.endsWith(FXMLLoader.BINDING_EXPRESSION_SUFFIX)) {
-                return new ValueExpression.Binding(value.substring(2, value.length() - 1));
+                var source = value.substring(2, value.length() - 1);
+                try {
+                    return new ValueExpression.Binding(source, BindingExpression.valueOf(source));
+                } catch (IllegalArgumentException ex) {
+                    throw new XMLStreamException(ex.getMessage(), ex);
+                }
             }
         } else if (value.startsWith(FXMLLoader.EXPRESSION_PREFIX)) {
             return new ValueExpression.IdReference(value.substring(FXMLLoader.EXPRESSION_PREFIX.length()));
@@ -243,48 +614,54 @@ public class FxmlParser {
         throw new XMLStreamException("Malformed expression");
     }
 
-    private String parseText() throws XMLStreamException {
-        XMLEvent nextEvent = xmlEventReader.peek();
-        if (nextEvent instanceof Characters chars && (! chars.isWhiteSpace())) {
-            String text = chars.getData();
-            // skip Characters
-            nextEvent = xmlEventReader.nextEvent();
-            return text;
-        } else {
-            return null;
-        }
-    }
-
-    private <C> List<C> parseChildElements(Class<C> allowsChild) throws XMLStreamException {
-        List<C> children = new ArrayList<>();
-        XMLEvent nextEvent;
-        String textContent = null;
-        while (! (nextEvent = xmlEventReader.nextEvent()).isEndElement()) {
-            switch (nextEvent) {
-                case Characters chars when (! chars.isWhiteSpace()) -> {
-                    if (textContent != null || (! children.isEmpty())) {
-                        throw new XMLStreamException("Unexpected Characters: " + chars.getData());
+    // parses the child elements into children, up to and including the end of the current element,
+    // and returns the text content, or null if there is none (or it's all white space)
+    private <C> String parseContent(Class<C> allowsChild, List<? super C> children) throws XMLStreamException {
+        StringBuilder textContent = null;
+        boolean hasChildren = false;
+        Token token;
+        while ((token = cursor.next()) != Token.END_ELEMENT) {
+            switch (token) {
+                case CHARACTERS -> {
+                    if (! cursor.isWhiteSpace()) {
+                        if (hasChildren) {
+                            throw new XMLStreamException("Unexpected Characters: " + cursor.getText());
+                        }
+                        if (textContent == null) {
+                            textContent = new StringBuilder();
+                        }
+                    }
+                    if (textContent != null) {
+                        textContent.append(cursor.getText());
                     }
-                    textContent = chars.getData();
                 }
-                case StartElement childElement -> {
+                case START_ELEMENT -> {
                     if (textContent != null) {
-                        throw new XMLStreamException("Unexpected StartElement: " + childElement);
+                        throw new XMLStreamException("Unexpected StartElement: " + elementString());
+                    }
+                    if (visitor != null && pendingStart != null) {
+                        visitor.startElement(pendingStart);
                     }
-                    FxmlElement child = parseStartElement(childElement);
+                    pendingStart = null;
+                    FxmlElement child = parseStartElement();
                     if (allowsChild == null || (! allowsChild.isInstance(child))) {
                         throw new XMLStreamException("Unexpected element: " + child);
                     }
-                    children.add((C) child);
+                    // visited elements aren't kept
+                    if (visitor == null) {
+                        children.add((C) child);
+                    }
+                    hasChildren = true;
                 }
+                case END_DOCUMENT -> throw new XMLStreamException("Unexpected end of document");
                 default -> {}
             }
         }
-        return children;
+        return (textContent != null ? textContent.toString() : null);
     }
 
-    private Import parseImport(ProcessingInstruction pi) throws XMLStreamException {
-        var data = pi.getData().trim();
+    private Import parseImport(String piData) throws XMLStreamException {
+        var data = piData.trim();
         int pos = data.lastIndexOf('.');
         if (pos < 0) {
             throw new XMLStreamException("Malformed import: " + data);
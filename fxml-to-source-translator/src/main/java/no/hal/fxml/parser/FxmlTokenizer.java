@@ -0,0 +1,628 @@
+package no.hal.fxml.parser;
+
+import java.util.Arrays;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+
+import no.hal.fxml.model.NamePool;
+
+// cursor that tokenizes fxml directly from the characters, without StAX,
+// supports the parts of xml that fxml uses: processing instructions, elements, attributes, namespaces, text, CDATA, entities and comments,
+// attributes are kept as offsets and only sliced into strings when asked for, and names are interned, see NameTable
+class FxmlTokenizer implements FxmlCursor {
+
+    private final CharSequence chars;
+    private final int length;
+    private int pos = 0;
+
+    FxmlTokenizer(CharSequence chars) {
+        this.chars = chars;
+        this.length = chars.length();
+    }
+
+    // the current token
+
+    private String localName;
+    private String namespaceURI;
+    // an empty element, so next is its END_ELEMENT
+    private boolean emptyElement = false;
+
+    // start, colon (or -1), end, value start, value end, and whether the value has entities (1) or not (0)
+    private final static int ATTRIBUTE_SLOTS = 6;
+    private int[] attributes = new int[ATTRIBUTE_SLOTS * 8];
+    // resolved when the start tag is scanned, since namespace declarations may come after the attribute
+    private String[] attributeNamespaces = new String[8];
+    private int attributeCount = 0;
+
+    private int textStart, textEnd;
+    // the text, when it isn't a plain slice, i.e. has entities or CDATA sections
+    private StringBuilder textBuilder;
+    private String text;
+    private boolean whiteSpace;
+
+    private String piTarget, piData;
+
+    // open elements and namespace declarations in scope
+
+    private String[] elementNames = new String[16];
+    private int[] namespaceCounts = new int[16];
+    private int depth = 0;
+
+    private String[] namespacePrefixes = new String[8];
+    private String[] namespaceURIs = new String[8];
+    private int namespaceCount = 0;
+
+    // deferred content
+
+    // a tokenizer for the content of the current (start) element, with the namespaces in scope, for parsing it later,
+    // or null if it's an empty element
+    FxmlTokenizer contentTokenizer() {
+        if (emptyElement) {
+            return null;
+        }
+        var content = new FxmlTokenizer(chars);
+        content.pos = pos;
+        content.namespacePrefixes = Arrays.copyOf(namespacePrefixes, Math.max(namespaceCount, 1));
+        content.namespaceURIs = Arrays.copyOf(namespaceURIs, Math.max(namespaceCount, 1));
+        content.namespaceCount = namespaceCount;
+        content.elementNames[0] = elementNames[depth - 1];
+        content.namespaceCounts[0] = namespaceCount;
+        content.depth = 1;
+        return content;
+    }
+
+    // skips the content of the current (start) element, up to and including its end, without creating the tokens' strings
+    void skipContent() throws XMLStreamException {
+        int level = 0;
+        while (true) {
+            switch (next()) {
+                case START_ELEMENT -> level++;
+                case END_ELEMENT -> {
+                    if (level == 0) {
+                        return;
+                    }
+                    level--;
+                }
+                case END_DOCUMENT -> throw error("Unexpected end of document", pos);
+                default -> {}
+            }
+        }
+    }
+
+    @Override
+    public Token next() throws XMLStreamException {
+        if (emptyElement) {
+            emptyElement = false;
+            endElement();
+            return Token.END_ELEMENT;
+        }
+        while (pos < length) {
+            if (chars.charAt(pos) != '<' || startsWith(pos, "<![CDATA[")) {
+                scanText();
+                if (depth > 0 || ! whiteSpace) {
+                    return Token.CHARACTERS;
+                }
+                // white space outside the root
+            } else if (startsWith(pos, "<!--")) {
+                pos = indexOf("-->", pos + 4) + 3;
+            } else if (startsWith(pos, "<?")) {
+                if (scanProcessingInstruction()) {
+                    return Token.PROCESSING_INSTRUCTION;
+                }
+            } else if (startsWith(pos, "<!")) {
+                skipDeclaration();
+            } else if (startsWith(pos, "</")) {
+                scanEndElement();
+                return Token.END_ELEMENT;
+            } else {
+                scanStartElement();
+                return Token.START_ELEMENT;
+            }
+        }
+        if (depth > 0) {
+            throw error("Unexpected end of document, missing </" + elementNames[depth - 1] + ">", pos);
+        }
+        return Token.END_DOCUMENT;
+    }
+
+    // errors
+
+    private XMLStreamException error(String message, int at) {
+        int line = 1, column = 1;
+        for (int i = 0; i < at && i < length; i++) {
+            if (chars.charAt(i) == '\n') {
+                line++;
+                column = 1;
+            } else {
+                column++;
+            }
+        }
+        return new XMLStreamException(message + " at line " + line + ", column " + column);
+    }
+
+    // scanning helpers
+
+    private boolean startsWith(int at, String s) {
+        if (at + s.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (chars.charAt(at + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(String s, int from) throws XMLStreamException {
+        for (int i = from; i + s.length() <= length; i++) {
+            if (startsWith(i, s)) {
+                return i;
+            }
+        }
+        throw error("Missing " + s, from);
+    }
+
+    private static boolean isWhiteSpace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r';
+    }
+
+    private void skipWhiteSpace() {
+        while (pos < length && isWhiteSpace(chars.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':' || c > 0x7f;
+    }
+
+    // scans a name at pos, and returns its end
+    private int scanName() throws XMLStreamException {
+        int start = pos;
+        while (pos < length && isNameChar(chars.charAt(pos))) {
+            pos++;
+        }
+        if (pos == start) {
+            throw error("Expected name", start);
+        }
+        return pos;
+    }
+
+    private int colonIndex(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (chars.charAt(i) == ':') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void expect(char c) throws XMLStreamException {
+        if (pos >= length || chars.charAt(pos) != c) {
+            throw error("Expected '" + c + "'", pos);
+        }
+        pos++;
+    }
+
+    // markup that fxml doesn't use
+
+    private void skipDeclaration() throws XMLStreamException {
+        // e.g. <!DOCTYPE ...>, possibly with an internal subset in []
+        int nesting = 0;
+        for (int i = pos + 2; i < length; i++) {
+            switch (chars.charAt(i)) {
+                case '[' -> nesting++;
+                case ']' -> nesting--;
+                case '>' -> {
+                    if (nesting == 0) {
+                        pos = i + 1;
+                        return;
+                    }
+                }
+                default -> {}
+            }
+        }
+        throw error("Unterminated declaration", pos);
+    }
+
+    // processing instructions, returns false for the xml declaration
+
+    private boolean scanProcessingInstruction() throws XMLStreamException {
+        int start = pos;
+        pos += 2;
+        int targetEnd = scanName();
+        int end = indexOf("?>", targetEnd);
+        pos = end + 2;
+        if (targetEnd - start - 2 == 3 && startsWith(start + 2, "xml")) {
+            return false;
+        }
+        piTarget = NameTable.intern(chars, start + 2, targetEnd);
+        int dataStart = targetEnd;
+        while (dataStart < end && isWhiteSpace(chars.charAt(dataStart))) {
+            dataStart++;
+        }
+        piData = chars.subSequence(dataStart, end).toString();
+        return true;
+    }
+
+    // elements
+
+    private void scanStartElement() throws XMLStreamException {
+        int start = ++pos;
+        int nameEnd = scanName();
+        int namespaceStart = namespaceCount;
+        attributeCount = 0;
+        while (true) {
+            skipWhiteSpace();
+            if (pos >= length) {
+                throw error("Unterminated start tag", start - 1);
+            }
+            char c = chars.charAt(pos);
+            if (c == '>') {
+                pos++;
+                break;
+            } else if (c == '/') {
+                pos++;
+                expect('>');
+                emptyElement = true;
+                break;
+            }
+            scanAttribute(namespaceStart);
+        }
+        for (int i = 0; i < attributeCount; i++) {
+            int slot = i * ATTRIBUTE_SLOTS;
+            int colon = attributes[slot + 1];
+            // unprefixed attributes have no namespace
+            attributeNamespaces[i] = (colon < 0 ? XMLConstants.NULL_NS_URI : namespaceURI(NameTable.intern(chars, attributes[slot], colon), attributes[slot]));
+        }
+        if (depth == elementNames.length) {
+            elementNames = Arrays.copyOf(elementNames, depth * 2);
+            namespaceCounts = Arrays.copyOf(namespaceCounts, depth * 2);
+        }
+        namespaceCounts[depth] = namespaceStart;
+        String qName = NameTable.intern(chars, start, nameEnd);
+        elementNames[depth++] = qName;
+        int colon = qName.indexOf(':');
+        if (colon < 0) {
+            localName = qName;
+            namespaceURI = namespaceURI("", start);
+        } else {
+            localName = NameTable.intern(chars, start + colon + 1, nameEnd);
+            namespaceURI = namespaceURI(qName.substring(0, colon), start);
+        }
+    }
+
+    private void scanAttribute(int namespaceStart) throws XMLStreamException {
+        int start = pos;
+        int end = scanName();
+        skipWhiteSpace();
+        expect('=');
+        skipWhiteSpace();
+        if (pos >= length || (chars.charAt(pos) != '"' && chars.charAt(pos) != '\'')) {
+            throw error("Expected quoted attribute value", pos);
+        }
+        char quote = chars.charAt(pos++);
+        int valueStart = pos;
+        boolean hasEntities = false;
+        while (pos < length && chars.charAt(pos) != quote) {
+            char c = chars.charAt(pos);
+            if (c == '<') {
+                throw error("Illegal '<' in attribute value", pos);
+            }
+            if (c == '&') {
+                // validated now, but decoded when the value is asked for
+                pos = entityEnd(pos);
+                hasEntities = true;
+                continue;
+            }
+            hasEntities |= (c != ' ' && isWhiteSpace(c));
+            pos++;
+        }
+        int valueEnd = pos;
+        expect(quote);
+        int colon = colonIndex(start, end);
+        // namespace declarations aren't attributes
+        if (colon < 0 && end - start == 5 && startsWith(start, XMLConstants.XMLNS_ATTRIBUTE)) {
+            declareNamespace("", valueStart, valueEnd, hasEntities);
+        } else if (colon - start == 5 && startsWith(start, XMLConstants.XMLNS_ATTRIBUTE)) {
+            declareNamespace(NameTable.intern(chars, colon + 1, end), valueStart, valueEnd, hasEntities);
+        } else {
+            int slot = attributeCount * ATTRIBUTE_SLOTS;
+            if (slot == attributes.length) {
+                attributes = Arrays.copyOf(attributes, slot * 2);
+                attributeNamespaces = Arrays.copyOf(attributeNamespaces, attributeCount * 2);
+            }
+            attributes[slot] = start;
+            attributes[slot + 1] = colon;
+            attributes[slot + 2] = end;
+            attributes[slot + 3] = valueStart;
+            attributes[slot + 4] = valueEnd;
+            attributes[slot + 5] = (hasEntities ? 1 : 0);
+            attributeCount++;
+        }
+    }
+
+    private void declareNamespace(String prefix, int valueStart, int valueEnd, boolean hasEntities) throws XMLStreamException {
+        if (namespaceCount == namespacePrefixes.length) {
+            namespacePrefixes = Arrays.copyOf(namespacePrefixes, namespaceCount * 2);
+            namespaceURIs = Arrays.copyOf(namespaceURIs, namespaceCount * 2);
+        }
+        namespacePrefixes[namespaceCount] = prefix;
+        namespaceURIs[namespaceCount] = (hasEntities ? decode(valueStart, valueEnd, true) : NameTable.intern(chars, valueStart, valueEnd));
+        namespaceCount++;
+    }
+
+    private String namespaceURI(String prefix, int at) throws XMLStreamException {
+        for (int i = namespaceCount - 1; i >= 0; i--) {
+            if (namespacePrefixes[i].equals(prefix)) {
+                return namespaceURIs[i];
+            }
+        }
+        if (prefix.isEmpty()) {
+            return XMLConstants.NULL_NS_URI;
+        } else if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+            return XMLConstants.XML_NS_URI;
+        }
+        throw error("Undeclared namespace prefix " + prefix, at);
+    }
+
+    private void scanEndElement() throws XMLStreamException {
+        int start = pos + 2;
+        pos = start;
+        int nameEnd = scanName();
+        skipWhiteSpace();
+        expect('>');
+        if (depth == 0) {
+            throw error("Unexpected end tag", start - 2);
+        }
+        String qName = elementNames[depth - 1];
+        if (qName.length() != nameEnd - start || ! startsWith(start, qName)) {
+            throw error("Expected </" + qName + ">", start - 2);
+        }
+        endElement();
+    }
+
+    private void endElement() {
+        depth--;
+        namespaceCount = namespaceCounts[depth];
+        elementNames[depth] = null;
+        attributeCount = 0;
+    }
+
+    // text, including CDATA sections, entities are decoded, and adjacent text and CDATA sections are coalesced
+
+    private void scanText() throws XMLStreamException {
+        textStart = pos;
+        textBuilder = null;
+        text = null;
+        whiteSpace = true;
+        while (pos < length) {
+            char c = chars.charAt(pos);
+            if (c == '<') {
+                if (! startsWith(pos, "<![CDATA[")) {
+                    break;
+                }
+                int cdataEnd = indexOf("]]>", pos + 9);
+                textBuilder = appendText(textBuilder, textStart, pos);
+                textBuilder.append(chars, pos + 9, cdataEnd);
+                for (int i = pos + 9; i < cdataEnd && whiteSpace; i++) {
+                    whiteSpace = isWhiteSpace(chars.charAt(i));
+                }
+                pos = cdataEnd + 3;
+                textStart = pos;
+            } else {
+                if (c == '&') {
+                    textBuilder = appendText(textBuilder, textStart, pos);
+                    pos = decodeEntity(pos, textBuilder);
+                    textStart = pos;
+                    whiteSpace = false;
+                    continue;
+                }
+                whiteSpace &= isWhiteSpace(c);
+                pos++;
+            }
+        }
+        if (textBuilder != null) {
+            textBuilder.append(chars, textStart, pos);
+        }
+        textEnd = pos;
+    }
+
+    private StringBuilder appendText(StringBuilder builder, int start, int end) {
+        if (builder == null) {
+            builder = new StringBuilder();
+        }
+        return builder.append(chars, start, end);
+    }
+
+    private final static String[] ENTITY_NAMES = { "lt", "gt", "amp", "quot", "apos" };
+    private final static String ENTITY_CHARS = "<>&\"'";
+
+    // validates the entity at the position, and returns the position after it, without creating strings
+    private int entityEnd(int at) throws XMLStreamException {
+        int end = at + 1;
+        while (end < length && end - at <= 10 && chars.charAt(end) != ';') {
+            end++;
+        }
+        if (end >= length || chars.charAt(end) != ';') {
+            throw error("Malformed entity", at);
+        }
+        if (chars.charAt(at + 1) == '#') {
+            boolean hex = (end > at + 2 && chars.charAt(at + 2) == 'x');
+            int digitsStart = at + (hex ? 3 : 2);
+            if (digitsStart == end) {
+                throw error("Malformed character reference", at);
+            }
+            for (int i = digitsStart; i < end; i++) {
+                if (Character.digit(chars.charAt(i), hex ? 16 : 10) < 0) {
+                    throw error("Malformed character reference", at);
+                }
+            }
+            return end + 1;
+        }
+        for (var name : ENTITY_NAMES) {
+            if (end - at - 1 == name.length() && startsWith(at + 1, name)) {
+                return end + 1;
+            }
+        }
+        throw error("Unknown entity " + chars.subSequence(at, end + 1), at);
+    }
+
+    // decodes the entity at the position into the builder, and returns the position after it
+    private int decodeEntity(int at, StringBuilder builder) throws XMLStreamException {
+        int end = entityEnd(at) - 1;
+        if (chars.charAt(at + 1) == '#') {
+            boolean hex = chars.charAt(at + 2) == 'x';
+            try {
+                builder.appendCodePoint(Integer.parseInt(chars, at + (hex ? 3 : 2), end, hex ? 16 : 10));
+            } catch (IllegalArgumentException e) {
+                throw error("Malformed character reference", at);
+            }
+        } else {
+            for (int i = 0; i < ENTITY_NAMES.length; i++) {
+                if (startsWith(at + 1, ENTITY_NAMES[i])) {
+                    builder.append(ENTITY_CHARS.charAt(i));
+                    break;
+                }
+            }
+        }
+        return end + 1;
+    }
+
+    // decodes entities, that have already been validated, and for attributes, normalizes white space
+    private String decode(int start, int end, boolean attribute) {
+        StringBuilder builder = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            char c = chars.charAt(i);
+            if (c == '&') {
+                try {
+                    i = decodeEntity(i, builder);
+                } catch (XMLStreamException e) {
+                    throw new IllegalStateException(e);
+                }
+            } else {
+                builder.append(attribute && isWhiteSpace(c) ? ' ' : c);
+                i++;
+            }
+        }
+        return builder.toString();
+    }
+
+    // START_ELEMENT
+
+    @Override
+    public String getNamespaceURI() {
+        return namespaceURI;
+    }
+
+    @Override
+    public String getLocalName() {
+        return localName;
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return attributeCount;
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        return attributeNamespaces[index];
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+        int slot = index * ATTRIBUTE_SLOTS;
+        int colon = attributes[slot + 1];
+        return NameTable.intern(chars, (colon < 0 ? attributes[slot] : colon + 1), attributes[slot + 2]);
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        int slot = index * ATTRIBUTE_SLOTS;
+        if (attributes[slot + 5] == 0) {
+            return chars.subSequence(attributes[slot + 3], attributes[slot + 4]).toString();
+        }
+        return decode(attributes[slot + 3], attributes[slot + 4], true);
+    }
+
+    // compares the attribute name with the given local name, without creating strings
+    private boolean hasLocalName(int index, String localName) {
+        int slot = index * ATTRIBUTE_SLOTS;
+        int start = (attributes[slot + 1] < 0 ? attributes[slot] : attributes[slot + 1] + 1);
+        return attributes[slot + 2] - start == localName.length() && startsWith(start, localName);
+    }
+
+    @Override
+    public String getAttributeValue(String namespaceURI, String localName) {
+        for (int i = 0; i < attributeCount; i++) {
+            if (hasLocalName(i, localName) && namespaceURI.equals(getAttributeNamespace(i))) {
+                return getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    // CHARACTERS
+
+    @Override
+    public String getText() {
+        if (text == null) {
+            text = (textBuilder != null ? textBuilder.toString() : chars.subSequence(textStart, textEnd).toString());
+        }
+        return text;
+    }
+
+    @Override
+    public boolean isWhiteSpace() {
+        return whiteSpace;
+    }
+
+    // PROCESSING_INSTRUCTION
+
+    @Override
+    public String getPITarget() {
+        return piTarget;
+    }
+
+    @Override
+    public String getPIData() {
+        return piData;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    // names are looked up in a fixed size, lock-free table, so repeated names don't create new strings,
+    // the table is shared by all tokenizers, and a collision just replaces the entry, with the names from the shared NamePool
+    static class NameTable {
+
+        private final static int SIZE = 1024;
+        private final static String[] NAMES = new String[SIZE];
+
+        static String intern(CharSequence chars, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + chars.charAt(i);
+            }
+            int index = (hash ^ (hash >>> 16)) & (SIZE - 1);
+            String name = NAMES[index];
+            if (name != null && name.length() == end - start) {
+                int i = 0;
+                while (i < name.length() && name.charAt(i) == chars.charAt(start + i)) {
+                    i++;
+                }
+                if (i == name.length()) {
+                    return name;
+                }
+            }
+            name = NamePool.intern(chars.subSequence(start, end).toString());
+            NAMES[index] = name;
+            return name;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package no.hal.fxml.parser;
+
+import java.util.List;
+
+import no.hal.fxml.model.FxmlCode.FxmlElement;
+import no.hal.fxml.model.FxmlCode.Import;
+import no.hal.fxml.model.QName;
+
+// receives the elements of a document as they are parsed, see FxmlParser.parseFxml(Reader, FxmlVisitor)
+// elements are given without their child elements, which are visited in between start and end,
+// but bean elements include the properties given as attributes
+public interface FxmlVisitor {
+
+    // before the root element
+    default void startDocument(List<Import> imports, QName controllerClassName) {
+    }
+
+    void startElement(FxmlElement element);
+
+    // the same element as given to startElement
+    void endElement(FxmlElement element);
+
+    // after the root element
+    default void endDocument() {
+    }
+}
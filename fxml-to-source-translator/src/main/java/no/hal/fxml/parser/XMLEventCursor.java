@@ -0,0 +1,116 @@
+package no.hal.fxml.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+// cursor backed by an XMLEventReader, for readers provided by the caller
+class XMLEventCursor implements FxmlCursor {
+
+    private final XMLEventReader reader;
+
+    private XMLEvent event;
+    private List<Attribute> attributes;
+
+    XMLEventCursor(XMLEventReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public Token next() throws XMLStreamException {
+        attributes = null;
+        while (reader.hasNext()) {
+            event = reader.nextEvent();
+            switch (event) {
+                case ProcessingInstruction _ -> {
+                    return Token.PROCESSING_INSTRUCTION;
+                }
+                case StartElement startElement -> {
+                    attributes = new ArrayList<>();
+                    startElement.getAttributes().forEachRemaining(attributes::add);
+                    return Token.START_ELEMENT;
+                }
+                case Characters _ -> {
+                    return Token.CHARACTERS;
+                }
+                default -> {
+                    if (event.isEndElement()) {
+                        return Token.END_ELEMENT;
+                    } else if (event.isEndDocument()) {
+                        return Token.END_DOCUMENT;
+                    }
+                    // comments, dtd, ...
+                }
+            }
+        }
+        return Token.END_DOCUMENT;
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return event.asStartElement().getName().getNamespaceURI();
+    }
+
+    @Override
+    public String getLocalName() {
+        return event.asStartElement().getName().getLocalPart();
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return attributes.size();
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        return attributes.get(index).getName().getNamespaceURI();
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+        return attributes.get(index).getName().getLocalPart();
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        return attributes.get(index).getValue();
+    }
+
+    @Override
+    public String getAttributeValue(String namespaceURI, String localName) {
+        Attribute attr = event.asStartElement().getAttributeByName(new javax.xml.namespace.QName(namespaceURI, localName));
+        return (attr != null ? attr.getValue() : null);
+    }
+
+    @Override
+    public String getText() {
+        return event.asCharacters().getData();
+    }
+
+    @Override
+    public boolean isWhiteSpace() {
+        return event.asCharacters().isWhiteSpace();
+    }
+
+    @Override
+    public String getPITarget() {
+        return ((ProcessingInstruction) event).getTarget();
+    }
+
+    @Override
+    public String getPIData() {
+        return ((ProcessingInstruction) event).getData();
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        reader.close();
+    }
+}
@@ -0,0 +1,105 @@
+package no.hal.fxml.parser;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+// cursor backed by an XMLStreamReader, that doesn't allocate events
+class XMLStreamCursor implements FxmlCursor {
+
+    private final XMLStreamReader reader;
+
+    XMLStreamCursor(XMLStreamReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public Token next() throws XMLStreamException {
+        while (reader.hasNext()) {
+            var token = switch (reader.next()) {
+                case XMLStreamConstants.PROCESSING_INSTRUCTION -> Token.PROCESSING_INSTRUCTION;
+                case XMLStreamConstants.START_ELEMENT -> Token.START_ELEMENT;
+                case XMLStreamConstants.END_ELEMENT -> Token.END_ELEMENT;
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> Token.CHARACTERS;
+                case XMLStreamConstants.END_DOCUMENT -> Token.END_DOCUMENT;
+                // comments, dtd, ...
+                default -> null;
+            };
+            if (token != null) {
+                return token;
+            }
+        }
+        return Token.END_DOCUMENT;
+    }
+
+    private static String namespaceURI(String namespaceURI) {
+        return (namespaceURI != null ? namespaceURI : XMLConstants.NULL_NS_URI);
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return namespaceURI(reader.getNamespaceURI());
+    }
+
+    @Override
+    public String getLocalName() {
+        return reader.getLocalName();
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return reader.getAttributeCount();
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        return namespaceURI(reader.getAttributeNamespace(index));
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+        return reader.getAttributeLocalName(index);
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        return reader.getAttributeValue(index);
+    }
+
+    @Override
+    public String getAttributeValue(String namespaceURI, String localName) {
+        // XMLStreamReader.getAttributeValue treats a null namespace as any namespace
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (localName.equals(reader.getAttributeLocalName(i)) && namespaceURI.equals(getAttributeNamespace(i))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String getText() {
+        return reader.getText();
+    }
+
+    @Override
+    public boolean isWhiteSpace() {
+        return reader.isWhiteSpace();
+    }
+
+    @Override
+    public String getPITarget() {
+        return reader.getPITarget();
+    }
+
+    @Override
+    public String getPIData() {
+        return reader.getPIData();
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        reader.close();
+    }
+}
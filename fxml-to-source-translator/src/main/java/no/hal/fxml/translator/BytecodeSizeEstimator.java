@@ -0,0 +1,96 @@
+package no.hal.fxml.translator;
+
+import java.util.List;
+
+import no.hal.fxml.model.JavaCode.BinaryOperation;
+import no.hal.fxml.model.JavaCode.Cast;
+import no.hal.fxml.model.JavaCode.ClassTarget;
+import no.hal.fxml.model.JavaCode.Comment;
+import no.hal.fxml.model.JavaCode.ConstructorCall;
+import no.hal.fxml.model.JavaCode.ExecutableCall;
+import no.hal.fxml.model.JavaCode.Expression;
+import no.hal.fxml.model.JavaCode.ExpressionTarget;
+import no.hal.fxml.model.JavaCode.FieldAssignment;
+import no.hal.fxml.model.JavaCode.If;
+import no.hal.fxml.model.JavaCode.LambdaExpression;
+import no.hal.fxml.model.JavaCode.LambdaMethodReference;
+import no.hal.fxml.model.JavaCode.Literal;
+import no.hal.fxml.model.JavaCode.MethodCall;
+import no.hal.fxml.model.JavaCode.ObjectTarget;
+import no.hal.fxml.model.JavaCode.Return;
+import no.hal.fxml.model.JavaCode.Statement;
+import no.hal.fxml.model.JavaCode.UnaryOperation;
+import no.hal.fxml.model.JavaCode.VariableDeclaration;
+import no.hal.fxml.model.JavaCode.VariableExpression;
+
+// estimates the number of bytecode bytes javac generates for statements, erring on the large side,
+// e.g. all invocations are counted as invokeinterface and all constants as ldc_w
+class BytecodeSizeEstimator {
+
+    private BytecodeSizeEstimator() {
+    }
+
+    public static int estimate(List<Statement> statements) {
+        int size = 0;
+        for (var statement : statements) {
+            size += estimate(statement);
+        }
+        return size;
+    }
+
+    public static int estimate(Statement statement) {
+        return switch (statement) {
+            case Comment _ -> 0;
+            // astore
+            case VariableDeclaration varDecl -> (varDecl.expression() != null ? estimate(varDecl.expression()) + 2 : 0);
+            // areturn
+            case Return ret -> estimate(ret.expression()) + 1;
+            // pop of the result
+            case ExecutableCall call -> estimate((Expression) call) + 1;
+            case FieldAssignment fieldAssignment -> estimate((Expression) fieldAssignment);
+            // the branch
+            case If(Expression condition, List<Statement> statements) -> estimate(condition) + estimate(statements) + 3;
+        };
+    }
+
+    public static int estimate(Expression expression) {
+        return switch (expression) {
+            case null -> 1;
+            // aload_0, getfield or getstatic, or aload
+            case VariableExpression(String variableName) when "this".equals(variableName) -> 1;
+            case VariableExpression(String variableName) when variableName.startsWith("this.") -> 4;
+            case VariableExpression(String variableName) when variableName.indexOf('.') >= 0 -> 3;
+            case VariableExpression _ -> 2;
+            // boxed values also need valueOf
+            case Literal(String _, Class<?> clazz) when clazz == String.class || clazz == Object.class || clazz.isPrimitive() || clazz.isEnum() -> 3;
+            case Literal _ -> 6;
+            case Cast(var _, Expression expr) -> estimate(expr) + 3;
+            case MethodCall(ObjectTarget target, String _, List<Expression> arguments) -> estimate(target) + estimateArguments(arguments) + 5;
+            // new, dup, invokespecial
+            case ConstructorCall(var _, List<Expression> arguments) -> estimateArguments(arguments) + 7;
+            // invokedynamic, with this captured, the body is another method
+            case LambdaExpression _ -> 6;
+            case LambdaMethodReference(ObjectTarget target, String _) -> estimate(target) + 5;
+            case FieldAssignment(ObjectTarget target, String _, Expression valueExpression) -> estimate(target) + estimate(valueExpression) + 3;
+            // the operator, and for comparisons, a branch and two constants
+            case UnaryOperation(String _, Expression operand) -> estimate(operand) + 1;
+            case BinaryOperation(String _, Expression left, Expression right) -> estimate(left) + estimate(right) + 8;
+        };
+    }
+
+    private static int estimate(ObjectTarget target) {
+        return switch (target) {
+            case null -> 0;
+            case ClassTarget _ -> 0;
+            case ExpressionTarget(Expression expr) -> estimate(expr);
+        };
+    }
+
+    private static int estimateArguments(List<Expression> arguments) {
+        int size = 0;
+        for (var expression : arguments) {
+            size += estimate(expression);
+        }
+        return size;
+    }
+}
@@ -83,12 +83,19 @@ public class FxmlProcessor extends AbstractProcessor {
             VariableDeclaration.parameter(TypeRef.valueOf("java.util.Map<String, Object>"), "namespace"),
             VariableDeclaration.parameter(new TypeRef(controllerClassName), "controller")
         ), null));
+        // loaders generated by FxmlTranslator pass themselves, so the namespace isn't needed
+        members.add(new ConstructorDeclaration("public", helperClassName, List.of(
+            VariableDeclaration.parameter(TypeRef.valueOf("no.hal.fxml.runtime.FxLoader<?, ?>"), "fxLoader"),
+            VariableDeclaration.parameter(new TypeRef(controllerClassName), "controller")
+        ), null));
+        members.add(generateInjectMethod(typeElementAnnotations));
         members.add(generateInitializeMethod(typeElementAnnotations));
         members.addAll(generateEventHandlers(typeElementAnnotations));
         return new ClassDeclaration(QName.valueOf(typeElementAnnotations.getKey() + "Helper"), new TypeRef(QName.valueOf("no.hal.fxml.runtime.AbstractFxControllerHelper"), new TypeRef(controllerClassName)), null, members);
     }
 
-    private MethodDeclaration generateInitializeMethod(Map.Entry<Element, Collection<Element>> typeElementAnnotations) {
+    // also called when lazy subtrees are built, to inject their objects
+    private MethodDeclaration generateInjectMethod(Map.Entry<Element, Collection<Element>> typeElementAnnotations) {
         List<Statement> statements = new ArrayList<>();
         for (var member : typeElementAnnotations.getValue()) {
             var name = member.getSimpleName().toString();
@@ -109,6 +116,12 @@ public class FxmlProcessor extends AbstractProcessor {
                 default -> {}
             }
         }
+        return new MethodDeclaration("public", "injectFxmlObjects", null, null, statements);
+    }
+
+    private MethodDeclaration generateInitializeMethod(Map.Entry<Element, Collection<Element>> typeElementAnnotations) {
+        List<Statement> statements = new ArrayList<>();
+        statements.add(new MethodCall(ObjectTarget.thisTarget(), "injectFxmlObjects"));
         typeElementAnnotations.getValue().stream()
             .filter(m -> m.getKind() == ElementKind.METHOD && "initialize".equals(m.getSimpleName().toString()))
             .findAny()
@@ -0,0 +1,264 @@
+package no.hal.fxml.translator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedOptions;
+import javax.annotation.processing.SupportedSourceVersion;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.StringTemplateTree;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+
+import no.hal.fxml.model.JavaCode;
+import no.hal.fxml.model.JavaCode.ClassDeclaration;
+import no.hal.fxml.model.JavaCode.ClassTarget;
+import no.hal.fxml.model.JavaCode.ConstructorCall;
+import no.hal.fxml.model.JavaCode.ConstructorDeclaration;
+import no.hal.fxml.model.JavaCode.Expression;
+import no.hal.fxml.model.JavaCode.LambdaExpression;
+import no.hal.fxml.model.JavaCode.Literal;
+import no.hal.fxml.model.JavaCode.MethodCall;
+import no.hal.fxml.model.JavaCode.ObjectTarget;
+import no.hal.fxml.model.JavaCode.VariableExpression;
+import no.hal.fxml.model.QName;
+import no.hal.fxml.model.TypeRef;
+
+// translates FXML."""...""" string templates into loaders at compile-time, and registers them with a FxTemplateLoaderProvider,
+// so FxmlTemplateProcessor can use them instead of parsing the template
+// annotation processors run before type attribution, so templates are recognized by the processor expression mentioning FXML,
+// e.g. FXML."...", FXML()."...", FXML(controller)."..." or FXML.get(this)."..."
+// it only runs when the provider class is given with -Afxml.templateLoaderProvider=..., since it scans all sources
+@SupportedOptions(FxmlTemplateCompiler.PROVIDER_CLASS_OPTION)
+@SupportedSourceVersion(SourceVersion.RELEASE_21)
+public class FxmlTemplateCompiler extends AbstractProcessor {
+
+    public static final String PROVIDER_CLASS_OPTION = "fxml.templateLoaderProvider";
+    public static final String PROCESSOR_NAME = "FXML";
+
+    // the loaders of earlier compiles, so an incremental compile of some of the sources keeps the loaders of the others
+    public static final String TEMPLATE_INDEX = "META-INF/fxml-template-loaders";
+
+    private Trees trees;
+    private QName providerClassName;
+    // resolves the classes of templates, from the compilation's class path
+    private ClassLoader classLoader;
+
+    private record TemplateLoader(QName typeName, QName loaderClassName, List<String> fragments) {
+    }
+
+    // loader for each template, in the order they're found
+    private final Map<List<String>, TemplateLoader> templateLoaders = new LinkedHashMap<>();
+    private final Map<QName, Integer> typeLoaderCounts = new HashMap<>();
+    private boolean indexRead = false, indexExists = false, providerWritten = false;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        try {
+            this.trees = Trees.instance(processingEnv);
+        } catch (IllegalArgumentException e) {
+            // not javac
+            this.trees = null;
+        }
+        var providerClassOption = processingEnv.getOptions().get(PROVIDER_CLASS_OPTION);
+        this.providerClassName = (providerClassOption != null ? QName.valueOf(providerClassOption) : null);
+        this.classLoader = new ClassPathClassLoader(FxmlTemplateCompiler.class.getClassLoader(), processingEnv.getFiler());
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        // all sources are scanned for templates, without the option, none are
+        return (providerClassName != null ? Set.of("*") : Set.of());
+    }
+
+    // loads classes from the compilation's class path, e.g. the project's own controls,
+    // after the processor's class loader, which must provide the translator and javafx classes it uses
+    // classes that are compiled along with the template aren't available, so such templates are processed at runtime
+    private static class ClassPathClassLoader extends ClassLoader {
+
+        private final Filer filer;
+
+        ClassPathClassLoader(ClassLoader parent, Filer filer) {
+            super(parent);
+            this.filer = filer;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            int pos = name.lastIndexOf('.');
+            try (var input = filer.getResource(StandardLocation.CLASS_PATH, pos >= 0 ? name.substring(0, pos) : "", name.substring(pos + 1) + ".class").openInputStream()) {
+                var bytes = input.readAllBytes();
+                return defineClass(name, bytes, 0, bytes.length);
+            } catch (IOException | IllegalArgumentException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
+    static boolean isFxmlProcessor(ExpressionTree expression) {
+        return switch (expression) {
+            case IdentifierTree identifier -> PROCESSOR_NAME.equals(identifier.getName().toString());
+            case MemberSelectTree memberSelect -> PROCESSOR_NAME.equals(memberSelect.getIdentifier().toString()) || isFxmlProcessor(memberSelect.getExpression());
+            case MethodInvocationTree methodInvocation -> isFxmlProcessor(methodInvocation.getMethodSelect());
+            default -> false;
+        };
+    }
+
+    // loaders are generated in the rounds where templates are found, and the provider in the first round after, which is before the last round,
+    // so it's compiled as usual, templates in sources generated by later rounds are processed at runtime
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (trees == null || providerClassName == null || roundEnv.processingOver()) {
+            return false;
+        }
+        if (! indexRead) {
+            readIndex(roundEnv);
+        }
+        boolean found = false;
+        for (var element : roundEnv.getRootElements()) {
+            if (element instanceof TypeElement typeElement) {
+                var path = trees.getPath(typeElement);
+                if (path == null) {
+                    continue;
+                }
+                List<List<String>> templates = new ArrayList<>();
+                new TreePathScanner<Void, Void>() {
+                    @Override
+                    public Void visitStringTemplate(StringTemplateTree stringTemplate, Void arg) {
+                        if (isFxmlProcessor(stringTemplate.getProcessor())) {
+                            templates.add(List.copyOf(stringTemplate.getFragments()));
+                        }
+                        return super.visitStringTemplate(stringTemplate, arg);
+                    }
+                }.scan(path, null);
+                for (var fragments : templates) {
+                    if (! templateLoaders.containsKey(fragments)) {
+                        found = true;
+                        if (providerWritten) {
+                            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Template in %s not compiled, since it was generated after %s".formatted(typeElement.getQualifiedName(), providerClassName), typeElement);
+                        } else {
+                            generateTemplateLoader(typeElement, fragments);
+                        }
+                    }
+                }
+            }
+        }
+        if ((! found) && (! providerWritten) && (indexExists || (! templateLoaders.isEmpty()))) {
+            generateProvider();
+            providerWritten = true;
+        }
+        return false;
+    }
+
+    // one line per loader, with the type it's generated from, the loader class and the url-encoded fragments, separated by spaces
+    // the loaders of the types that are compiled now, and of types or loaders that no longer exist, are dropped
+    private void readIndex(RoundEnvironment roundEnv) {
+        indexRead = true;
+        Set<String> compiledTypeNames = new HashSet<>();
+        for (var element : roundEnv.getRootElements()) {
+            if (element instanceof TypeElement typeElement) {
+                compiledTypeNames.add(typeElement.getQualifiedName().toString());
+            }
+        }
+        var elements = processingEnv.getElementUtils();
+        try (var reader = new BufferedReader(processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", TEMPLATE_INDEX).openReader(true))) {
+            indexExists = true;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                var items = line.split(" ", -1);
+                if (items.length < 3 || compiledTypeNames.contains(items[0])
+                    || elements.getTypeElement(items[0]) == null || elements.getTypeElement(items[1]) == null) {
+                    continue;
+                }
+                var typeName = QName.valueOf(items[0]);
+                var fragments = Arrays.stream(items, 2, items.length).map(item -> URLDecoder.decode(item, StandardCharsets.UTF_8)).toList();
+                templateLoaders.putIfAbsent(fragments, new TemplateLoader(typeName, QName.valueOf(items[1]), fragments));
+                typeLoaderCounts.merge(typeName, 1, Integer::sum);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // no earlier compile
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", TEMPLATE_INDEX).openWriter())) {
+            for (var templateLoader : templateLoaders.values()) {
+                out.print(templateLoader.typeName() + " " + templateLoader.loaderClassName());
+                for (var fragment : templateLoader.fragments()) {
+                    out.print(" " + URLEncoder.encode(fragment, StandardCharsets.UTF_8));
+                }
+                out.println();
+            }
+        }
+    }
+
+    private void writeSourceFile(ClassDeclaration classDeclaration) throws IOException {
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(classDeclaration.className().toString()).openWriter())) {
+            out.write(JavaCode.toJavaSource(classDeclaration));
+        }
+    }
+
+    // loaders are numbered per type, so recompiling a type regenerates only its own loaders
+    private void generateTemplateLoader(TypeElement typeElement, List<String> fragments) {
+        var typeName = QName.valueOf(typeElement.getQualifiedName().toString());
+        int loaderNum = typeLoaderCounts.getOrDefault(typeName, 0);
+        var loaderClassName = new QName(typeName.packageName(), "%sTemplate%sLoader".formatted(typeElement.getSimpleName(), loaderNum));
+        try {
+            var classDeclaration = FxmlTemplateTranslator.translateTemplate(fragments, loaderClassName, classLoader);
+            writeSourceFile(classDeclaration);
+            templateLoaders.put(fragments, new TemplateLoader(typeName, loaderClassName, fragments));
+            typeLoaderCounts.put(typeName, loaderNum + 1);
+        } catch (Exception ex) {
+            // the template will be processed at runtime
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Template in %s not compiled: %s".formatted(typeName, ex.getMessage()), typeElement);
+        }
+    }
+
+    private void generateProvider() {
+        List<Expression> entries = templateLoaders.values().stream().<Expression>map(templateLoader ->
+            new MethodCall(new ClassTarget("java.util.Map"), "entry", List.of(
+                new MethodCall(new ClassTarget("java.util.List"), "of", templateLoader.fragments().stream().<Expression>map(Literal::string).toList()),
+                new LambdaExpression(List.of("namespace"), new ConstructorCall(templateLoader.loaderClassName(), List.of(new VariableExpression("namespace"))))
+            ))
+        ).toList();
+        var providerClass = new ClassDeclaration(providerClassName, TypeRef.valueOf("no.hal.fxml.runtime.DefaultFxTemplateLoaderProvider"), null, List.of(
+            new ConstructorDeclaration("public", providerClassName.className(), List.of(), List.of(
+                new MethodCall((ObjectTarget) null, "super", new MethodCall(new ClassTarget("java.util.Map"), "ofEntries", entries))
+            ))
+        ));
+        try {
+            writeSourceFile(providerClass);
+            writeIndex();
+            try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/services/no.hal.fxml.runtime.FxTemplateLoaderProvider").openWriter())) {
+                out.println(providerClassName);
+            }
+        } catch (IOException ioex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Exception writing " + providerClassName + ": " + ioex);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package no.hal.fxml.translator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import no.hal.fxml.model.FxmlCode.Document;
+import no.hal.fxml.model.FxmlCode.FxmlElement;
+import no.hal.fxml.model.FxmlCode.FxmlParent;
+import no.hal.fxml.model.FxmlCode.Include;
+import no.hal.fxml.model.FxmlCode.PropertyValue;
+import no.hal.fxml.model.FxmlCode.Root;
+import no.hal.fxml.model.JavaCode.ClassDeclaration;
+import no.hal.fxml.model.QName;
+import no.hal.fxml.model.ValueExpression;
+import no.hal.fxml.parser.FxmlParser;
+
+// the fxml of string templates, where each slot (embedded expression) is a reference to a value_i entry in the namespace
+public class FxmlTemplateTranslator {
+
+    public static final String FXML_PREFIX = """
+    <?xml version="1.0" encoding="UTF-8"?>
+
+    <?import javafx.stage.*?>
+    <?import javafx.scene.*?>
+    <?import javafx.scene.control.*?>
+    <?import javafx.scene.layout.*?>
+    <?import javafx.scene.paint.*?>
+    <?import javafx.scene.shape.*?>
+
+    <Pane xmlns:fx="http://javafx.com/fxml">
+    """;
+
+    public static final String FXML_SUFFIX = """
+
+    </Pane>
+    """;
+
+    public enum SlotKind { ELEMENT, ATTRIBUTE, ATTRIBUTE_VALUE }
+
+    public static String slotName(int slot) {
+        return "value_" + slot;
+    }
+
+    // the slot for a name created by slotName, or -1 if it isn't a slot name
+    public static int slotIndex(String name, int slotCount) {
+        if (name.startsWith("value_")) {
+            try {
+                int slot = Integer.parseInt(name.substring("value_".length()));
+                if (slot >= 0 && slot < slotCount) {
+                    return slot;
+                }
+            } catch (NumberFormatException e) {
+                // not a slot name
+            }
+        }
+        return -1;
+    }
+
+    public static List<SlotKind> slotKinds(List<String> fragments) {
+        List<SlotKind> slotKinds = new ArrayList<>();
+        for (int i = 0; i < fragments.size() - 1; i++) {
+            slotKinds.add(slotKind(fragments, i));
+        }
+        return List.copyOf(slotKinds);
+    }
+
+    private static SlotKind slotKind(List<String> fragments, int pos) {
+        int quoteCount = 0;
+        for (int i = pos; i >= 0; i--) {
+            var fragment = fragments.get(i);
+            for (int j = fragment.length() - 1; j >= 0; j--) {
+                char c = fragment.charAt(j);
+                if (c == '\"') {
+                    quoteCount++;
+                } else if (c == '>') {
+                    return SlotKind.ELEMENT;
+                } else if (c == '<') {
+                    return quoteCount % 2 == 1 ? SlotKind.ATTRIBUTE_VALUE : SlotKind.ATTRIBUTE;
+                }
+            }
+        }
+        return SlotKind.ELEMENT;
+    }
+
+    // the fxml with slots as id references, that are resolved when building or loading
+    public static String modelFxml(List<String> fragments, List<SlotKind> slotKinds) {
+        StringBuilder builder = new StringBuilder(FXML_PREFIX);
+        for (int i = 0; i < slotKinds.size(); i++) {
+            builder.append(fragments.get(i));
+            switch (slotKinds.get(i)) {
+                case ATTRIBUTE_VALUE -> builder.append("$").append(slotName(i));
+                case ATTRIBUTE -> builder.append(" ").append(slotName(i)).append("=\"$").append(slotName(i)).append("\"");
+                case ELEMENT -> builder.append("<fx:reference source=\"").append(slotName(i)).append("\"/>");
+            }
+        }
+        builder.append(fragments.getLast());
+        builder.append(FXML_SUFFIX);
+        return builder.toString();
+    }
+
+    //
+
+    // the first unsupported element or expression, or null if there is none
+    private static String findUnsupported(FxmlElement fxmlElement) {
+        var unsupported = switch (fxmlElement) {
+            case Root root -> root.toShortString();
+            case Include include -> include.toShortString();
+            case PropertyValue(String _, ValueExpression valueExpression) -> switch (valueExpression) {
+                case ValueExpression.MethodReference _, ValueExpression.Binding _, ValueExpression.Location _ -> valueExpression.toShortString();
+                default -> null;
+            };
+            default -> null;
+        };
+        if (unsupported == null && fxmlElement instanceof FxmlParent<?> parent) {
+            for (var child : parent.children()) {
+                unsupported = findUnsupported(child);
+                if (unsupported != null) {
+                    break;
+                }
+            }
+        }
+        return unsupported;
+    }
+
+    // translates the template into a loader, that builds the wrapper pane, with the slot values in the namespace
+    // templates with attribute slots, a controller or method references are not supported, since the generated code can't handle them
+    public static ClassDeclaration translateTemplate(List<String> fragments, QName targetClassName, ClassLoader classLoader) throws Exception {
+        var slotKinds = slotKinds(fragments);
+        if (slotKinds.contains(SlotKind.ATTRIBUTE)) {
+            throw new UnsupportedOperationException("Attribute slots are not supported");
+        }
+        Document document = FxmlParser.parseFxml(modelFxml(fragments, slotKinds));
+        if (document.controllerClassName() != null) {
+            throw new UnsupportedOperationException("Controllers are not supported");
+        }
+        var unsupported = findUnsupported(document.instanceElement());
+        if (unsupported != null) {
+            throw new UnsupportedOperationException("Unsupported element or expression: " + unsupported);
+        }
+        return FxmlTranslator.translateFxml(document, targetClassName, classLoader, new FxmlTranslator.Config(false, false, false, true));
+    }
+}
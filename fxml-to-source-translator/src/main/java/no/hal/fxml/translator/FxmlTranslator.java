@@ -1,21 +1,44 @@
 package no.hal.fxml.translator;
 
 import java.io.InputStream;
+import java.io.Reader;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import javax.lang.model.SourceVersion;
+
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.Property;
 import javafx.scene.Node;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TitledPane;
+import no.hal.fxml.model.BindingExpression;
 import no.hal.fxml.model.FxmlCode.BeanElement;
 import no.hal.fxml.model.FxmlCode.BeanProperty;
 import no.hal.fxml.model.FxmlCode.Define;
 import no.hal.fxml.model.FxmlCode.Document;
 import no.hal.fxml.model.FxmlCode.FxmlElement;
+import no.hal.fxml.model.FxmlCode.FxmlParent;
+import no.hal.fxml.model.FxmlCode.Import;
 import no.hal.fxml.model.FxmlCode.Include;
 import no.hal.fxml.model.FxmlCode.InstanceElement;
 import no.hal.fxml.model.FxmlCode.InstantiationElement;
@@ -34,11 +57,16 @@ import no.hal.fxml.model.JavaCode.Cast;
 import no.hal.fxml.model.JavaCode.ClassDeclaration;
 import no.hal.fxml.model.JavaCode.ClassTarget;
 import no.hal.fxml.model.JavaCode.Comment;
+import no.hal.fxml.model.JavaCode.CompilationUnit;
 import no.hal.fxml.model.JavaCode.ConstructorCall;
 import no.hal.fxml.model.JavaCode.ConstructorDeclaration;
+import no.hal.fxml.model.JavaCode.ExecutableCall;
 import no.hal.fxml.model.JavaCode.Expression;
 import no.hal.fxml.model.JavaCode.ExpressionTarget;
 import no.hal.fxml.model.JavaCode.FieldAssignment;
+import no.hal.fxml.model.JavaCode.If;
+import no.hal.fxml.model.JavaCode.Formatter;
+import no.hal.fxml.model.JavaCode.Imports;
 import no.hal.fxml.model.JavaCode.LambdaExpression;
 import no.hal.fxml.model.JavaCode.LambdaMethodReference;
 import no.hal.fxml.model.JavaCode.Literal;
@@ -54,6 +82,7 @@ import no.hal.fxml.model.QName;
 import no.hal.fxml.model.TypeRef;
 import no.hal.fxml.model.ValueExpression;
 import no.hal.fxml.parser.FxmlParser;
+import no.hal.fxml.parser.FxmlVisitor;
 import no.hal.fxml.runtime.AbstractFxLoader;
 import no.hal.fxml.runtime.FxLoader;
 import no.hal.fxml.runtime.FxLoaderContext;
@@ -63,31 +92,65 @@ public class FxmlTranslator {
     public record Config(
         boolean includeCommentFxml,
         boolean useMethodReferences,
-        boolean useCastObject
+        boolean useCastObject,
+        // convert id references to the property type, for namespaces with values from string templates
+        boolean coerceIdReferences,
+        // the estimated bytecode size of the build method and the methods it's split into, 0 means no limit
+        int methodSizeBudget,
+        // build the content of tabs, titled panes and invisible nodes when first shown
+        boolean lazySubtrees
     ) {
         public Config() {
             this(true, false, false);
         }
+        public Config(boolean includeCommentFxml, boolean useMethodReferences, boolean useCastObject) {
+            this(includeCommentFxml, useMethodReferences, useCastObject, false);
+        }
+        public Config(boolean includeCommentFxml, boolean useMethodReferences, boolean useCastObject, boolean coerceIdReferences) {
+            this(includeCommentFxml, useMethodReferences, useCastObject, coerceIdReferences, DEFAULT_METHOD_SIZE_BUDGET);
+        }
+        public Config(boolean includeCommentFxml, boolean useMethodReferences, boolean useCastObject, boolean coerceIdReferences, int methodSizeBudget) {
+            this(includeCommentFxml, useMethodReferences, useCastObject, coerceIdReferences, methodSizeBudget, false);
+        }
+        public Config withLazySubtrees(boolean lazySubtrees) {
+            return new Config(includeCommentFxml, useMethodReferences, useCastObject, coerceIdReferences, methodSizeBudget, lazySubtrees);
+        }
     }
 
+    // below HotSpot's HugeMethodLimit of 8000 bytes, since larger methods aren't JIT-compiled, with a margin for the estimate
+    public static final int DEFAULT_METHOD_SIZE_BUDGET = 6000;
+
     private Config config;
 
     private final ClassResolver classResolver;
     private final ReflectionHelper reflectionHelper;
+    // the document is in the package of the target class
+    private final QName targetClassName;
 
     public FxmlTranslator(Document fxmlDocument, QName targetClassName, ClassLoader classLoader, Config config) {
+        this(fxmlDocument.imports(), targetClassName, classLoader, config);
+    }
+
+    private FxmlTranslator(List<Import> imports, QName targetClassName, ClassLoader classLoader, Config config) {
         this.config = config;
-        this.classResolver = new ClassResolver(classLoader, fxmlDocument.imports());
+        this.targetClassName = targetClassName;
+        this.methodSizeBudget = config.methodSizeBudget();
+        this.lazySubtrees = config.lazySubtrees();
+        this.classResolver = new ClassResolver(classLoader, imports);
         this.reflectionHelper = new ReflectionHelper();
     }
 
     private QName rootType = null;
 
     private List<Statement> builderStatements = new ArrayList<>();
+    // the statements of the group being translated, see translateGroup
+    private List<Statement> scopeStatements = builderStatements;
+    // where statements go, the formatter when streaming
+    private Consumer<Statement> statementConsumer = statement -> scopeStatements.add(statement);
     private Map<FxmlElement, Expression> expressions = new HashMap<>();
 
     private void emitBuilderStatement(Statement statement) {
-        builderStatements.add(statement);
+        statementConsumer.accept(statement);
     }
 
     private Expression expressionFor(FxmlElement fxmlElement, Expression expression) {
@@ -114,27 +177,57 @@ public class FxmlTranslator {
     public static ClassDeclaration translateFxml(Document fxmlDocument, QName targetClassName, ClassLoader classLoader, Config config) {
         FxmlTranslator translator = new FxmlTranslator(fxmlDocument, targetClassName, classLoader, config);
         FxmlElement rootElement = fxmlDocument.instanceElement();
+        translator.documentElement = rootElement;
         Expression rootExpression = translator.fxml2BuilderStatements(rootElement);
         translator.emitBuilderStatement(new Return(rootExpression));
+        List<Member> generatedMembers = new ArrayList<>(translator.buildMethods);
+        generatedMembers.addAll(translator.constants.values());
+        if (translator.hasLazySubtrees && fxmlDocument.controllerClassName() != null) {
+            generatedMembers.add(injectFxmlObjectsMethod());
+        }
+        return loaderClassDeclaration(targetClassName, translator.rootType, fxmlDocument.controllerClassName(), translator.helperTakesFxLoader(fxmlDocument.controllerClassName()), translator.builderStatements, generatedMembers, translator.idTypes, config);
+    }
+
+    private static QName controllerHelperClassName(QName controllerClassName) {
+        return new QName(controllerClassName.packageName(), controllerClassName.className() + "Helper");
+    }
+
+    // helpers that aren't compiled yet are assumed to be generated with the FxLoader constructor,
+    // while older helpers only have the one taking the namespace
+    private boolean helperTakesFxLoader(QName controllerClassName) {
+        Class<?> helperClass = (controllerClassName != null ? classResolver.resolve(controllerHelperClassName(controllerClassName)) : null);
+        if (helperClass == null) {
+            return true;
+        }
+        for (var constructor : helperClass.getDeclaredConstructors()) {
+            var parameterTypes = constructor.getParameterTypes();
+            if (parameterTypes.length == 2 && parameterTypes[0].isAssignableFrom(FxLoader.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // generatedMembers are the methods the build method is split into, and constants and other methods
+    private static ClassDeclaration loaderClassDeclaration(QName targetClassName, QName rootType, QName controllerClassName, boolean helperTakesFxLoader, List<Statement> builderStatements, List<? extends Member> generatedMembers, Map<String, Class<?>> idTypes, Config config) {
         List<Member> members = new ArrayList<>();
         members.add(new ConstructorDeclaration("public", targetClassName.className(), List.of()));
         members.add(new ConstructorDeclaration("public", targetClassName.className(), List.of(
             VariableDeclaration.parameter(TypeRef.valueOf("java.util.Map<String, Object>"), "namespace")
         )));
-        members.add(new MethodDeclaration("protected", "build", new TypeRef(translator.rootType), List.of(
-                VariableDeclaration.parameter(TypeRef.of(FxLoaderContext.class), FX_LOADER_CONTEXT_VARIABLE)
-            ), translator.builderStatements)
+        members.add(new MethodDeclaration("protected", "build", new TypeRef(rootType), List.of(fxLoaderContextParameter()), builderStatements)
         );
-        if (fxmlDocument.controllerClassName() != null) {
-            QName controllerClassName = fxmlDocument.controllerClassName();
+        members.addAll(generatedMembers);
+        members.addAll(idMembers(idTypes));
+        if (controllerClassName != null) {
             members.add(new MethodDeclaration("protected", "createController", new TypeRef(controllerClassName), null, List.of(
                 new Return(new ConstructorCall(controllerClassName))
             )));
-            QName controllerHelperClassName = new QName(controllerClassName.packageName(), controllerClassName.className() + "Helper");
+            QName controllerHelperClassName = controllerHelperClassName(controllerClassName);
             members.add(new VariableDeclaration("private", new TypeRef(controllerHelperClassName), "controllerHelper", null));
             members.add(new MethodDeclaration("protected", "initializeController", null, null, List.of(
                 new FieldAssignment(ObjectTarget.thisTarget(), "controllerHelper", new ConstructorCall(controllerHelperClassName, List.of(
-                    new MethodCall(ObjectTarget.thisTarget(), "getNamespace"),
+                    helperTakesFxLoader ? new VariableExpression("this") : new MethodCall(ObjectTarget.thisTarget(), "getNamespace"),
                     castObject(new TypeRef(controllerClassName), new VariableExpression("this.controller"), config)
                 ))),
                 new MethodCall(new ExpressionTarget("this.controllerHelper"), "initializeController")
@@ -142,8 +235,8 @@ public class FxmlTranslator {
         }
         return new ClassDeclaration(targetClassName,
                 new TypeRef(QName.of(AbstractFxLoader.class),
-                    translator.rootType != null ? new TypeRef(translator.rootType) : TypeRef.of(Node.class),
-                    new TypeRef(fxmlDocument.controllerClassName() != null ? fxmlDocument.controllerClassName() : QName.of(Object.class))
+                    rootType != null ? new TypeRef(rootType) : TypeRef.of(Node.class),
+                    new TypeRef(controllerClassName != null ? controllerClassName : QName.of(Object.class))
                 ),
                 null,  members
         );
@@ -161,7 +254,11 @@ public class FxmlTranslator {
         }
         return switch (fxmlElement) {
             case Define define -> {
-                define.children().forEach(this::fxml2BuilderStatements);
+                List<List<Statement>> groups = new ArrayList<>();
+                for (var child : define.children()) {
+                    groups.add(translateGroup(() -> fxml2BuilderStatements(child)));
+                }
+                emitGroups(groups, List.of(fxLoaderContextParameter()));
                 yield null;
             }
             case Root root -> {
@@ -184,7 +281,9 @@ public class FxmlTranslator {
                 var instantiationExpression = translateInstantiation(instanceClass, instantiationElement.instantiation());
                 var remainingBeanChildren = new ArrayList<>(instantiationElement.children());
                 if (instantiationExpression == null) {
-                    var constructor = reflectionHelper.getNamedArgsConstructor(instanceClass);
+                    var propertyNames = instantiationElement.children().stream()
+                        .filter(BeanProperty.class::isInstance).map(child -> ((BeanProperty) child).propertyName()).toList();
+                    var constructor = reflectionHelper.getNamedArgsConstructor(instanceClass, propertyNames);
                     if (constructor.isPresent()) {
                         // try constructor with @NamedArg, e.g. Color(red, green, blue))
                         var namedArgs = reflectionHelper.getNamedConstructorArgs(constructor.get());
@@ -221,6 +320,12 @@ public class FxmlTranslator {
                 if (instantiationExpression == null) {
                     throw new IllegalArgumentException("Couldn't create instance for " + instantiationElement);
                 }
+                var constantExpression = (remainingBeanChildren.isEmpty() ? constantInstance(instanceClass, instantiationElement, instantiationExpression) : null);
+                if (constantExpression != null) {
+                    expressionFor(instantiationElement, constantExpression);
+                    translateId(instantiationElement);
+                    yield constantExpression;
+                }
                 var instanceVariable = gensym(instanceClass.getSimpleName());
                 emitBuilderStatement(new VariableDeclaration(instanceClass.getName(), instanceVariable, instantiationExpression));
                 var instanceExpression = new VariableExpression(instanceVariable);
@@ -229,6 +334,8 @@ public class FxmlTranslator {
                 translateBeanChildren(instantiationElement, remainingBeanChildren);
                 yield instanceExpression;
             }
+            // the field, if the id is defined before the reference, otherwise e.g. from the namespace given to the loader
+            case Reference reference when idTypes.containsKey(reference.source()) -> new VariableExpression("this." + reference.source());
             case Reference reference -> getFxmlObjectCall(reference.source());
 
             case Include(String id, String source) -> {
@@ -237,8 +344,10 @@ public class FxmlTranslator {
                 var rootVar = gensym("fxIncludeRoot");
                 emitBuilderStatement(new VariableDeclaration(TypeRef.of(Node.class), rootVar, new MethodCall(loaderVar, "getRoot")));
                 var rootVarExpression = new VariableExpression(rootVar);
-                emitBuilderStatement(setFxmlObjectCall(id, rootVarExpression));
-                emitBuilderStatement(setFxmlObjectCall(id + "Controller", new MethodCall(loaderVar, "getController")));
+                if (id != null) {
+                    emitBuilderStatement(setIdObject(id, Node.class, rootVarExpression));
+                    emitBuilderStatement(setIdObject(id + "Controller", Object.class, new MethodCall(loaderVar, "getController")));
+                }
                 yield rootVarExpression;
             }
             default -> null;
@@ -248,6 +357,9 @@ public class FxmlTranslator {
     static MethodCall getFxmlObjectCall(String id) {
         return new MethodCall(ObjectTarget.thisTarget(), "getFxmlObject", Literal.string(id));
     }
+    static MethodCall getFxmlObjectCall(String id, Class<?> type) {
+        return new MethodCall(ObjectTarget.thisTarget(), "getFxmlObject", List.of(Literal.string(id), new VariableExpression(type.getCanonicalName() + ".class")));
+    }
     static MethodCall setFxmlObjectCall(String id, Expression expression) {
         return new MethodCall(ObjectTarget.thisTarget(), "setFxmlObject", List.of(Literal.string(id), expression));
     }
@@ -255,15 +367,72 @@ public class FxmlTranslator {
         return new MethodCall(ObjectTarget.thisTarget(), "setFxmlObject", List.of(Literal.string(id), new VariableExpression(variableName)));
     }
 
-    private Map<String, Expression> idMap = new HashMap<>();
+    // the objects with fx:id are kept in typed fields, rather than in the namespace,
+    // except when the id can't be used as a field name
+    private Map<String, Class<?>> idTypes = new LinkedHashMap<>();
+
+    // the names of the fields and methods of AbstractFxLoader, and their corresponding property names
+    private static final Set<String> RESERVED_IDS = Set.of("root", "controller", "controllerHelper", "namespace", "fxmlObject", "fxmlObjects");
+
+    private Statement setIdObject(String id, Class<?> clazz, Expression expression) {
+        if (SourceVersion.isName(id) && (! RESERVED_IDS.contains(id))) {
+            // a field that is assigned different types, e.g. a duplicate id, needs the common type
+            idTypes.merge(id, clazz, (type1, type2) -> type1 == type2 ? type1 : Object.class);
+            return new FieldAssignment(ObjectTarget.thisTarget(), id, expression);
+        }
+        return setFxmlObjectCall(id, expression);
+    }
+
+    // the field for the id, if it has a type that is assignable to the target class
+    private Expression idField(String id, Class<?> targetClass) {
+        Class<?> idType = idTypes.get(id);
+        if (idType != null && MethodType.methodType(targetClass).wrap().returnType().isAssignableFrom(idType)) {
+            return new VariableExpression("this." + id);
+        }
+        return null;
+    }
+
+    // the fields and accessors of the objects with fx:id, and overrides for accessing them by id
+    private static List<Member> idMembers(Map<String, Class<?>> idTypes) {
+        List<Member> members = new ArrayList<>();
+        if (idTypes.isEmpty()) {
+            return members;
+        }
+        for (var idType : idTypes.entrySet()) {
+            var id = idType.getKey();
+            var typeRef = new TypeRef(QName.valueOf(idType.getValue().getCanonicalName()));
+            members.add(new VariableDeclaration("private", typeRef, id, null));
+            members.add(new MethodDeclaration("public", "get" + Character.toUpperCase(id.charAt(0)) + id.substring(1), typeRef, null, List.of(
+                new Return(new VariableExpression("this." + id))
+            )));
+        }
+        // if ("id".equals(id)) { return (T) this.id; } ..., rather than a switch, which not all compilers support, e.g. janino
+        List<Statement> getStatements = new ArrayList<>();
+        for (var id : idTypes.keySet()) {
+            getStatements.add(new If(new MethodCall(new ExpressionTarget(Literal.string(id)), "equals", new VariableExpression("id")), List.of(
+                new Return(new Cast(TypeRef.valueOf("T"), new VariableExpression("this." + id)))
+            )));
+        }
+        getStatements.add(new Return(new MethodCall(new ExpressionTarget("super"), "getFxmlObject", new VariableExpression("id"))));
+        members.add(new MethodDeclaration("@SuppressWarnings(\"unchecked\") public <T>", "getFxmlObject", TypeRef.valueOf("T"), List.of(
+                VariableDeclaration.parameter(TypeRef.of(String.class), "id")
+            ), getStatements
+        ));
+        members.add(new MethodDeclaration("protected", "putFxmlObjects", null, List.of(
+                VariableDeclaration.parameter(TypeRef.valueOf("java.util.Map<String, Object>"), "namespace")
+            ), idTypes.keySet().stream().<Statement>map(id -> new MethodCall(ObjectTarget.thisTarget(), "putFxmlObject", List.of(
+                new VariableExpression("namespace"), Literal.string(id), new VariableExpression("this." + id)
+            ))).toList()
+        ));
+        return members;
+    }
 
     private void translateId(InstantiationElement instantiationElement) {
         if (instantiationElement.id() != null) {
             var instantiationExpression = expressionFor(instantiationElement);
             var id = instantiationElement.id();
-            idMap.put(id, instantiationExpression);
-            emitBuilderStatement(setFxmlObjectCall(id, instantiationExpression));
             var clazz = classResolver.resolve(instantiationElement.className());
+            emitBuilderStatement(setIdObject(id, clazz, instantiationExpression));
             reflectionHelper.getSetter(clazz, "id").ifPresent(setter ->
                 emitBuilderStatement(new MethodCall(new ExpressionTarget(instantiationExpression), setter.getName(), Literal.string(id)))
             );
@@ -284,15 +453,219 @@ public class FxmlTranslator {
     private void translateBeanChildren(BeanElement bean, Iterable<? extends FxmlElement> fxmlElements) {
         Class<?> beanClass = classResolver.resolve(bean.beanType());
         Optional<String> defaultProperty = reflectionHelper.getDefaultProperty(beanClass);
+        // each property value is a group, that may be moved into a method with the bean as parameter
+        List<List<Statement>> groups = new ArrayList<>();
+        // the groups of the default property, if built lazily
+        String lazyCondition = (lazySubtrees && defaultProperty.isPresent() ? lazyCondition(beanClass, defaultProperty.get(), fxmlElements) : null);
+        List<List<Statement>> lazyGroups = (lazyCondition != null ? new ArrayList<>() : groups);
         for (var child : fxmlElements) {
             switch (child) {
-                case BeanProperty beanProperty -> 
-                    translatePropertyAccess(bean, beanClass, beanProperty);
+                case PropertyElement propertyElement ->
+                    translatePropertyElement(bean, beanClass, propertyElement.propertyName(), propertyElement.children(),
+                        defaultProperty.equals(Optional.of(propertyElement.propertyName())) ? lazyGroups : groups);
+                case BeanProperty beanProperty ->
+                    groups.add(translateGroup(() -> translatePropertyAccess(expressionFor(bean), beanClass, beanProperty)));
                 case InstanceElement instanceElement ->
-                    translatePropertyAccess(bean, beanClass, new PropertyElement(defaultProperty.get(), instanceElement));
-                default -> fxml2BuilderStatements(child);
+                    translatePropertyElement(bean, beanClass, defaultProperty.get(), List.of(instanceElement), lazyGroups);
+                default -> groups.add(translateGroup(() -> fxml2BuilderStatements(child)));
+            }
+        }
+        var beanVariable = (VariableExpression) expressionFor(bean);
+        var parameters = List.of(fxLoaderContextParameter(), VariableDeclaration.parameter(new TypeRef(QName.of(beanClass)), beanVariable.variableName()));
+        // after the other properties, so the condition has its initial value
+        if (lazyGroups != groups && (! lazyGroups.isEmpty())) {
+            groups.add(translateGroup(() -> emitLazyGroups(beanVariable, beanClass, lazyCondition, lazyGroups, parameters)));
+        }
+        emitGroups(groups, parameters);
+    }
+
+    // each value is translated and set in its own group
+    private void translatePropertyElement(BeanElement bean, Class<?> beanClass, String propertyName, List<InstanceElement> children, List<List<Statement>> groups) {
+        PropertyAccess propertyAccess = propertyAccess(expressionFor(bean), beanClass, propertyName);
+        for (var child : children) {
+            groups.add(translateGroup(() -> emitPropertyAccess(propertyAccess, fxml2BuilderStatements(child))));
+        }
+    }
+
+    // splitting the build method
+
+    private int methodSizeBudget;
+    private List<MethodDeclaration> buildMethods = new ArrayList<>();
+
+    // translates into a separate group of statements
+    private List<Statement> translateGroup(Runnable translation) {
+        var outerStatements = scopeStatements;
+        scopeStatements = new ArrayList<>();
+        try {
+            translation.run();
+            return scopeStatements;
+        } finally {
+            scopeStatements = outerStatements;
+        }
+    }
+
+    private static VariableDeclaration fxLoaderContextParameter() {
+        return VariableDeclaration.parameter(TypeRef.of(FxLoaderContext.class), FX_LOADER_CONTEXT_VARIABLE);
+    }
+
+    // emits the groups, or if they together with the current group are larger than the budget, moves them into methods,
+    // with the given parameters, and emits calls to them instead, which may in turn be moved
+    private void emitGroups(List<List<Statement>> groups, List<VariableDeclaration> parameters) {
+        int size = BytecodeSizeEstimator.estimate(scopeStatements);
+        for (var group : groups) {
+            size += BytecodeSizeEstimator.estimate(group);
+        }
+        if (methodSizeBudget <= 0 || size <= methodSizeBudget) {
+            groups.forEach(group -> group.forEach(this::emitBuilderStatement));
+            return;
+        }
+        List<List<Statement>> calls = new ArrayList<>();
+        List<Statement> methodStatements = new ArrayList<>();
+        int methodSize = 0;
+        for (var group : groups) {
+            int groupSize = BytecodeSizeEstimator.estimate(group);
+            if (methodSize + groupSize > methodSizeBudget && (! methodStatements.isEmpty())) {
+                calls.add(List.of(buildMethodCall(methodStatements, parameters)));
+                methodStatements = new ArrayList<>();
+                methodSize = 0;
+            }
+            methodStatements.addAll(group);
+            methodSize += groupSize;
+        }
+        if (! methodStatements.isEmpty()) {
+            calls.add(List.of(buildMethodCall(methodStatements, parameters)));
+        }
+        if (calls.size() < groups.size()) {
+            emitGroups(calls, parameters);
+        } else {
+            calls.forEach(call -> call.forEach(this::emitBuilderStatement));
+        }
+    }
+
+    private MethodCall buildMethodCall(List<Statement> statements, List<VariableDeclaration> parameters) {
+        var methodName = "build" + (buildMethods.size() + 1);
+        buildMethods.add(new MethodDeclaration("private", methodName, null, parameters, statements));
+        return new MethodCall(ObjectTarget.thisTarget(), methodName, parameters.stream().<Expression>map(parameter -> new VariableExpression(parameter.variableName())).toList());
+    }
+
+    // lazy subtrees
+
+    private boolean lazySubtrees;
+    private boolean hasLazySubtrees = false;
+
+    // the root of the document, for finding the ids referenced outside a subtree
+    private FxmlElement documentElement;
+
+    // the boolean property that the default property value of a bean is built lazily on, when it's first true,
+    // i.e. the content of tabs when selected, of titled panes when expanded, and the children of invisible nodes when shown,
+    // or null if it must be built when loaded, since ids defined in it are referenced outside it
+    private String lazyCondition(Class<?> beanClass, String defaultProperty, Iterable<? extends FxmlElement> fxmlElements) {
+        String conditionProperty = lazyCondition(beanClass, fxmlElements);
+        if (conditionProperty == null) {
+            return null;
+        }
+        List<FxmlElement> subtree = new ArrayList<>();
+        for (var child : fxmlElements) {
+            if (child instanceof InstanceElement || (child instanceof PropertyElement propertyElement && defaultProperty.equals(propertyElement.propertyName()))) {
+                subtree.add(child);
             }
         }
+        Set<String> definedIds = new HashSet<>();
+        subtree.forEach(element -> collectDefinedIds(element, definedIds));
+        if (! definedIds.isEmpty()) {
+            Set<FxmlElement> excluded = Collections.newSetFromMap(new IdentityHashMap<>());
+            excluded.addAll(subtree);
+            Set<String> referencedIds = new HashSet<>();
+            collectReferencedIds(documentElement, excluded, referencedIds);
+            if (! Collections.disjoint(definedIds, referencedIds)) {
+                return null;
+            }
+        }
+        return conditionProperty;
+    }
+
+    private static void collectDefinedIds(FxmlElement fxmlElement, Set<String> ids) {
+        switch (fxmlElement) {
+            case InstantiationElement instantiationElement when instantiationElement.id() != null -> ids.add(instantiationElement.id());
+            case Include include when include.id() != null -> {
+                ids.add(include.id());
+                ids.add(include.id() + "Controller");
+            }
+            default -> {}
+        }
+        if (fxmlElement instanceof FxmlParent<?> parent) {
+            parent.children().forEach(child -> collectDefinedIds(child, ids));
+        }
+    }
+
+    // the ids referenced by fx:reference, $id and ${id...}, except in the excluded elements (by identity)
+    private static void collectReferencedIds(FxmlElement fxmlElement, Set<FxmlElement> excluded, Set<String> ids) {
+        if (excluded.contains(fxmlElement)) {
+            return;
+        }
+        switch (fxmlElement) {
+            case Reference reference -> ids.add(reference.source());
+            case PropertyValue propertyValue -> collectReferencedIds(propertyValue.value(), ids);
+            case StaticProperty staticProperty -> collectReferencedIds(staticProperty.value(), ids);
+            default -> {}
+        }
+        if (fxmlElement instanceof FxmlParent<?> parent) {
+            parent.children().forEach(child -> collectReferencedIds(child, excluded, ids));
+        }
+    }
+
+    private static void collectReferencedIds(ValueExpression value, Set<String> ids) {
+        switch (value) {
+            case ValueExpression.IdReference(String source) -> ids.add(source);
+            case ValueExpression.Binding(String _, BindingExpression expression) -> collectReferencedIds(expression, ids);
+            default -> {}
+        }
+    }
+
+    private static void collectReferencedIds(BindingExpression expression, Set<String> ids) {
+        switch (expression) {
+            case BindingExpression.PropertyPath propertyPath -> ids.add(propertyPath.id());
+            case BindingExpression.UnaryOperation(var _, BindingExpression operand) -> collectReferencedIds(operand, ids);
+            case BindingExpression.BinaryOperation(var _, BindingExpression left, BindingExpression right) -> {
+                collectReferencedIds(left, ids);
+                collectReferencedIds(right, ids);
+            }
+            case BindingExpression.Constant _ -> {}
+        }
+    }
+
+    private String lazyCondition(Class<?> beanClass, Iterable<? extends FxmlElement> fxmlElements) {
+        if (Tab.class.isAssignableFrom(beanClass)) {
+            return "selected";
+        } else if (TitledPane.class.isAssignableFrom(beanClass)) {
+            return "expanded";
+        } else if (Node.class.isAssignableFrom(beanClass)) {
+            for (var child : fxmlElements) {
+                if (child instanceof PropertyValue(String propertyName, ValueExpression.String(String value)) && "visible".equals(propertyName) && "false".equals(value.trim())) {
+                    return "visible";
+                }
+            }
+        }
+        return null;
+    }
+
+    // moves the groups into a method, that is called when the condition is first true, e.g.
+    // this.buildWhen(tab.selectedProperty(), () -> this.build1(fxLoaderContext, tab))
+    private void emitLazyGroups(Expression beanExpression, Class<?> beanClass, String conditionProperty, List<List<Statement>> groups, List<VariableDeclaration> parameters) {
+        var propertyMethod = reflectionHelper.getPropertyMethod(beanClass, conditionProperty)
+            .orElseThrow(() -> new IllegalArgumentException("No " + conditionProperty + " property of " + beanClass));
+        var condition = new MethodCall(new ExpressionTarget(beanExpression), propertyMethod.getName());
+        // the method may in turn be split
+        var statements = translateGroup(() -> emitGroups(groups, parameters));
+        emitBuilderStatement(new MethodCall(ObjectTarget.thisTarget(), "buildWhen", List.of(condition, new LambdaExpression(List.of(), buildMethodCall(statements, parameters)))));
+        hasLazySubtrees = true;
+    }
+
+    // when lazy subtrees are built after loading, the controller helper injects the objects again
+    private static MethodDeclaration injectFxmlObjectsMethod() {
+        return new MethodDeclaration("protected", "injectFxmlObjects", null, null, List.of(
+            new MethodCall(new ExpressionTarget("this.controllerHelper"), "injectFxmlObjects")
+        ));
     }
 
     private record PropertyAccess(ObjectTarget methodTarget, String methodName, Class<?> valueClass, Expression firstArgs) {
@@ -301,33 +674,67 @@ public class FxmlTranslator {
         }
     }
 
-    private void translatePropertyAccess(BeanElement bean, Class<?> beanClass, BeanProperty property) {
-        ObjectTarget beanTarget = new ExpressionTarget(expressionFor(bean));
-        PropertyAccess propertyAccess = reflectionHelper.getSetter(beanClass, property.propertyName())
+    private void translatePropertyAccess(Expression beanExpression, Class<?> beanClass, BeanProperty property) {
+        if (property instanceof PropertyValue(String propertyName, ValueExpression.Binding binding)) {
+            translateBinding(beanExpression, beanClass, propertyName, binding.expression());
+            return;
+        }
+        PropertyAccess propertyAccess = propertyAccess(beanExpression, beanClass, property);
+        List<Expression> valueExpressions = translatePropertyValues(property, propertyAccess.valueClass);
+        for (var valueExpression : valueExpressions) {
+            emitPropertyAccess(propertyAccess, valueExpression);
+        }
+    }
+
+    private PropertyAccess propertyAccess(Expression beanExpression, Class<?> beanClass, BeanProperty property) {
+        return switch (property) {
+            case StaticProperty staticProperty -> staticPropertyAccess(beanExpression, beanClass, staticProperty.className(), staticProperty.propertyName());
+            default -> propertyAccess(beanExpression, beanClass, property.propertyName());
+        };
+    }
+
+    private PropertyAccess propertyAccess(Expression beanExpression, Class<?> beanClass, String propertyName) {
+        // property elements may be static properties, e.g. <GridPane.margin>
+        int pos = propertyName.lastIndexOf('.');
+        if (pos >= 0) {
+            return staticPropertyAccess(beanExpression, beanClass, propertyName.substring(0, pos), propertyName.substring(pos + 1));
+        }
+        ObjectTarget beanTarget = new ExpressionTarget(beanExpression);
+        PropertyAccess propertyAccess = reflectionHelper.getSetter(beanClass, propertyName)
             .map(setter -> new PropertyAccess(beanTarget, setter.getName(), setter.getParameterTypes()[0]))
-            .orElseGet(() -> reflectionHelper.getGetter(beanClass, property.propertyName())
+            .orElseGet(() -> reflectionHelper.getGetter(beanClass, propertyName)
                 .filter(getter -> reflectionHelper.implementsList(getter.getReturnType()))
                 .map(getter -> new PropertyAccess(new ExpressionTarget(new MethodCall(beanTarget, getter.getName())), "add", Object.class))
                 .orElseGet(() -> reflectionHelper.implementsMap(beanClass)
-                    ? new PropertyAccess(beanTarget, "put", Object.class, Literal.string(property.propertyName()))
+                    ? new PropertyAccess(beanTarget, "put", Object.class, Literal.string(propertyName))
                     : null
                 )
             );
         if (propertyAccess == null) {
-            throw new IllegalArgumentException("No property access for " + property.propertyName() + " of " + beanClass);
-        }
-        List<Expression> valueExpressions = translatePropertyValues(property, propertyAccess.valueClass);
-        for (var valueExpression : valueExpressions) {
-            List<Expression> methodArgs = propertyAccess.firstArgs != null ? List.of(propertyAccess.firstArgs, valueExpression) : List.of(valueExpression);
-            emitBuilderStatement(new MethodCall(propertyAccess.methodTarget, propertyAccess.methodName, methodArgs));
+            throw new IllegalArgumentException("No property access for " + propertyName + " of " + beanClass);
         }
+        return propertyAccess;
+    }
+
+    // e.g. GridPane.setRowIndex(label, 0)
+    private PropertyAccess staticPropertyAccess(Expression beanExpression, Class<?> beanClass, String className, String propertyName) {
+        var staticClass = classResolver.resolve(QName.valueOf(className));
+        Objects.requireNonNull(staticClass, "Couldn't resolve class for static property: " + className + "." + propertyName);
+        return reflectionHelper.getStaticSetter(staticClass, propertyName, beanClass)
+            .map(setter -> new PropertyAccess(new ClassTarget(QName.of(staticClass)), setter.getName(), setter.getParameterTypes()[1], beanExpression))
+            .orElseThrow(() -> new IllegalArgumentException("No static property access for " + className + "." + propertyName + " of " + beanClass));
+    }
+
+    private void emitPropertyAccess(PropertyAccess propertyAccess, Expression valueExpression) {
+        List<Expression> methodArgs = propertyAccess.firstArgs != null ? List.of(propertyAccess.firstArgs, valueExpression) : List.of(valueExpression);
+        emitBuilderStatement(new MethodCall(propertyAccess.methodTarget, propertyAccess.methodName, methodArgs));
     }
 
     private List<Expression> translatePropertyValues(BeanProperty property, Class<?> valueClass) {
         return switch (property) {
             case PropertyElement propertyElement -> propertyElement.children().stream().map(this::fxml2BuilderStatements).toList();
             case PropertyValue propertyValue -> List.of(translateValueExpression(propertyValue.value(), valueClass));
-            case StaticProperty staticProperty -> throw new UnsupportedOperationException();
+            case StaticProperty staticProperty -> List.of(translateValueExpression(staticProperty.value(), valueClass));
         };
     }
 
@@ -340,10 +747,13 @@ public class FxmlTranslator {
 
     private Expression translateValueExpression(ValueExpression valueExpression, Class<?> targetClass) {
         return switch (valueExpression) {
-            case ValueExpression.String(String value) -> new Literal(value, targetClass);
+            case ValueExpression.String(String value) when reflectionHelper.getValueOf(targetClass).isPresent() -> translateValueOf(reflectionHelper.getValueOf(targetClass).get(), targetClass, value);
+            case ValueExpression.String(String value) -> new Literal(reflectionHelper.coerceLiteral(value, targetClass), targetClass);
+            case ValueExpression.IdReference(String source) when config.coerceIdReferences() && targetClass != Object.class -> getFxmlObjectCall(source, targetClass);
+            case ValueExpression.IdReference(String source) when idField(source, targetClass) != null -> idField(source, targetClass);
             case ValueExpression.IdReference(String source) -> castObject(TypeRef.of(targetClass), getFxmlObjectCall(source));
-            case ValueExpression.Binding value -> throw new UnsupportedOperationException();
-            case ValueExpression.Location value -> throw new UnsupportedOperationException();
+            case ValueExpression.Binding value -> throw new UnsupportedOperationException("Binding expressions are only supported as property values: " + value.toShortString());
+            case ValueExpression.Location(String location) -> translateLocation(location, targetClass);
             case ValueExpression.MethodReference(String methodName) -> {
                 var target = new ExpressionTarget("this.controllerHelper");
                 yield config.useMethodReferences()
@@ -354,6 +764,535 @@ public class FxmlTranslator {
         };
     }
 
+    // constants
+
+    // the static final fields of the loader, shared by all loads, by what they're initialized with
+    private Map<String, VariableDeclaration> constants = new LinkedHashMap<>();
+    // the expressions with constant values, that may be used to initialize other constants
+    private Set<Expression> constantExpressions = new HashSet<>();
+
+    private VariableExpression constant(String key, Supplier<VariableDeclaration> constantDeclaration) {
+        var constantExpression = new VariableExpression(constants.computeIfAbsent(key, _ -> constantDeclaration.get()).variableName());
+        constantExpressions.add(constantExpression);
+        return constantExpression;
+    }
+
+    private boolean isConstant(Expression expression) {
+        return expression instanceof Literal || constantExpressions.contains(expression);
+    }
+
+    // immutable values created from constants are kept in static final fields, e.g. new Insets(5.0) or Duration.valueOf("200ms"),
+    // strings given with fx:value are used as literals, and fx:constant values directly
+    private Expression constantInstance(Class<?> clazz, InstantiationElement instantiationElement, Expression instantiationExpression) {
+        if (instantiationElement.instantiation() instanceof Constant) {
+            constantExpressions.add(instantiationExpression);
+            return instantiationExpression;
+        }
+        if (! (reflectionHelper.isImmutable(clazz) && (instantiationElement.instantiation() instanceof Constructor || instantiationElement.instantiation() instanceof Value))) {
+            return null;
+        }
+        var arguments = ((ExecutableCall) instantiationExpression).arguments();
+        if (! arguments.stream().allMatch(this::isConstant)) {
+            return null;
+        }
+        if (clazz == String.class && instantiationElement.instantiation() instanceof Value) {
+            return arguments.getFirst();
+        }
+        var baseName = instantiationElement.id() != null ? instantiationElement.id() : clazz.getSimpleName();
+        return constantValue(clazz, baseName, instantiationExpression);
+    }
+
+    private Expression constantValue(Class<?> clazz, String baseName, Expression initializer) {
+        return constant(initializer.toString(), () ->
+            new VariableDeclaration("private static final", new TypeRef(QName.valueOf(clazz.getCanonicalName())), constantName(constantBaseName(baseName)), initializer)
+        );
+    }
+
+    // e.g. Paint.valueOf("red"), shared if the type is immutable
+    private Expression translateValueOf(Method valueOf, Class<?> targetClass, String value) {
+        var valueOfCall = new MethodCall(new ClassTarget(QName.of(valueOf.getDeclaringClass())), valueOf.getName(), Literal.string(value));
+        return reflectionHelper.isImmutable(valueOf.getDeclaringClass()) ? constantValue(valueOf.getDeclaringClass(), targetClass.getSimpleName(), valueOfCall) : valueOfCall;
+    }
+
+    // e.g. ANSWER_INPUT for answerInput and ICON_PNG for icon.png
+    private static String constantBaseName(String name) {
+        var baseName = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c) && i > 0 && Character.isLowerCase(name.charAt(i - 1))) {
+                baseName.append('_');
+            }
+            baseName.append(Character.isJavaIdentifierPart(c) ? Character.toUpperCase(c) : '_');
+        }
+        if (baseName.isEmpty() || (! Character.isJavaIdentifierStart(baseName.charAt(0)))) {
+            baseName.insert(0, '_');
+        }
+        return baseName.toString();
+    }
+
+    // made unique with a number
+    private String constantName(String baseName) {
+        var constantName = baseName;
+        for (int num = 2; isConstantName(constantName); num++) {
+            constantName = baseName + num;
+        }
+        return constantName;
+    }
+
+    private boolean isConstantName(String name) {
+        return constants.values().stream().anyMatch(constant -> constant.variableName().equals(name));
+    }
+
+    // locations
+
+    // @ locations are resolved relative to the document, i.e. the package of the target class, when translating,
+    // into static constants initialized with the class's resource lookup, so loading does no url resolution
+    private Expression translateLocation(String location, Class<?> targetClass) {
+        boolean isUrl = (targetClass == URL.class);
+        if (! (isUrl || targetClass.isAssignableFrom(String.class))) {
+            throw new IllegalArgumentException("Unsupported location for " + targetClass + ": @" + location);
+        }
+        var resourceName = resolveLocation(location);
+        return constant((isUrl ? "url:" : "") + resourceName, () -> {
+            var classLiteral = new VariableExpression(targetClassName.className() + ".class");
+            var fileName = resourceName.substring(resourceName.lastIndexOf('/') + 1);
+            // e.g. ICON_PNG_URL
+            var constantName = constantName(constantBaseName(fileName) + (isUrl ? "_URL" : "_LOCATION"));
+            return isUrl
+                ? new VariableDeclaration("private static final", TypeRef.of(URL.class), constantName, new MethodCall(new ExpressionTarget(classLiteral), "getResource", Literal.string(resourceName)))
+                : new VariableDeclaration("private static final", new TypeRef("String"), constantName, new MethodCall((ObjectTarget) null, "getResourceLocation", List.of(classLiteral, Literal.string(resourceName))));
+        });
+    }
+
+    // the absolute resource name, e.g. ../images/icon.png in no.hal.view gives /no/hal/images/icon.png
+    private String resolveLocation(String location) {
+        Deque<String> segments = new ArrayDeque<>();
+        if (! location.startsWith("/") && targetClassName.packageName() != null) {
+            segments.addAll(List.of(targetClassName.packageName().split("\\.")));
+        }
+        for (var segment : location.split("/")) {
+            switch (segment) {
+                case "", "." -> {}
+                case ".." -> {
+                    if (segments.isEmpty()) {
+                        throw new IllegalArgumentException("Location outside the resources: @" + location);
+                    }
+                    segments.removeLast();
+                }
+                default -> segments.addLast(segment);
+            }
+        }
+        return "/" + String.join("/", segments);
+    }
+
+    // bindings, translated into bind calls with the observables resolved, so neither reflection nor
+    // interpretation is needed at runtime, e.g. ${slider.value * 2} into
+    // label.textProperty().bind(Bindings.createObjectBinding(() -> String.valueOf(((double) this.slider.valueProperty().getValue()) * 2), this.slider.valueProperty()))
+
+    private record TypedExpression(Expression expression, Class<?> type) {
+    }
+
+    private void translateBinding(Expression beanExpression, Class<?> beanClass, String propertyName, BindingExpression bindingExpression) {
+        var propertyMethod = reflectionHelper.getPropertyMethod(beanClass, propertyName)
+            .filter(method -> Property.class.isAssignableFrom(method.getReturnType()))
+            .orElseThrow(() -> new IllegalArgumentException("No bindable property " + propertyName + " of " + beanClass));
+        Class<?> propertyType = reflectionHelper.getPropertyType(beanClass, propertyName).orElse(Object.class);
+        Expression observable = null;
+        // a property path that is observable and of the right type, is bound to directly
+        if (bindingExpression instanceof BindingExpression.PropertyPath propertyPath) {
+            var pathExpression = translatePropertyPath(propertyPath);
+            if (pathExpression.observable() && isBindable(propertyType, pathExpression.type())) {
+                observable = pathExpression.expression();
+            }
+        }
+        if (observable == null) {
+            Set<Expression> dependencies = new LinkedHashSet<>();
+            var value = translateBindingExpression(bindingExpression, dependencies);
+            var valueExpression = value.expression();
+            if (propertyType == String.class && value.type() != String.class) {
+                valueExpression = new MethodCall(new ClassTarget(QName.of(String.class)), "valueOf", valueExpression);
+            } else if (! isBindable(propertyType, value.type())) {
+                throw new IllegalArgumentException("Can't bind " + propertyName + " of " + beanClass + " to a " + value.type() + " value");
+            }
+            List<Expression> arguments = new ArrayList<>();
+            arguments.add(new LambdaExpression(List.of(), valueExpression));
+            arguments.addAll(dependencies);
+            observable = new MethodCall(new ClassTarget(QName.of(Bindings.class)), "createObjectBinding", arguments);
+        }
+        var propertyExpression = new MethodCall(new ExpressionTarget(beanExpression), propertyMethod.getName());
+        emitBuilderStatement(new MethodCall(new ExpressionTarget(propertyExpression), "bind", observable));
+    }
+
+    // whether a property with the target type can be bound to values of the source type
+    private static boolean isBindable(Class<?> targetType, Class<?> sourceType) {
+        Class<?> boxedSource = boxed(sourceType);
+        // e.g. DoubleProperty can be bound to any ObservableValue<Number>
+        return boxed(targetType).isAssignableFrom(boxedSource) || (targetType.isPrimitive() && Number.class.isAssignableFrom(boxed(targetType)) && Number.class.isAssignableFrom(boxedSource));
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    private Set<String> documentIds = null;
+
+    private boolean isDocumentId(String id) {
+        if (documentIds == null) {
+            documentIds = new HashSet<>();
+            if (documentElement != null) {
+                collectDefinedIds(documentElement, documentIds);
+            }
+        }
+        return documentIds.contains(id);
+    }
+
+    private record PathExpression(Expression expression, Class<?> type, boolean observable) {
+    }
+
+    // the first name is an id with a field, the rest are properties with a property method, if observable, or else a getter,
+    // observable properties after the first are selected with flatMap, and getters with map
+    private PathExpression translatePropertyPath(BindingExpression.PropertyPath propertyPath) {
+        var id = propertyPath.id();
+        Class<?> type = idTypes.get(id);
+        if (type == null) {
+            // the fields of later elements are assigned after the binding is made
+            if (isDocumentId(id)) {
+                throw new IllegalArgumentException("Id " + id + " in binding expression " + String.join(".", propertyPath.names()) + " is defined after it's used, so it isn't set when bound");
+            }
+            throw new IllegalArgumentException("No field for id " + id + " in binding expression: " + propertyPath);
+        }
+        Expression expression = new VariableExpression("this." + id);
+        boolean observable = false;
+        for (var propertyName : propertyPath.names().subList(1, propertyPath.names().size())) {
+            var ownerType = type;
+            var propertyType = reflectionHelper.getPropertyType(type, propertyName)
+                .orElseThrow(() -> new IllegalArgumentException("No property " + propertyName + " of " + ownerType + " in binding expression: " + propertyPath));
+            var propertyMethod = reflectionHelper.getPropertyMethod(type, propertyName);
+            var getter = reflectionHelper.getGetter(type, propertyName)
+                .or(() -> reflectionHelper.getMethod(ownerType, reflectionHelper.methodName("is", propertyName), ReflectionHelper.NO_METHOD_PARAMS_TEST));
+            String methodName = propertyMethod.or(() -> getter).map(Method::getName)
+                .orElseThrow(() -> new IllegalArgumentException("No property " + propertyName + " of " + ownerType + " in binding expression: " + propertyPath));
+            if (observable) {
+                var valueVariable = gensym("value");
+                expression = new MethodCall(new ExpressionTarget(expression), propertyMethod.isPresent() ? "flatMap" : "map",
+                    new LambdaExpression(List.of(valueVariable), new MethodCall(valueVariable, methodName))
+                );
+            } else {
+                expression = new MethodCall(new ExpressionTarget(expression), methodName);
+                observable = propertyMethod.isPresent();
+            }
+            type = propertyType;
+        }
+        return new PathExpression(expression, type, observable);
+    }
+
+    // the value of the binding expression, for use in a lambda, with the observables it depends on added to dependencies
+    private TypedExpression translateBindingExpression(BindingExpression bindingExpression, Set<Expression> dependencies) {
+        return switch (bindingExpression) {
+            case BindingExpression.Constant(String value) -> new TypedExpression(Literal.string(value), String.class);
+            case BindingExpression.Constant(Integer value) -> new TypedExpression(new Literal(String.valueOf(value), int.class), int.class);
+            case BindingExpression.Constant(Long value) -> new TypedExpression(new Literal(value + "L", long.class), long.class);
+            case BindingExpression.Constant(Double value) -> new TypedExpression(new Literal(reflectionHelper.coerceLiteral(String.valueOf(value), double.class), double.class), double.class);
+            case BindingExpression.Constant(Boolean value) -> new TypedExpression(new Literal(String.valueOf(value), boolean.class), boolean.class);
+            case BindingExpression.Constant(Object value) when value == null -> new TypedExpression(new VariableExpression("null"), Object.class);
+            case BindingExpression.Constant(Object value) -> throw new IllegalArgumentException("Unsupported constant in binding expression: " + value);
+            case BindingExpression.PropertyPath propertyPath -> {
+                var pathExpression = translatePropertyPath(propertyPath);
+                if (! pathExpression.observable()) {
+                    yield new TypedExpression(pathExpression.expression(), pathExpression.type());
+                }
+                dependencies.add(pathExpression.expression());
+                Expression valueExpression = new MethodCall(new ExpressionTarget(pathExpression.expression()), "getValue");
+                // the value type of e.g. DoubleProperty is Number, and of map and flatMap the inferred type, so a cast makes it precise
+                Class<?> type = pathExpression.type();
+                if (type != String.class && type != Object.class) {
+                    valueExpression = new Cast(type.isPrimitive() ? new TypeRef(new QName(type.getName())) : TypeRef.of(type), valueExpression);
+                }
+                yield new TypedExpression(valueExpression, type);
+            }
+            case BindingExpression.UnaryOperation(BindingExpression.Operator operator, BindingExpression operand) -> {
+                var operandValue = translateBindingExpression(operand, dependencies);
+                var operandExpression = switch (operator) {
+                    case NEGATE -> numeric(operandValue, bindingExpression);
+                    case NOT -> bool(operandValue, bindingExpression);
+                    default -> throw new IllegalArgumentException("Not a unary operator: " + operator);
+                };
+                yield new TypedExpression(new JavaCode.UnaryOperation(operator.token, operandExpression.expression()), operandExpression.type());
+            }
+            case BindingExpression.BinaryOperation(BindingExpression.Operator operator, BindingExpression left, BindingExpression right) -> {
+                var leftValue = translateBindingExpression(left, dependencies);
+                var rightValue = translateBindingExpression(right, dependencies);
+                if (operator == BindingExpression.Operator.ADD && (leftValue.type() == String.class || rightValue.type() == String.class)) {
+                    yield binaryOperation(operator, leftValue, rightValue, String.class);
+                }
+                yield switch (operator) {
+                    case ADD, SUBTRACT, MULTIPLY, DIVIDE, REMAINDER -> {
+                        var leftNumber = numeric(leftValue, bindingExpression);
+                        var rightNumber = numeric(rightValue, bindingExpression);
+                        yield binaryOperation(operator, leftNumber, rightNumber, promoted(leftNumber.type(), rightNumber.type()));
+                    }
+                    case LESS_THAN, GREATER_THAN, LESS_THAN_OR_EQUAL, GREATER_THAN_OR_EQUAL ->
+                        binaryOperation(operator, numeric(leftValue, bindingExpression), numeric(rightValue, bindingExpression), boolean.class);
+                    case EQUAL, NOT_EQUAL -> {
+                        if (isNumeric(leftValue.type()) && isNumeric(rightValue.type())) {
+                            yield binaryOperation(operator, numeric(leftValue, bindingExpression), numeric(rightValue, bindingExpression), boolean.class);
+                        } else if (boxed(leftValue.type()) == Boolean.class && boxed(rightValue.type()) == Boolean.class) {
+                            yield binaryOperation(operator, bool(leftValue, bindingExpression), bool(rightValue, bindingExpression), boolean.class);
+                        }
+                        // objects are compared with equals, like FXMLLoader does
+                        Expression equals = new MethodCall(new ClassTarget(QName.of(Objects.class)), "equals", List.of(leftValue.expression(), rightValue.expression()));
+                        yield new TypedExpression(operator == BindingExpression.Operator.EQUAL ? equals : new JavaCode.UnaryOperation("!", equals), boolean.class);
+                    }
+                    case AND, OR -> binaryOperation(operator, bool(leftValue, bindingExpression), bool(rightValue, bindingExpression), boolean.class);
+                    default -> throw new IllegalArgumentException("Not a binary operator: " + operator);
+                };
+            }
+        };
+    }
+
+    private static TypedExpression binaryOperation(BindingExpression.Operator operator, TypedExpression left, TypedExpression right, Class<?> type) {
+        return new TypedExpression(new JavaCode.BinaryOperation(operator.token, left.expression(), right.expression()), type);
+    }
+
+    private static boolean isNumeric(Class<?> type) {
+        return type != boolean.class && type != char.class && Number.class.isAssignableFrom(boxed(type));
+    }
+
+    // a primitive number, Number values are converted with doubleValue()
+    private static TypedExpression numeric(TypedExpression value, BindingExpression context) {
+        if (! isNumeric(value.type())) {
+            throw new IllegalArgumentException("Not a number: " + value.expression() + " in binding expression: " + context);
+        }
+        Class<?> primitiveType = MethodType.methodType(value.type()).unwrap().returnType();
+        if (primitiveType.isPrimitive()) {
+            return new TypedExpression(value.expression(), primitiveType);
+        }
+        return new TypedExpression(new MethodCall(new ExpressionTarget(value.expression()), "doubleValue"), double.class);
+    }
+
+    private static TypedExpression bool(TypedExpression value, BindingExpression context) {
+        if (boxed(value.type()) != Boolean.class) {
+            throw new IllegalArgumentException("Not a boolean: " + value.expression() + " in binding expression: " + context);
+        }
+        return new TypedExpression(value.expression(), boolean.class);
+    }
+
+    // the type of an arithmetic operation, by binary numeric promotion
+    private static Class<?> promoted(Class<?> type1, Class<?> type2) {
+        for (var type : List.of(double.class, float.class, long.class)) {
+            if (type1 == type || type2 == type) {
+                return type;
+            }
+        }
+        return int.class;
+    }
+
+    // streaming
+
+    // translates while parsing, and writes the source as it's generated, so only the elements being translated are kept,
+    // imports are collected before the statements are generated, so the classes not imported by name in the fxml are qualified
+    public static void translateFxml(Reader input, QName targetClassName, ClassLoader classLoader, Config config, Appendable output) throws Exception {
+        FxmlParser.parseFxml(input, new StreamingTranslator(targetClassName, classLoader, config, output));
+    }
+
+    public static void translateFxml(Path path, QName targetClassName, ClassLoader classLoader, Config config, Appendable output) throws Exception {
+        FxmlParser.parseFxml(path, new StreamingTranslator(targetClassName, classLoader, config, output));
+    }
+
+    // what the elements being translated, are translated into
+    private sealed interface Frame {
+    }
+    // the bean that property elements and default property values are set in
+    private record BeanFrame(Expression beanExpression, Class<?> beanClass, Optional<String> defaultProperty) implements Frame {
+    }
+    // the property element, that values are set in or added to
+    private record PropertyFrame(PropertyAccess propertyAccess) implements Frame {
+    }
+    private record DefineFrame() implements Frame {
+    }
+    // elements that need their children to be translated, i.e. constructors with @NamedArg,
+    // are collected into a tree and translated when they end
+    private record SubtreeFrame(FxmlElement element, List<FxmlElement> children) implements Frame {
+    }
+
+    private static class StreamingTranslator implements FxmlVisitor {
+
+        private final QName targetClassName;
+        private final ClassLoader classLoader;
+        private final Config config;
+        private final Appendable output;
+
+        private FxmlTranslator translator;
+        private QName controllerClassName;
+        private Imports imports;
+
+        private Formatter formatter;
+        private CompilationUnit compilationUnit;
+
+        private final Deque<Frame> frames = new ArrayDeque<>();
+        private Expression rootExpression;
+
+        StreamingTranslator(QName targetClassName, ClassLoader classLoader, Config config, Appendable output) {
+            this.targetClassName = targetClassName;
+            this.classLoader = classLoader;
+            this.config = config;
+            this.output = output;
+        }
+
+        @Override
+        public void startDocument(List<Import> imports, QName controllerClassName) {
+            this.translator = new FxmlTranslator(imports, targetClassName, classLoader, config);
+            // the statements are written as they're generated, so the build method isn't split, nor are lazy subtrees
+            translator.methodSizeBudget = 0;
+            translator.lazySubtrees = false;
+            this.controllerClassName = controllerClassName;
+            // classes imported by name may be used without qualification
+            this.imports = new Imports();
+            for (var fxmlImport : imports) {
+                if (! fxmlImport.wildcard()) {
+                    this.imports.importIfAvailable(fxmlImport.qName());
+                }
+            }
+        }
+
+        // writes the class up to the statements of the build method, when the root type is known
+        private void startClass(FxmlElement rootElement) {
+            Class<?> rootClass = switch (rootElement) {
+                case Root root -> translator.classResolver.resolve(root.typeName());
+                case InstantiationElement instantiationElement -> translator.classResolver.resolve(instantiationElement.className());
+                default -> null;
+            };
+            if (rootClass != null) {
+                translator.rootType = QName.of(rootClass);
+            }
+            var classDeclaration = loaderClassDeclaration(targetClassName, translator.rootType, controllerClassName, translator.helperTakesFxLoader(controllerClassName), List.of(), List.of(), Map.of(), config);
+            compilationUnit = new CompilationUnit(classDeclaration);
+            formatter = new Formatter(imports, output);
+            formatter.formatStart(compilationUnit);
+            for (var member : classDeclaration.members()) {
+                if (member instanceof MethodDeclaration method && "build".equals(method.methodName())) {
+                    formatter.newline();
+                    formatter.formatStart(method);
+                    translator.statementConsumer = formatter::formatStatement;
+                    break;
+                }
+                formatter.format(member);
+            }
+        }
+
+        @Override
+        public void endDocument() {
+            translator.emitBuilderStatement(new Return(rootExpression));
+            // the fields for the ids and the location constants are only known now
+            var members = loaderClassDeclaration(targetClassName, translator.rootType, controllerClassName, translator.helperTakesFxLoader(controllerClassName), List.of(), List.copyOf(translator.constants.values()), translator.idTypes, config).members();
+            boolean afterBuild = false;
+            for (var member : members) {
+                if (afterBuild) {
+                    formatter.format(member);
+                } else if (member instanceof MethodDeclaration method && "build".equals(method.methodName())) {
+                    formatter.formatEnd(method);
+                    afterBuild = true;
+                }
+            }
+            formatter.formatEnd(compilationUnit);
+        }
+
+        @Override
+        public void startElement(FxmlElement element) {
+            if (formatter == null) {
+                startClass(element);
+            }
+            if (frames.peek() instanceof SubtreeFrame) {
+                frames.push(new SubtreeFrame(element, childrenOf(element)));
+                return;
+            }
+            switch (element) {
+                case Define _ -> {
+                    if (config.includeCommentFxml) {
+                        translator.emitBuilderStatement(Comment.line(element.toShortString()));
+                    }
+                    frames.push(new DefineFrame());
+                }
+                case InstantiationElement instantiationElement when needsChildren(instantiationElement) ->
+                    frames.push(new SubtreeFrame(element, childrenOf(element)));
+                case BeanElement bean -> {
+                    // translates the properties given as attributes
+                    var beanExpression = translator.fxml2BuilderStatements(bean);
+                    translator.expressions.remove(bean);
+                    Class<?> beanClass = translator.classResolver.resolve(bean.beanType());
+                    frames.push(new BeanFrame(beanExpression, beanClass, translator.reflectionHelper.getDefaultProperty(beanClass)));
+                }
+                case PropertyElement propertyElement -> {
+                    var beanFrame = (BeanFrame) frames.peek();
+                    frames.push(new PropertyFrame(translator.propertyAccess(beanFrame.beanExpression(), beanFrame.beanClass(), propertyElement.propertyName())));
+                }
+                case BeanProperty property -> {
+                    var beanFrame = (BeanFrame) frames.peek();
+                    translator.translatePropertyAccess(beanFrame.beanExpression(), beanFrame.beanClass(), property);
+                }
+                case InstanceElement instanceElement -> addValue(translator.fxml2BuilderStatements(instanceElement));
+                default -> throw new IllegalArgumentException("Unexpected element: " + element);
+            }
+        }
+
+        @Override
+        public void endElement(FxmlElement element) {
+            if (frames.peek() instanceof SubtreeFrame subtreeFrame) {
+                frames.pop();
+                FxmlElement subtree = withChildren(subtreeFrame.element(), subtreeFrame.children());
+                if (frames.peek() instanceof SubtreeFrame parentFrame) {
+                    parentFrame.children().add(subtree);
+                } else {
+                    addValue(translator.fxml2BuilderStatements(subtree));
+                }
+                return;
+            }
+            switch (element) {
+                case Define _, PropertyElement _ -> frames.pop();
+                case BeanElement _ -> addValue(((BeanFrame) frames.pop()).beanExpression());
+                default -> {}
+            }
+        }
+
+        // sets or adds the value of an instance element that has ended, in the enclosing element
+        private void addValue(Expression valueExpression) {
+            switch (frames.peek()) {
+                case null -> rootExpression = valueExpression;
+                case BeanFrame beanFrame -> {
+                    var propertyAccess = translator.propertyAccess(beanFrame.beanExpression(), beanFrame.beanClass(), beanFrame.defaultProperty().get());
+                    translator.emitPropertyAccess(propertyAccess, valueExpression);
+                }
+                case PropertyFrame propertyFrame -> translator.emitPropertyAccess(propertyFrame.propertyAccess(), valueExpression);
+                case DefineFrame _ -> {}
+                case SubtreeFrame _ -> throw new IllegalStateException();
+            }
+        }
+
+        private boolean needsChildren(InstantiationElement instantiationElement) {
+            if (instantiationElement.instantiation() instanceof Constructor) {
+                var instanceClass = translator.classResolver.resolve(instantiationElement.className());
+                return instanceClass != null && translator.reflectionHelper.getNoArgsConstructor(instanceClass).isEmpty();
+            }
+            return false;
+        }
+
+        private static List<FxmlElement> childrenOf(FxmlElement element) {
+            return (element instanceof BeanElement bean ? new ArrayList<>(bean.children()) : new ArrayList<>());
+        }
+
+        private static FxmlElement withChildren(FxmlElement element, List<FxmlElement> children) {
+            return switch (element) {
+                case InstantiationElement(QName className, Instantiation instantiation, String id, List<FxmlElement> _) ->
+                    new InstantiationElement(className, instantiation, id, children);
+                case Root(QName typeName, List<FxmlElement> _) -> new Root(typeName, children);
+                case Define _ -> new Define(children.stream().map(InstantiationElement.class::cast).toList());
+                case PropertyElement(String propertyName, List<InstanceElement> _) ->
+                    new PropertyElement(propertyName, children.stream().map(InstanceElement.class::cast).toList());
+                default -> element;
+            };
+        }
+    }
+
     //
 
     private static final String FXML_SAMPLE = """
@@ -383,14 +1322,16 @@ public class FxmlTranslator {
             Path source = Path.of(args[0]);
             Path target = (args.length >= 2 ? Path.of(args[1]) : source);
             if (Files.isDirectory(source)) {
-                Files.find(source, Integer.MAX_VALUE, (path, attributes) -> path.getFileName().toString().endsWith(".fxml"))
-                    .forEach(path -> {
-                        try {
-                            translateFile(source, path, target);
-                        } catch (Exception ex) {
-                            // ignore
+                for (var parsed : FxmlParser.parseFxmlTree(source)) {
+                    try {
+                        if (parsed.exception() != null) {
+                            throw parsed.exception();
                         }
-                });
+                        translateDocument(source, parsed.path(), parsed.document(), target);
+                    } catch (Exception ex) {
+                        // ignore
+                    }
+                }
             } else {
                 translateFile(Path.of("."), source, target);
             }
@@ -401,9 +1342,27 @@ public class FxmlTranslator {
     }
 
     public static FxmlTranslation translateFile(Path root, Path path, Path outputFolder) throws Exception {
-        Document fxmlDoc = FxmlParser.parseFxml(path.toFile());
+        return translateDocument(root, path, FxmlParser.parseFxml(path), outputFolder);
+    }
+
+    // translates all .fxml files in the directory tree, which are parsed in parallel, with a bounded number of open files
+    public static List<FxmlTranslation> translateFiles(Path root, Path outputFolder) throws Exception {
+        List<FxmlTranslation> translations = new ArrayList<>();
+        for (var parsed : FxmlParser.parseFxmlTree(root)) {
+            if (parsed.exception() != null) {
+                throw new RuntimeException("Failed parsing " + parsed.path(), parsed.exception());
+            }
+            translations.add(translateDocument(root, parsed.path(), parsed.document(), outputFolder));
+        }
+        return translations;
+    }
+
+    public static FxmlTranslation translateDocument(Path root, Path path, Document fxmlDoc, Path outputFolder) throws Exception {
+        return translateDocument(root, path, fxmlDoc, outputFolder, new Config());
+    }
+
+    public static FxmlTranslation translateDocument(Path root, Path path, Document fxmlDoc, Path outputFolder, Config config) throws Exception {
         try {
-            Config config = new Config();
             Path resourcePath = root.relativize(path);
             QName className = QName.valueOf(resourcePath.toString().replace(".fxml", "Loader").replace('/', '.'));
             var classDeclaration = FxmlTranslator.translateFxml(fxmlDoc, className, FxmlTranslator.class.getClassLoader(), config);
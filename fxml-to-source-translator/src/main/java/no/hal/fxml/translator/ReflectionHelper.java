@@ -1,20 +1,38 @@
 package no.hal.fxml.translator;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Executable;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import javafx.beans.DefaultProperty;
 import javafx.beans.NamedArg;
+import javafx.beans.value.ObservableValue;
+import javafx.geometry.Dimension2D;
+import javafx.geometry.Insets;
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.layout.BorderWidths;
+import javafx.scene.layout.CornerRadii;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.paint.Paint;
+import javafx.scene.paint.RadialGradient;
+import javafx.scene.paint.Stop;
+import javafx.scene.text.Font;
+import javafx.util.Duration;
 
 public class ReflectionHelper {
 
@@ -100,6 +118,32 @@ public class ReflectionHelper {
 
     public record NamedArgInfo(String name, Class<?> type, String defaultValue) {}
 
+    // the @NamedArg constructor that can be called with the given properties, with defaults for the other arguments,
+    // preferring the one using most properties, like FXMLLoader does
+    public Optional<Constructor<?>> getNamedArgsConstructor(Class<?> clazz, Collection<String> propertyNames) {
+        Constructor<?> best = null;
+        int bestCount = -1;
+        for (Constructor<?> cons : clazz.getConstructors()) {
+            if (! NAMED_ARGS_CONSTRUCTOR_TEST.test(cons)) {
+                continue;
+            }
+            int count = 0;
+            for (var namedArg : getNamedConstructorArgs(cons).values()) {
+                if (propertyNames.contains(namedArg.name())) {
+                    count++;
+                } else if (namedArg.defaultValue().isBlank()) {
+                    count = -1;
+                    break;
+                }
+            }
+            if (count > bestCount || (count == bestCount && count >= 0 && cons.getParameterCount() < best.getParameterCount())) {
+                best = cons;
+                bestCount = count;
+            }
+        }
+        return best != null && bestCount >= 0 ? Optional.of(best) : getNamedArgsConstructor(clazz);
+    }
+
     public Map<String, NamedArgInfo> getNamedConstructorArgs(Constructor<?> cons) {
         // order is important
         Map<String, NamedArgInfo> namedArgs = new LinkedHashMap<>();
@@ -118,14 +162,14 @@ public class ReflectionHelper {
     public Optional<Constructor<?>> getConstructor(Class<?> clazz, Predicate<Executable> test) {
         var key = new ClassExecutable(clazz, null, test);
         if (classExecutables.containsKey(key)) {
-            return Optional.of((Constructor<?>) classExecutables.get(key));
+            return Optional.ofNullable((Constructor<?>) classExecutables.get(key));
         }
         return getConstructor(key);
     }
 
     private Optional<Constructor<?>> getConstructor(ClassExecutable classConstructor) {
         if (classExecutables.containsKey(classConstructor)) {
-            return Optional.of((Constructor<?>) classExecutables.get(classConstructor));
+            return Optional.ofNullable((Constructor<?>) classExecutables.get(classConstructor));
         }
         for (Constructor<?> cons : classConstructor.clazz.getConstructors()) {
             if (classConstructor.test.test(cons)) {
@@ -149,6 +193,105 @@ public class ReflectionHelper {
         return getMethod(clazz, methodName("set", propertyName), singleMethodParamTest(paramType));
     }
 
+    private Map<Class<?>, Predicate<Executable>> staticSetterMap = new HashMap<>();
+
+    // static setter with a first parameter the target can be given as, e.g. GridPane.setRowIndex(Node, Integer)
+    public Predicate<Executable> staticSetterTest(Class<?> targetClass) {
+        return staticSetterMap.computeIfAbsent(targetClass, tc -> (Executable ex) -> {
+            Method m = (Method) ex;
+            return Modifier.isStatic(m.getModifiers()) && m.getParameterCount() == 2 && m.getParameterTypes()[0].isAssignableFrom(tc);
+        });
+    }
+
+    public Optional<Method> getStaticSetter(Class<?> clazz, String propertyName, Class<?> targetClass) {
+        return getMethod(clazz, methodName("set", propertyName), staticSetterTest(targetClass));
+    }
+
+    // the java literal for a value of the (primitive or boxed) type, converted like FXMLLoader does at runtime,
+    // e.g. 10 for a Double is 10.0, and throws NumberFormatException for values that can't be converted
+    public String coerceLiteral(String value, Class<?> type) {
+        Class<?> valueType = MethodType.methodType(type).wrap().returnType();
+        String trimmed = value.trim();
+        if (valueType == Boolean.class) {
+            return String.valueOf(Boolean.parseBoolean(trimmed));
+        } else if (valueType == Integer.class) {
+            return String.valueOf(Integer.parseInt(trimmed));
+        } else if (valueType == Long.class) {
+            return Long.parseLong(trimmed) + "L";
+        } else if (valueType == Short.class) {
+            return "(short) " + Short.parseShort(trimmed);
+        } else if (valueType == Byte.class) {
+            return "(byte) " + Byte.parseByte(trimmed);
+        } else if (valueType == Character.class) {
+            if (value.length() != 1) {
+                throw new IllegalArgumentException("Not a single character: " + value);
+            }
+            return "(char) " + (int) value.charAt(0);
+        } else if (valueType == Double.class) {
+            double d = Double.parseDouble(trimmed);
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return Double.isNaN(d) ? "Double.NaN" : (d > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY");
+            }
+            // integers are widened to double, but not boxed into Double
+            return type.isPrimitive() && trimmed.matches("-?\\d+(\\.\\d+)?") ? trimmed : Double.toString(d);
+        } else if (valueType == Float.class) {
+            float f = Float.parseFloat(trimmed);
+            if (Float.isNaN(f) || Float.isInfinite(f)) {
+                return Float.isNaN(f) ? "Float.NaN" : (f > 0 ? "Float.POSITIVE_INFINITY" : "Float.NEGATIVE_INFINITY");
+            }
+            return type.isPrimitive() && trimmed.matches("-?\\d+") ? trimmed : Float.toString(f) + "f";
+        }
+        return value;
+    }
+
+    // value types whose instances can't be changed, so they may be shared by all loads,
+    // only exact classes, since subclasses may be mutable (Paint.valueOf gives colors and gradients)
+    private static final Set<Class<?>> IMMUTABLE_CLASSES = Set.of(
+        String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+        Paint.class, Color.class, LinearGradient.class, RadialGradient.class, Stop.class, Font.class,
+        Insets.class, CornerRadii.class, BorderWidths.class, Point2D.class, Dimension2D.class, Rectangle2D.class, Duration.class
+    );
+
+    public boolean isImmutable(Class<?> clazz) {
+        return IMMUTABLE_CLASSES.contains(clazz);
+    }
+
+    public static final Predicate<Executable> STATIC_VALUE_OF_TEST = exec -> {
+        Method m = (Method) exec;
+        return Modifier.isStatic(m.getModifiers()) && m.getParameterCount() == 1 && m.getParameterTypes()[0] == String.class
+            && m.getDeclaringClass().isAssignableFrom(m.getReturnType());
+    };
+
+    // e.g. Paint.valueOf(String), for types other than those coerceLiteral handles
+    public Optional<Method> getValueOf(Class<?> clazz) {
+        Class<?> valueType = MethodType.methodType(clazz).wrap().returnType();
+        if (clazz.isEnum() || clazz == String.class || clazz == Object.class || valueType.getPackageName().equals("java.lang")) {
+            return Optional.empty();
+        }
+        return getMethod(clazz, "valueOf", STATIC_VALUE_OF_TEST);
+    }
+
+    // e.g. textProperty(), that returns an observable value
+    public Optional<Method> getPropertyMethod(Class<?> clazz, String propertyName) {
+        return getMethod(clazz, propertyName + "Property", NO_METHOD_PARAMS_TEST)
+            .filter(method -> ObservableValue.class.isAssignableFrom(method.getReturnType()));
+    }
+
+    // the type of a property's value, from its getter, or else the value of its property method
+    public Optional<Class<?>> getPropertyType(Class<?> clazz, String propertyName) {
+        return getGetter(clazz, propertyName)
+            .or(() -> getMethod(clazz, methodName("is", propertyName), NO_METHOD_PARAMS_TEST))
+            .<Class<?>>map(Method::getReturnType)
+            .or(() -> getPropertyMethod(clazz, propertyName).map(method -> {
+                try {
+                    // the most specific one, e.g. Double for a DoubleProperty
+                    return method.getReturnType().getMethod("getValue").getReturnType();
+                } catch (NoSuchMethodException e) {
+                    return Object.class;
+                }
+            }));
+    }
+
     //
 
     public boolean isSubTypeOf(Class<?> superType, Class<?> subType) {
@@ -0,0 +1,66 @@
+package no.hal.fxml.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import no.hal.fxml.model.BindingExpression.BinaryOperation;
+import no.hal.fxml.model.BindingExpression.Constant;
+import no.hal.fxml.model.BindingExpression.Operator;
+import no.hal.fxml.model.BindingExpression.PropertyPath;
+import no.hal.fxml.model.BindingExpression.UnaryOperation;
+
+public class BindingExpressionTest {
+
+    @Test
+    public void testValueOf() {
+        assertEquals(new PropertyPath("label", "text"), BindingExpression.valueOf("label.text"));
+        assertEquals(new Constant("it's"), BindingExpression.valueOf("'it\\'s'"));
+        assertEquals(new Constant(1), BindingExpression.valueOf("1"));
+        assertEquals(new Constant(10000000000L), BindingExpression.valueOf("10000000000"));
+        assertEquals(new Constant(1.5e3), BindingExpression.valueOf("1.5e3"));
+        assertEquals(new Constant(true), BindingExpression.valueOf("true"));
+        assertEquals(new Constant(null), BindingExpression.valueOf("null"));
+    }
+
+    @Test
+    public void testValueOfOperations() {
+        // * before +, and + before <
+        assertEquals(
+            new BinaryOperation(Operator.LESS_THAN,
+                new BinaryOperation(Operator.ADD, new Constant(1), new BinaryOperation(Operator.MULTIPLY, new PropertyPath("slider", "value"), new Constant(2))),
+                new Constant(10)
+            ),
+            BindingExpression.valueOf("1 + slider.value * 2 < 10")
+        );
+        // left associative, and parentheses
+        assertEquals(
+            new BinaryOperation(Operator.SUBTRACT, new BinaryOperation(Operator.SUBTRACT, new Constant(1), new Constant(2)), new Constant(3)),
+            BindingExpression.valueOf("1 - 2 - 3")
+        );
+        assertEquals(
+            new BinaryOperation(Operator.SUBTRACT, new Constant(1), new BinaryOperation(Operator.SUBTRACT, new Constant(2), new Constant(3))),
+            BindingExpression.valueOf("1 - (2 - 3)")
+        );
+        // && before ||, and <= isn't < followed by =
+        assertEquals(
+            new BinaryOperation(Operator.OR,
+                new UnaryOperation(Operator.NOT, new PropertyPath("box", "selected")),
+                new BinaryOperation(Operator.AND,
+                    new BinaryOperation(Operator.LESS_THAN_OR_EQUAL, new UnaryOperation(Operator.NEGATE, new Constant(1)), new PropertyPath("x")),
+                    new BinaryOperation(Operator.NOT_EQUAL, new PropertyPath("label", "text"), new Constant("")))
+            ),
+            BindingExpression.valueOf("!box.selected || -1 <= x && label.text != ''")
+        );
+    }
+
+    @Test
+    public void testValueOfMalformed() {
+        assertThrows(IllegalArgumentException.class, () -> BindingExpression.valueOf("label."));
+        assertThrows(IllegalArgumentException.class, () -> BindingExpression.valueOf("1 +"));
+        assertThrows(IllegalArgumentException.class, () -> BindingExpression.valueOf("(1 + 2"));
+        assertThrows(IllegalArgumentException.class, () -> BindingExpression.valueOf("'text"));
+        assertThrows(IllegalArgumentException.class, () -> BindingExpression.valueOf("a b"));
+    }
+}
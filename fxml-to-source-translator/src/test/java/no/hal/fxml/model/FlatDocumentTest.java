@@ -0,0 +1,75 @@
+package no.hal.fxml.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import no.hal.fxml.model.FlatDocument.Kind;
+import no.hal.fxml.model.FxmlCode.Document;
+import no.hal.fxml.parser.FxmlParser;
+
+public class FlatDocumentTest {
+
+    private final static String FXML = """
+        <?import javafx.scene.control.*?>
+        <?import javafx.scene.layout.Pane?>
+        <?import javafx.collections.*?>
+
+        <Pane xmlns:fx="http://javafx.com/fxml" fx:controller="no.hal.fxml.Controller">
+            <fx:define>
+                <String fx:id="item2" fx:value="Item 2"/>
+                <Double fx:id="inf" fx:constant="POSITIVE_INFINITY"/>
+            </fx:define>
+            <Label fx:id="label1" text="Label" onMouseClicked="#clicked" style="${label2.style}"/>
+            <Label fx:id="label2" text="$label1.text">
+                <GridPane.rowIndex>1</GridPane.rowIndex>
+                <graphic><ImageView image="@image.png"/></graphic>
+            </Label>
+            <ListView>
+                <items>
+                    <FXCollections fx:factory="observableArrayList">
+                        <String fx:value="Item 1"/>
+                        <fx:reference source="item2"/>
+                    </FXCollections>
+                </items>
+            </ListView>
+            <fx:include fx:id="included" source="included.fxml"/>
+        </Pane>
+        """;
+
+    @Test
+    public void testToDocument() throws Exception {
+        Document document = FxmlParser.parseFxml(FXML);
+        assertEquals(document, FlatDocument.of(document).toDocument());
+        Document root = FxmlParser.parseFxml("""
+            <fx:root xmlns:fx="http://javafx.com/fxml" type="javafx.scene.layout.VBox">
+                <Label text="Label"/>
+            </fx:root>
+            """);
+        assertEquals(root, FlatDocument.of(root).toDocument());
+    }
+
+    @Test
+    public void testStructure() throws Exception {
+        var flat = FlatDocument.of(FxmlParser.parseFxml(FXML));
+        assertEquals(Kind.INSTANTIATION_ELEMENT, flat.kind(0));
+        assertEquals("Pane", flat.name(0));
+        assertEquals(-1, flat.parent(0));
+        // the children of the root
+        List<Kind> kinds = new ArrayList<>();
+        for (int child = flat.firstChild(0); child >= 0; child = flat.nextSibling(child)) {
+            assertEquals(0, flat.parent(child));
+            kinds.add(flat.kind(child));
+        }
+        assertEquals(List.of(Kind.DEFINE, Kind.INSTANTIATION_ELEMENT, Kind.INSTANTIATION_ELEMENT, Kind.INSTANTIATION_ELEMENT, Kind.INCLUDE), kinds);
+        int text = flat.firstChild(flat.nextSibling(flat.firstChild(0)));
+        assertEquals(Kind.PROPERTY_VALUE, flat.kind(text));
+        assertSame(NamePool.intern("text"), flat.name(text));
+        assertEquals(FlatDocument.ValueKind.STRING, flat.valueKind(text));
+        assertEquals("Label", flat.value(text));
+    }
+}
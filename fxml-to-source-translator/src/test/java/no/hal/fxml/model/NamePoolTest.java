@@ -0,0 +1,45 @@
+package no.hal.fxml.model;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import no.hal.fxml.model.FxmlCode.InstantiationElement;
+import no.hal.fxml.model.FxmlCode.PropertyValue;
+import no.hal.fxml.parser.FxmlParser;
+
+public class NamePoolTest {
+
+    @Test
+    public void testQNameValueOf() {
+        assertSame(QName.valueOf("javafx.scene.control.Button"), QName.valueOf(new String("javafx.scene.control.Button")));
+        assertSame(QName.valueOf("javafx.scene.control.Button").className(), new QName("javafx.scene.control", new String("Button")).className());
+    }
+
+    @Test
+    public void testTypeRefValueOf() {
+        var typeRef = TypeRef.valueOf("java.util.Map<String, java.util.List<String>>");
+        assertSame(typeRef, TypeRef.valueOf(new String("java.util.Map<String, java.util.List<String>>")));
+        assertSame(typeRef.typeParams().get(0).typeName(), QName.valueOf("String"));
+        // shared, so immutable
+        assertThrows(UnsupportedOperationException.class, () -> typeRef.typeParams().clear());
+    }
+
+    private PropertyValue firstProperty(String fxml, FxmlParser.Backend backend) throws Exception {
+        var label = (InstantiationElement) FxmlParser.parseFxml(fxml, backend).instanceElement();
+        return (PropertyValue) label.children().get(0);
+    }
+
+    @Test
+    public void testParsedNames() throws Exception {
+        var fxml = """
+            <Label prefWidth="100"/>
+            """;
+        var expected = firstProperty(fxml, FxmlParser.Backend.STREAM).propertyName();
+        for (var backend : FxmlParser.Backend.values()) {
+            assertSame(expected, firstProperty(fxml, backend).propertyName(), backend.toString());
+            assertSame(QName.valueOf("Label"), ((InstantiationElement) FxmlParser.parseFxml(fxml, backend).instanceElement()).className(), backend.toString());
+        }
+    }
+}
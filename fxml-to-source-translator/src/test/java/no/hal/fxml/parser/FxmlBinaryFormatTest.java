@@ -0,0 +1,77 @@
+package no.hal.fxml.parser;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import no.hal.fxml.model.FxmlCode.Document;
+
+public class FxmlBinaryFormatTest {
+
+    private final static String FXML = """
+        <?xml version="1.0" encoding="UTF-8"?>
+        <?import javafx.scene.control.*?>
+        <?import javafx.scene.layout.Pane?>
+        <?import javafx.collections.*?>
+
+        <Pane xmlns:fx="http://javafx.com/fxml" fx:controller="no.hal.fxml.Controller">
+            <fx:define>
+                <String fx:id="item2" fx:value="Item 2"/>
+                <Double fx:id="inf" fx:constant="POSITIVE_INFINITY"/>
+            </fx:define>
+            <Label fx:id="label1" text="Hæ!" onMouseClicked="#clicked" style="${label2.style}"/>
+            <Label fx:id="label2" text="$label1.text">
+                <GridPane.rowIndex>1</GridPane.rowIndex>
+                <graphic><ImageView image="@image.png"/></graphic>
+            </Label>
+            <ListView>
+                <items>
+                    <FXCollections fx:factory="observableArrayList">
+                        <String fx:value="Item 1"/>
+                        <fx:reference source="item2"/>
+                    </FXCollections>
+                </items>
+            </ListView>
+            <fx:include fx:id="included" source="included.fxml"/>
+        </Pane>
+        """;
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Document document = FxmlParser.parseFxml(FXML);
+        byte[] bytes = FxmlBinaryFormat.toBytes(document);
+        Assertions.assertEquals(document, FxmlBinaryFormat.read(bytes));
+        Assertions.assertTrue(bytes.length < FXML.length(), "binary format should be smaller than the fxml");
+    }
+
+    @Test
+    public void testRoundTripRoot() throws Exception {
+        Document document = FxmlParser.parseFxml("""
+            <fx:root xmlns:fx="http://javafx.com/fxml" type="javafx.scene.layout.VBox">
+                <Label text="Hi"/>
+            </fx:root>
+            """);
+        Assertions.assertEquals(document, FxmlBinaryFormat.read(FxmlBinaryFormat.toBytes(document)));
+    }
+
+    @Test
+    public void testReadMappedFile(@TempDir Path dir) throws Exception {
+        Document document = FxmlParser.parseFxml(FXML);
+        Path path = dir.resolve("test" + FxmlBinaryFormat.FILE_EXTENSION);
+        FxmlBinaryFormat.write(document, path);
+        Assertions.assertEquals(document, FxmlBinaryFormat.read(path));
+    }
+
+    @Test
+    public void testReadIllegalContent() throws Exception {
+        byte[] bytes = FxmlBinaryFormat.toBytes(FxmlParser.parseFxml(FXML));
+        Assertions.assertThrows(IOException.class, () -> FxmlBinaryFormat.read(FXML.getBytes()));
+        Assertions.assertThrows(IOException.class, () -> FxmlBinaryFormat.read(Arrays.copyOf(bytes, bytes.length / 2)));
+        bytes[5]++;
+        Assertions.assertThrows(IOException.class, () -> FxmlBinaryFormat.read(bytes));
+    }
+}
@@ -1,18 +1,27 @@
 package no.hal.fxml.parser;
 
 import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 
+import javax.xml.stream.XMLStreamException;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import no.hal.fxml.model.FxmlCode.Define;
 import no.hal.fxml.model.FxmlCode.Document;
+import no.hal.fxml.model.FxmlCode.FxmlElement;
+import no.hal.fxml.model.FxmlCode.FxmlParent;
 import no.hal.fxml.model.FxmlCode.Import;
 import no.hal.fxml.model.FxmlCode.InstantiationElement;
 import no.hal.fxml.model.FxmlCode.PropertyElement;
 import no.hal.fxml.model.FxmlCode.PropertyValue;
 import no.hal.fxml.model.FxmlCode.Reference;
+import no.hal.fxml.model.FxmlCode.StaticProperty;
 import no.hal.fxml.model.Instantiation.Constructor;
 import no.hal.fxml.model.Instantiation.Factory;
 import no.hal.fxml.model.Instantiation.Value;
@@ -22,8 +31,10 @@ import no.hal.fxml.model.ValueExpression;
 public class FxmlParserTest {
 
     private void testFxmlParser(String fxmlSource, Document expected) throws Exception {
-        Document actual = FxmlParser.parseFxml(new StringReader(fxmlSource));
-        Assertions.assertEquals(expected, actual);
+        for (var backend : FxmlParser.Backend.values()) {
+            Document actual = FxmlParser.parseFxml(new StringReader(fxmlSource), backend);
+            Assertions.assertEquals(expected, actual, backend.toString());
+        }
     }
 
     @Test
@@ -125,6 +136,222 @@ public class FxmlParserTest {
             )
         );
     }
+
+    @Test
+    public void testFxmlWithPropertyText() throws Exception {
+        testFxmlParser("""
+            <?import javafx.scene.control.Label?>
+            <?import javafx.scene.layout.*?>
+
+            <VBox xmlns:fx="http://javafx.com/fxml">
+                <Label>
+                    <text>Hi &amp; <![CDATA[bye]]></text>
+                    <maxWidth>100</maxWidth>
+                </Label>
+                <!-- comment -->
+                <Label/>
+            </VBox>
+            """,
+            new Document(
+                List.of(
+                    new Import(new QName("javafx.scene.control", "Label"), false),
+                    new Import(new QName("javafx.scene.layout", null), true)
+                ),
+                new InstantiationElement(new QName("VBox"), new Constructor(), null,
+                    List.of(
+                        new InstantiationElement(new QName("Label"), new Constructor(), null,
+                            List.of(
+                                new PropertyValue("text", new ValueExpression.String("Hi & bye")),
+                                new PropertyValue("maxWidth", new ValueExpression.String("100"))
+                            )
+                        ),
+                        new InstantiationElement(new QName("Label"), new Constructor(), null)
+                    )
+                ),
+                null
+            )
+        );
+    }
+
+    @Test
+    public void testFxmlWithStaticProperties() throws Exception {
+        testFxmlParser("""
+            <?import javafx.scene.control.Label?>
+            <?import javafx.scene.layout.*?>
+
+            <GridPane xmlns:fx="http://javafx.com/fxml">
+                <Label GridPane.columnIndex="1">
+                    <GridPane.rowIndex>2</GridPane.rowIndex>
+                    <GridPane.margin><Insets/></GridPane.margin>
+                </Label>
+            </GridPane>
+            """,
+            new Document(
+                List.of(
+                    new Import(new QName("javafx.scene.control", "Label"), false),
+                    new Import(new QName("javafx.scene.layout", null), true)
+                ),
+                new InstantiationElement(new QName("GridPane"), new Constructor(), null,
+                    List.of(
+                        new InstantiationElement(new QName("Label"), new Constructor(), null,
+                            List.of(
+                                new StaticProperty("GridPane", "columnIndex", new ValueExpression.String("1")),
+                                new StaticProperty("GridPane", "rowIndex", new ValueExpression.String("2")),
+                                new PropertyElement("GridPane.margin", new InstantiationElement(new QName("Insets"), new Constructor(), null))
+                            )
+                        )
+                    )
+                ),
+                null
+            )
+        );
+    }
+
+    @Test
+    public void testTokenizerWithCharsAndPrefixes() throws Exception {
+        var fxml = """
+            <?import javafx.scene.control.Label?>
+            <!DOCTYPE fxml>
+            <javafx:Label xmlns:javafx="http://javafx.com/javafx/21" xmlns:f="http://javafx.com/fxml"
+                f:id='label1' text="a &lt; b&#33;"
+                style="-fx-font-size:\t12"/>
+            """;
+        var expected = new Document(
+            List.of(new Import(new QName("javafx.scene.control", "Label"), false)),
+            new InstantiationElement(new QName("Label"), new Constructor(), "label1",
+                List.of(
+                    new PropertyValue("text", new ValueExpression.String("a < b!")),
+                    new PropertyValue("style", new ValueExpression.String("-fx-font-size: 12"))
+                )
+            ),
+            null
+        );
+        Assertions.assertEquals(expected, FxmlParser.parseFxml(fxml.toCharArray()));
+        Assertions.assertEquals(expected, FxmlParser.parseFxml(fxml, FxmlParser.Backend.STREAM));
+    }
+
+    @Test
+    public void testTokenizerWithMalformedFxml() {
+        var exception = Assertions.assertThrows(XMLStreamException.class, () -> FxmlParser.parseFxml("""
+            <VBox>
+                <Label></VBox>
+            </VBox>
+            """.toCharArray()));
+        Assertions.assertTrue(exception.getMessage().contains("line 2"), exception.getMessage());
+        Assertions.assertThrows(XMLStreamException.class, () -> FxmlParser.parseFxml("<VBox text=\"&unknown;\"/>".toCharArray()));
+    }
+
+    @Test
+    public void testParseFxmlLazily() throws Exception {
+        var fxml = """
+            <?import javafx.scene.control.*?>
+            <?import javafx.scene.layout.*?>
+            <TabPane xmlns:fx="http://javafx.com/fxml">
+                <fx:define>
+                    <String fx:id="item" fx:value="Item"/>
+                </fx:define>
+                <Tab text="One">
+                    <VBox><Label text="a &amp; b"/></VBox>
+                </Tab>
+                <Tab text="Two"/>
+            </TabPane>
+            """;
+        Document expected = FxmlParser.parseFxml(fxml);
+        var root = (InstantiationElement) FxmlParser.parseFxmlLazily(fxml).instanceElement();
+        var defineChildren = ((Define) root.children().get(0)).children();
+        var tabChildren = ((InstantiationElement) root.children().get(1)).children();
+        Assertions.assertFalse(((DeferredContent<?>) defineChildren).isParsed());
+        Assertions.assertFalse(((DeferredContent<?>) tabChildren).isParsed());
+        Assertions.assertEquals(expected.instanceElement(), root);
+        Assertions.assertTrue(((DeferredContent<?>) tabChildren).isParsed());
+        // well-formedness is checked up front, the rest when parsed
+        Assertions.assertThrows(XMLStreamException.class, () -> FxmlParser.parseFxmlLazily("<TabPane><Tab><VBox></Tab></TabPane>"));
+        var tab = (InstantiationElement) ((InstantiationElement) FxmlParser.parseFxmlLazily("<TabPane><Tab><x:VBox xmlns:x=\"unknown\"/></Tab></TabPane>").instanceElement()).children().get(0);
+        Assertions.assertThrows(IllegalStateException.class, () -> tab.children().size());
+    }
+
+    private final static String LABEL_FXML = """
+        <?import javafx.scene.control.Label?>
+        <Label text="Hi!"/>
+        """;
+
+    private final static Document LABEL_DOCUMENT = new Document(
+        List.of(new Import(new QName("javafx.scene.control", "Label"), false)),
+        new InstantiationElement(new QName("Label"), new Constructor(), null,
+            List.of(new PropertyValue("text", new ValueExpression.String("Hi!")))
+        ),
+        null
+    );
+
+    @Test
+    public void testParseFxmlPath(@TempDir Path dir) throws Exception {
+        Path small = Files.writeString(dir.resolve("small.fxml"), LABEL_FXML);
+        // large enough to be memory-mapped
+        Path large = Files.writeString(dir.resolve("large.fxml"), "<!--" + " ".repeat((int) FxmlParser.MAPPED_SIZE_THRESHOLD) + "-->\n" + LABEL_FXML);
+        for (var backend : FxmlParser.Backend.values()) {
+            Assertions.assertEquals(LABEL_DOCUMENT, FxmlParser.parseFxml(small, backend), backend.toString());
+            Assertions.assertEquals(LABEL_DOCUMENT, FxmlParser.parseFxml(large, backend), backend.toString());
+        }
+        Assertions.assertEquals(LABEL_DOCUMENT, FxmlParser.parseFxml(small.toUri().toURL()));
+    }
+
+    @Test
+    public void testParseFxmlTree(@TempDir Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("a/b"));
+        for (var name : List.of("a/one.fxml", "a/b/two.fxml", "three.fxml")) {
+            Files.writeString(dir.resolve(name), LABEL_FXML);
+        }
+        Files.writeString(dir.resolve("a/broken.fxml"), "<Label");
+        Files.writeString(dir.resolve("a/ignored.txt"), "");
+        var parsed = FxmlParser.parseFxmlTree(dir, FxmlParser.Backend.STREAM, 2);
+        Assertions.assertEquals(List.of(dir.resolve("a/b/two.fxml"), dir.resolve("a/broken.fxml"), dir.resolve("a/one.fxml"), dir.resolve("three.fxml")),
+            parsed.stream().map(FxmlParser.ParsedFxml::path).toList());
+        for (var result : parsed) {
+            if (result.path().endsWith("broken.fxml")) {
+                Assertions.assertNotNull(result.exception());
+            } else {
+                Assertions.assertEquals(LABEL_DOCUMENT, result.document());
+            }
+        }
+    }
+
+    @Test
+    public void testParseFxmlWithVisitor() throws Exception {
+        List<String> events = new ArrayList<>();
+        FxmlParser.parseFxml(new StringReader("""
+            <?import javafx.scene.control.*?>
+            <Pane xmlns:fx="http://javafx.com/fxml">
+                <fx:define><String fx:id="s" fx:value="s"/></fx:define>
+                <Label text="Hi!"><graphic><fx:reference source="s"/></graphic></Label>
+                <Label><text>Ho!</text><minWidth/></Label>
+            </Pane>
+            """), new FxmlVisitor() {
+                @Override
+                public void startDocument(List<Import> imports, QName controllerClassName) {
+                    events.add("imports " + imports.size());
+                }
+                @Override
+                public void startElement(FxmlElement element) {
+                    // the children aren't kept, except the attributes
+                    if (element instanceof FxmlParent<?> parent) {
+                        events.add(element.toShortString() + " " + parent.children().size());
+                    } else {
+                        events.add(element.toShortString());
+                    }
+                }
+                @Override
+                public void endElement(FxmlElement element) {
+                    events.add("end");
+                }
+            });
+        Assertions.assertEquals(List.of("imports 1",
+            "<Pane> 0",
+                "<fx:define> 0", "<String fx:id=\"s\"> 0", "end", "end",
+                "<Label> 1", "<graphic> 0", "<fx:reference source=\"s\"/>", "end", "end", "end",
+                "<Label> 0", "text=\"Ho!\"", "end", "<minWidth> 0", "end", "end",
+            "end"
+        ), events);
+    }
 }
 
 /*
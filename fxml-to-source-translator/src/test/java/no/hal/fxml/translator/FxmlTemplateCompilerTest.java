@@ -0,0 +1,113 @@
+package no.hal.fxml.translator;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.source.util.JavacTask;
+
+import javafx.scene.layout.Pane;
+import javafx.scene.shape.Rectangle;
+import no.hal.fxml.runtime.FxTemplateLoaderProvider;
+
+public class FxmlTemplateCompilerTest {
+
+    private static final String PROVIDER_CLASS_NAME = "test.TemplateLoaders";
+
+    private static Path writeSource(Path sourceDir, String className, String source) throws IOException {
+        var sourceFile = sourceDir.resolve(className.replace('.', '/') + ".java");
+        Files.createDirectories(sourceFile.getParent());
+        return Files.writeString(sourceFile, source);
+    }
+
+    // compiles like a build would, with the output directory on the class path, and the template compiler as processor
+    private static void compile(Path outputDir, Path... sourceFiles) throws IOException {
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        try (var fileManager = compiler.getStandardFileManager(null, null, null)) {
+            var task = (JavacTask) compiler.getTask(null, fileManager, null, List.of(
+                "--enable-preview", "--release", "21", "-Xlint:-preview",
+                "-classpath", System.getProperty("java.class.path") + java.io.File.pathSeparator + outputDir,
+                "-d", outputDir.toString(),
+                "-A" + FxmlTemplateCompiler.PROVIDER_CLASS_OPTION + "=" + PROVIDER_CLASS_NAME
+            ), null, fileManager.getJavaFileObjects(sourceFiles));
+            task.setProcessors(List.of(new FxmlTemplateCompiler()));
+            Assertions.assertTrue(task.call());
+        }
+    }
+
+    private static FxTemplateLoaderProvider loadProvider(Path outputDir) throws Exception {
+        var classLoader = new URLClassLoader(new java.net.URL[]{ outputDir.toUri().toURL() }, FxmlTemplateCompilerTest.class.getClassLoader());
+        return (FxTemplateLoaderProvider) classLoader.loadClass(PROVIDER_CLASS_NAME).getConstructor().newInstance();
+    }
+
+    private static final List<String> RECTANGLE_TEMPLATE = List.of("<Rectangle width=\"", "\"/>");
+    private static final List<String> CUSTOM_PANE_TEMPLATE = List.of("<test.CustomPane>", "</test.CustomPane>");
+    private static final List<String> MORE_TEMPLATE = List.of("<Pane>", "</Pane>");
+
+    @Test
+    public void testCompileTemplates(@TempDir Path sourceDir, @TempDir Path outputDir) throws Exception {
+        // a class of the project, that isn't available to the processor's class loader
+        compile(outputDir, writeSource(sourceDir, "test.CustomPane", """
+            package test;
+            public class CustomPane extends javafx.scene.layout.Pane {
+            }
+            """));
+        var templatesSource = writeSource(sourceDir, "test.Templates", """
+            package test;
+            public class Templates {
+                static final StringTemplate.Processor<String, RuntimeException> FXML = StringTemplate::interpolate;
+                String rectangle(double width) {
+                    return FXML."<Rectangle width=\\"\\{width}\\"/>";
+                }
+                String customPane(Object child) {
+                    return FXML."<test.CustomPane>\\{child}</test.CustomPane>";
+                }
+            }
+            """);
+        compile(outputDir, templatesSource);
+        Assertions.assertEquals(PROVIDER_CLASS_NAME, Files.readString(outputDir.resolve("META-INF/services/no.hal.fxml.runtime.FxTemplateLoaderProvider")).trim());
+        var provider = loadProvider(outputDir);
+        var rectangleLoader = provider.getFxLoader(RECTANGLE_TEMPLATE, Map.of("value_0", "42"));
+        var rectangle = (Rectangle) ((Pane) rectangleLoader.load(null)).getChildren().getFirst();
+        Assertions.assertEquals(42.0, rectangle.getWidth());
+        var child = new Rectangle();
+        var customPaneLoader = provider.getFxLoader(CUSTOM_PANE_TEMPLATE, Map.of("value_0", child));
+        var customPane = (Pane) ((Pane) customPaneLoader.load(null)).getChildren().getFirst();
+        Assertions.assertEquals("test.CustomPane", customPane.getClass().getName());
+        Assertions.assertSame(child, customPane.getChildren().getFirst());
+
+        // an incremental compile of another source keeps the loaders of the earlier compile
+        compile(outputDir, writeSource(sourceDir, "test.More", """
+            package test;
+            public class More {
+                static final StringTemplate.Processor<String, RuntimeException> FXML = StringTemplate::interpolate;
+                String more(Object child) {
+                    return FXML."<Pane>\\{child}</Pane>";
+                }
+            }
+            """));
+        provider = loadProvider(outputDir);
+        Assertions.assertNotNull(provider.getFxLoader(MORE_TEMPLATE, Map.of("value_0", new Rectangle())));
+        Assertions.assertNotNull(provider.getFxLoader(RECTANGLE_TEMPLATE, Map.of("value_0", "42")));
+        Assertions.assertNotNull(provider.getFxLoader(CUSTOM_PANE_TEMPLATE, Map.of("value_0", new Rectangle())));
+
+        // recompiling a source without its template drops its loader
+        compile(outputDir, writeSource(sourceDir, "test.More", """
+            package test;
+            public class More {
+            }
+            """));
+        provider = loadProvider(outputDir);
+        Assertions.assertNull(provider.getFxLoader(MORE_TEMPLATE, Map.of("value_0", new Rectangle())));
+        Assertions.assertNotNull(provider.getFxLoader(RECTANGLE_TEMPLATE, Map.of("value_0", "42")));
+    }
+}
@@ -0,0 +1,90 @@
+package no.hal.fxml.translator;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.sun.source.tree.StringTemplateTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreeScanner;
+
+import no.hal.fxml.model.JavaCode;
+import no.hal.fxml.model.QName;
+import no.hal.fxml.translator.FxmlTemplateTranslator.SlotKind;
+
+public class FxmlTemplateTranslatorTest {
+
+    private QName className = QName.valueOf("no.hal.fxml.translator.TestTemplateLoader");
+
+    @Test
+    public void testSlotKinds() {
+        Assertions.assertEquals(
+            List.of(SlotKind.ATTRIBUTE_VALUE, SlotKind.ATTRIBUTE, SlotKind.ELEMENT),
+            FxmlTemplateTranslator.slotKinds(List.of("<VBox><Label text=\"", "\" ", "/>", "</VBox>"))
+        );
+        Assertions.assertEquals(1, FxmlTemplateTranslator.slotIndex("value_1", 2));
+        Assertions.assertEquals(-1, FxmlTemplateTranslator.slotIndex("value_2", 2));
+        Assertions.assertEquals(-1, FxmlTemplateTranslator.slotIndex("label", 2));
+    }
+
+    @Test
+    public void testTranslateTemplate() throws Exception {
+        var fragments = List.of("<VBox><Label text=\"", "\" prefWidth=\"", "\"/>", "</VBox>");
+        var classDeclaration = FxmlTemplateTranslator.translateTemplate(fragments, className, getClass().getClassLoader());
+        var source = JavaCode.toJavaSource(classDeclaration);
+        Assertions.assertTrue(source.contains("this.getFxmlObject(\"value_0\", java.lang.String.class)"), source);
+        Assertions.assertTrue(source.contains("this.getFxmlObject(\"value_1\", double.class)"), source);
+        Assertions.assertTrue(source.contains("vBox.getChildren().add(this.getFxmlObject(\"value_2\"))"), source);
+    }
+
+    @Test
+    public void testUnsupportedTemplates() {
+        var classLoader = getClass().getClassLoader();
+        Assertions.assertThrows(UnsupportedOperationException.class, () ->
+            FxmlTemplateTranslator.translateTemplate(List.of("<Label ", "/>"), className, classLoader)
+        );
+        Assertions.assertThrows(UnsupportedOperationException.class, () ->
+            FxmlTemplateTranslator.translateTemplate(List.of("<Button onAction=\"#", "\"/>"), className, classLoader)
+        );
+        Assertions.assertThrows(UnsupportedOperationException.class, () ->
+            FxmlTemplateTranslator.translateTemplate(List.of("<Label text=\"${", ".text}\"/>"), className, classLoader)
+        );
+    }
+
+    @Test
+    public void testIsFxmlProcessor() throws Exception {
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        var source = new SimpleJavaFileObject(URI.create("string:///Test.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return """
+                class Test {
+                    Object a = FXML."<Label/>";
+                    Object b = FXML(this)."<Label/>";
+                    Object c = FXML.get(this)."<Label/>";
+                    Object d = STR."<Label/>";
+                }
+                """;
+            }
+        };
+        var task = (JavacTask) compiler.getTask(null, null, null, List.of("--enable-preview", "--release", "21"), null, List.of(source));
+        List<Boolean> matches = new ArrayList<>();
+        for (var compilationUnit : task.parse()) {
+            new TreeScanner<Void, Void>() {
+                @Override
+                public Void visitStringTemplate(StringTemplateTree stringTemplate, Void arg) {
+                    matches.add(FxmlTemplateCompiler.isFxmlProcessor(stringTemplate.getProcessor()));
+                    return super.visitStringTemplate(stringTemplate, arg);
+                }
+            }.scan(compilationUnit, null);
+        }
+        Assertions.assertEquals(List.of(true, true, true, false), matches);
+    }
+}
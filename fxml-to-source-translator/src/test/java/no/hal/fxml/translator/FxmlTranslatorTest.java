@@ -1,19 +1,36 @@
 package no.hal.fxml.translator;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
+import javax.tools.ToolProvider;
+
+import org.codehaus.commons.compiler.CompilerFactoryFactory;
+import org.codehaus.commons.compiler.util.resource.MapResourceCreator;
+import org.codehaus.commons.compiler.util.resource.Resource;
+import org.codehaus.commons.compiler.util.resource.StringResource;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import no.hal.fxml.model.FxmlCode.Document;
+import no.hal.fxml.model.JavaCode.Cast;
 import no.hal.fxml.model.JavaCode.ClassDeclaration;
-import no.hal.fxml.model.JavaCode.ClassTarget;
 import no.hal.fxml.model.JavaCode.ConstructorCall;
 import no.hal.fxml.model.JavaCode.ConstructorDeclaration;
 import no.hal.fxml.model.JavaCode.ExpressionTarget;
 import no.hal.fxml.model.JavaCode.FieldAssignment;
+import no.hal.fxml.model.JavaCode.If;
 import no.hal.fxml.model.JavaCode.LambdaMethodReference;
 import no.hal.fxml.model.JavaCode.Literal;
 import no.hal.fxml.model.JavaCode.MethodCall;
@@ -27,6 +44,7 @@ import no.hal.fxml.model.JavaCode;
 import no.hal.fxml.model.QName;
 import no.hal.fxml.model.TypeRef;
 import no.hal.fxml.parser.FxmlParser;
+import no.hal.fxml.runtime.AbstractFxControllerHelper;
 
 public class FxmlTranslatorTest {
 
@@ -106,58 +124,84 @@ public class FxmlTranslatorTest {
                         List.<Statement>of(
                             // Pane pane = new Pane()
                             VariableDeclaration.instantiation("javafx.scene.layout.Pane", "pane"),
-                                // String string = String.valueOf("Enter answer")
-                                new VariableDeclaration("java.lang.String", "string",
-                                    new MethodCall(new ClassTarget("java.lang.String"), "valueOf", List.of(Literal.string("Enter answer")))
-                                ),
-                                    FxmlTranslator.setFxmlObjectCall("prompt", "string"),
+                                // this.prompt = "Enter answer"
+                                new FieldAssignment(ObjectTarget.thisTarget(), "prompt", Literal.string("Enter answer")),
                                 // TextField textField = new TextField()
                                 VariableDeclaration.instantiation("javafx.scene.control.TextField", "textField"),
-                                FxmlTranslator.setFxmlObjectCall("answerInput", "textField"),
+                                idFieldAssignment("answerInput", "textField"),
                                     // textField.setId("answerInput")
                                     new MethodCall("textField", "setId", Literal.string("answerInput")),
+                                    // textField.setText(this.prompt)
+                                    new MethodCall("textField", "setPromptText", new VariableExpression("this.prompt")),
                                     // textField.setOnAction((event) -> hash_onAnswerInput(event))
                                     new MethodCall("textField", "setOnAction",
                                         new LambdaMethodReference(new ExpressionTarget("this.controllerHelper"), "onAnswerInput")
                                     ),
-                                    // textField.setText(getFxmlObject("prompt"))
-                                    new MethodCall("textField", "setPromptText", FxmlTranslator.getFxmlObjectCall("prompt")),
-                                // Color color = new Color(1.0, 0.0, 0.0, 1.0)
-                                new VariableDeclaration("javafx.scene.paint.Color", "color",
-                                    new ConstructorCall(QName.valueOf("javafx.scene.paint.Color"), List.of(
-                                        new Literal("1.0", Double.TYPE),
-                                        new Literal("0.0", Double.TYPE),
-                                        new Literal("0.0", Double.TYPE),
-                                        new Literal("1", Double.TYPE)
-                                    ))
-                                ),
-                                FxmlTranslator.setFxmlObjectCall("red", "color"),
+                                // this.red = RED
+                                idFieldAssignment("red", "RED"),
                                 // Label label = new Label()
                                 VariableDeclaration.instantiation("javafx.scene.control.Label", "label"),
-                                FxmlTranslator.setFxmlObjectCall("label1", "label"),
+                                idFieldAssignment("label1", "label"),
                                     // label.setId("label1")
                                     new MethodCall("label", "setId", Literal.string("label1")),
                                     // label.setText("Hi!")
                                     new MethodCall("label", "setText", Literal.string("Hi!")),
                                     // pane.getChildren().add(label)
                                     new MethodCall(new MethodCall("pane", "getChildren"), "add", new VariableExpression("label")),
-                                    // pane.getChildren().add(getFxmlObject("answerInput"))
-                                    new MethodCall(new MethodCall("pane", "getChildren"), "add", FxmlTranslator.getFxmlObjectCall("answerInput")),
+                                    // pane.getChildren().add(this.answerInput)
+                                    new MethodCall(new MethodCall("pane", "getChildren"), "add", new VariableExpression("this.answerInput")),
                                 VariableDeclaration.instantiation("javafx.scene.shape.Rectangle", "rectangle"),
-                                    // rectangle.setFill(red)
-                                    new MethodCall("rectangle", "setFill", FxmlTranslator.getFxmlObjectCall("red")),
+                                    // rectangle.setFill(this.red)
+                                    new MethodCall("rectangle", "setFill", new VariableExpression("this.red")),
                                     // pane.getChildren().add(rectangle)
                                     new MethodCall(new MethodCall("pane", "getChildren"), "add", new VariableExpression("rectangle")),
                                 new Return(new VariableExpression("pane"))
                         )
                     ),
+                    // private static final Color RED = new Color(1.0, 0.0, 0.0, 1.0)
+                    new VariableDeclaration("private static final", TypeRef.valueOf("javafx.scene.paint.Color"), "RED",
+                        new ConstructorCall(QName.valueOf("javafx.scene.paint.Color"), List.of(
+                            new Literal("1.0", Double.TYPE),
+                            new Literal("0.0", Double.TYPE),
+                            new Literal("0.0", Double.TYPE),
+                            new Literal("1", Double.TYPE)
+                        ))
+                    ),
+                    // private java.lang.String prompt; public java.lang.String getPrompt() { return this.prompt; } ...
+                    new VariableDeclaration("private", TypeRef.valueOf("java.lang.String"), "prompt", null),
+                    idGetter("getPrompt", "java.lang.String", "prompt"),
+                    new VariableDeclaration("private", TypeRef.valueOf("javafx.scene.control.TextField"), "answerInput", null),
+                    idGetter("getAnswerInput", "javafx.scene.control.TextField", "answerInput"),
+                    new VariableDeclaration("private", TypeRef.valueOf("javafx.scene.paint.Color"), "red", null),
+                    idGetter("getRed", "javafx.scene.paint.Color", "red"),
+                    new VariableDeclaration("private", TypeRef.valueOf("javafx.scene.control.Label"), "label1", null),
+                    idGetter("getLabel1", "javafx.scene.control.Label", "label1"),
+                    // if ("prompt".equals(id)) { return (T) this.prompt; } ... return super.getFxmlObject(id);
+                    new MethodDeclaration("@SuppressWarnings(\"unchecked\") public <T>", "getFxmlObject", TypeRef.valueOf("T"), List.of(
+                        VariableDeclaration.parameter(TypeRef.valueOf("java.lang.String"), "id")
+                    ), List.of(
+                        idObjectIf("prompt"),
+                        idObjectIf("answerInput"),
+                        idObjectIf("red"),
+                        idObjectIf("label1"),
+                        new Return(new MethodCall(new ExpressionTarget("super"), "getFxmlObject", new VariableExpression("id")))
+                    )),
+                    // this.putFxmlObject(namespace, "prompt", this.prompt) ...
+                    new MethodDeclaration("protected", "putFxmlObjects", null, List.of(
+                        VariableDeclaration.parameter(TypeRef.valueOf("java.util.Map<String, Object>"), "namespace")
+                    ), List.of(
+                        putFxmlObjectCall("prompt"),
+                        putFxmlObjectCall("answerInput"),
+                        putFxmlObjectCall("red"),
+                        putFxmlObjectCall("label1")
+                    )),
                     new MethodDeclaration("protected", "createController", new TypeRef(new QName("no.hal.fxml.translator", "FxmlTranslatorTest.Controller")), null, List.of(
                         new Return(new ConstructorCall(new QName("no.hal.fxml.translator", "FxmlTranslatorTest.Controller")))
                     )),
                     new VariableDeclaration("private", new TypeRef(new QName("no.hal.fxml.translator", "FxmlTranslatorTest.ControllerHelper")), "controllerHelper", null),
                     new MethodDeclaration("protected", "initializeController", null, null, List.of(
                         new FieldAssignment(ObjectTarget.thisTarget(), "controllerHelper", new ConstructorCall(new QName("no.hal.fxml.translator", "FxmlTranslatorTest.ControllerHelper"), List.of(
-                            new MethodCall(ObjectTarget.thisTarget(), "getNamespace"),
+                            new VariableExpression("this"),
                             new VariableExpression("this.controller"))
                         )),
                         new MethodCall(new ExpressionTarget("this.controllerHelper"), "initializeController")
@@ -165,8 +209,418 @@ public class FxmlTranslatorTest {
             )
        ));
     }
-}
 
-/*
+    private static FieldAssignment idFieldAssignment(String id, String variableName) {
+        return new FieldAssignment(ObjectTarget.thisTarget(), id, new VariableExpression(variableName));
+    }
+
+    private static MethodDeclaration idGetter(String methodName, String typeName, String id) {
+        return new MethodDeclaration("public", methodName, TypeRef.valueOf(typeName), null, List.of(new Return(new VariableExpression("this." + id))));
+    }
+
+    private static If idObjectIf(String id) {
+        return new If(new MethodCall(new ExpressionTarget(Literal.string(id)), "equals", new VariableExpression("id")), List.of(
+            new Return(new Cast(TypeRef.valueOf("T"), new VariableExpression("this." + id)))
+        ));
+    }
+
+    private static MethodCall putFxmlObjectCall(String id) {
+        return new MethodCall(ObjectTarget.thisTarget(), "putFxmlObject", List.of(new VariableExpression("namespace"), Literal.string(id), new VariableExpression("this." + id)));
+    }
+
+    @Test
+    public void testJaninoCompile() throws Exception {
+        // FxmlTranslatorAppTest compiles generated loaders with janino, which doesn't support all of Java's syntax
+        var fxmlDoc = FxmlParser.parseFxml("""
+            <?import javafx.scene.control.*?>
+            <?import javafx.scene.layout.*?>
+            <Pane xmlns:fx="http://javafx.com/fxml">
+                <fx:define>
+                    <TextField fx:id="answerInput"/>
+                </fx:define>
+                <Label fx:id="label1" text="Hi!"/>
+                <fx:reference source="answerInput"/>
+            </Pane>
+            """);
+        var classDeclaration = FxmlTranslator.translateFxml(fxmlDoc, className, getClass().getClassLoader(), new FxmlTranslator.Config(false, false, true));
+        var source = JavaCode.toJavaSource(classDeclaration);
+        Assertions.assertTrue(source.contains("pane.getChildren().add(this.answerInput);"), source);
+        var compiler = CompilerFactoryFactory.getDefaultCompilerFactory(getClass().getClassLoader()).newCompiler();
+        compiler.setClassFileCreator(new MapResourceCreator(new HashMap<>()));
+        compiler.compile(new Resource[] { new StringResource("no/hal/fxml/translator/TestOutput.java", source) });
+    }
+
+    private static String FXML_STREAMING_SAMPLE = """
+        <?import javafx.scene.control.Label?>
+        <?import javafx.scene.control.TextField?>
+        <?import javafx.scene.layout.Pane?>
+        <?import javafx.scene.layout.VBox?>
+        <?import javafx.scene.paint.Color?>
+        <?import javafx.scene.shape.Rectangle?>
+        <Pane xmlns:fx="http://javafx.com/fxml" fx:controller="no.hal.fxml.translator.FxmlTranslatorTest$Controller">
+            <fx:define>
+                <String fx:id="prompt" fx:value="Enter answer"/>
+                <Color fx:id="red" red="1.0" green="0.0" blue="0.0"/>
+            </fx:define>
+            <children>
+                <Label fx:id="label1"><text>Hi!</text></Label>
+                <VBox>
+                    <TextField fx:id="answerInput" promptText="$prompt" onAction="#onAnswerInput"/>
+                    <Rectangle fill="$red"/>
+                </VBox>
+                <fx:reference source="answerInput"/>
+            </children>
+        </Pane>
+        """;
+
+    @Test
+    public void testStreamingTranslation() throws Exception {
+        FxmlTranslator.Config config = new FxmlTranslator.Config(true, true, false);
+        var classDeclaration = FxmlTranslator.translateFxml(FXML_STREAMING_SAMPLE, className, getClass().getClassLoader(), config);
+        var expected = JavaCode.toJavaSource(classDeclaration);
+        var actual = new StringBuilder();
+        FxmlTranslator.translateFxml(new StringReader(FXML_STREAMING_SAMPLE), className, getClass().getClassLoader(), config, actual);
+        // imports are added in a different order
+        Assertions.assertEquals(expected.lines().sorted().toList(), actual.toString().lines().sorted().toList(), actual.toString());
+        Assertions.assertTrue(actual.indexOf("vBox.getChildren().add(textField)") < actual.indexOf("Rectangle rectangle"));
+    }
+
+    @Test
+    public void testSplitBuildMethod(@TempDir Path outputDir) throws Exception {
+        // 2000 rows of 9 labels, about 20000 elements
+        var fxml = new StringBuilder("""
+            <?import javafx.scene.layout.*?>
+            <?import javafx.scene.control.*?>
+            <VBox xmlns:fx="http://javafx.com/fxml">
+            """);
+        for (int row = 0; row < 2000; row++) {
+            fxml.append("<HBox>");
+            for (int column = 0; column < 9; column++) {
+                fxml.append("<Label text=\"%s,%s\"/>".formatted(row, column));
+            }
+            fxml.append("</HBox>\n");
+        }
+        fxml.append("</VBox>");
+        var fxmlDoc = FxmlParser.parseFxml(fxml.toString());
+        var classDeclaration = FxmlTranslator.translateFxml(fxmlDoc, className, getClass().getClassLoader(), new FxmlTranslator.Config(false, true, false));
+
+        var codeSizes = methodCodeSizes(compile(classDeclaration, outputDir));
+        Assertions.assertTrue(codeSizes.keySet().stream().filter(name -> name.startsWith("build")).count() > 2, codeSizes.toString());
+        // together too large for one method
+        Assertions.assertTrue(codeSizes.values().stream().mapToInt(Integer::intValue).sum() > 8000, codeSizes.toString());
+        for (var codeSize : codeSizes.entrySet()) {
+            Assertions.assertTrue(codeSize.getValue() < 8000, codeSize.toString());
+        }
+    }
+
+    @Test
+    public void testStaticProperties(@TempDir Path outputDir) throws Exception {
+        var fxmlDoc = FxmlParser.parseFxml("""
+            <?import javafx.scene.layout.*?>
+            <?import javafx.scene.control.*?>
+            <?import javafx.geometry.Insets?>
+            <GridPane xmlns:fx="http://javafx.com/fxml">
+                <Label text="Name" GridPane.columnIndex="1" GridPane.hgrow="ALWAYS">
+                    <GridPane.rowIndex>2</GridPane.rowIndex>
+                    <GridPane.margin><Insets topRightBottomLeft="5"/></GridPane.margin>
+                </Label>
+                <AnchorPane>
+                    <Button AnchorPane.topAnchor="10" maxWidth="Infinity"/>
+                </AnchorPane>
+            </GridPane>
+            """);
+        var classDeclaration = FxmlTranslator.translateFxml(fxmlDoc, className, getClass().getClassLoader(), new FxmlTranslator.Config(false, true, false));
+        var source = JavaCode.toJavaSource(classDeclaration);
+        for (var statement : List.of(
+            "GridPane.setColumnIndex(label, 1);",
+            "GridPane.setHgrow(label, Priority.ALWAYS);",
+            "GridPane.setRowIndex(label, 2);",
+            "GridPane.setMargin(label, INSETS);",
+            "AnchorPane.setTopAnchor(button, 10.0);",
+            "button.setMaxWidth(Double.POSITIVE_INFINITY);"
+        )) {
+            Assertions.assertTrue(source.contains(statement), statement + " not in\n" + source);
+        }
+        compile(classDeclaration, outputDir);
+    }
+
+    @Test
+    public void testBindings(@TempDir Path outputDir) throws Exception {
+        var fxmlDoc = FxmlParser.parseFxml("""
+            <?import javafx.scene.layout.*?>
+            <?import javafx.scene.control.*?>
+            <VBox xmlns:fx="http://javafx.com/fxml">
+                <Slider fx:id="slider"/>
+                <TextField fx:id="textField"/>
+                <Label text="${textField.text}" prefWidth="${slider.value * 2 + 10}" visible="${slider.value &gt; 0 &amp;&amp; textField.text != ''}"/>
+                <Label text="${'Value: ' + slider.value}" disable="${!textField.editable}" prefHeight="${textField.font.size}"/>
+            </VBox>
+            """);
+        var classDeclaration = FxmlTranslator.translateFxml(fxmlDoc, className, getClass().getClassLoader(), new FxmlTranslator.Config(false, true, false));
+        var source = JavaCode.toJavaSource(classDeclaration);
+        for (var statement : List.of(
+            "label.textProperty().bind(this.textField.textProperty());",
+            "label.prefWidthProperty().bind(Bindings.createObjectBinding(() -> ((((double) this.slider.valueProperty().getValue()) * 2) + 10), this.slider.valueProperty()));",
+            "label.visibleProperty().bind(Bindings.createObjectBinding(() -> ((((double) this.slider.valueProperty().getValue()) > 0) && !(Objects.equals(this.textField.textProperty().getValue(), \"\"))), this.slider.valueProperty(), this.textField.textProperty()));",
+            "label1.textProperty().bind(Bindings.createObjectBinding(() -> (\"Value: \" + ((double) this.slider.valueProperty().getValue())), this.slider.valueProperty()));",
+            "label1.disableProperty().bind(Bindings.createObjectBinding(() -> !(((boolean) this.textField.editableProperty().getValue())), this.textField.editableProperty()));",
+            "label1.prefHeightProperty().bind(this.textField.fontProperty().map(value -> value.getSize()));"
+        )) {
+            Assertions.assertTrue(source.contains(statement), statement + " not in\n" + source);
+        }
+        compile(classDeclaration, outputDir);
+    }
 
-*/
\ No newline at end of file
+    @Test
+    public void testBindingTypes(@TempDir Path outputDir) throws Exception {
+        var fxmlDoc = FxmlParser.parseFxml("""
+            <?import javafx.scene.layout.*?>
+            <?import javafx.scene.control.*?>
+            <VBox xmlns:fx="http://javafx.com/fxml">
+                <Slider fx:id="slider"/>
+                <TextField fx:id="textField" prefColumnCount="${slider.value * 2}"/>
+                <Label fx:id="label"/>
+                <CheckBox selected="${textField.text == label.text}" disable="${textField.text != label.text}"/>
+            </VBox>
+            """);
+        var classDeclaration = FxmlTranslator.translateFxml(fxmlDoc, className, getClass().getClassLoader(), new FxmlTranslator.Config(false, true, false));
+        var source = JavaCode.toJavaSource(classDeclaration);
+        for (var statement : List.of(
+            // an IntegerProperty can be bound to any number, and truncates it, like with FXMLLoader
+            "textField.prefColumnCountProperty().bind(Bindings.createObjectBinding(() -> (((double) this.slider.valueProperty().getValue()) * 2), this.slider.valueProperty()));",
+            // objects are compared with equals
+            "checkBox.selectedProperty().bind(Bindings.createObjectBinding(() -> Objects.equals(this.textField.textProperty().getValue(), this.label.textProperty().getValue()), this.textField.textProperty(), this.label.textProperty()));",
+            "checkBox.disableProperty().bind(Bindings.createObjectBinding(() -> !(Objects.equals(this.textField.textProperty().getValue(), this.label.textProperty().getValue())), this.textField.textProperty(), this.label.textProperty()));"
+        )) {
+            Assertions.assertTrue(source.contains(statement), statement + " not in\n" + source);
+        }
+        compile(classDeclaration, outputDir);
+    }
+
+    @Test
+    public void testBindingErrors() throws Exception {
+        var classLoader = getClass().getClassLoader();
+        var config = new FxmlTranslator.Config(false, true, false);
+        var fxml = """
+            <?import javafx.scene.layout.*?>
+            <?import javafx.scene.control.*?>
+            <VBox xmlns:fx="http://javafx.com/fxml">
+                %s
+            </VBox>
+            """;
+        // the slider isn't set when the label's text is bound
+        var forwardException = Assertions.assertThrows(IllegalArgumentException.class, () ->
+            FxmlTranslator.translateFxml(FxmlParser.parseFxml(fxml.formatted("<Label text=\"${slider.value}\"/><Slider fx:id=\"slider\"/>")), className, classLoader, config)
+        );
+        Assertions.assertTrue(forwardException.getMessage().contains("Id slider in binding expression slider.value is defined after it's used"), forwardException.getMessage());
+        var unknownException = Assertions.assertThrows(IllegalArgumentException.class, () ->
+            FxmlTranslator.translateFxml(FxmlParser.parseFxml(fxml.formatted("<Label text=\"${slider.value}\"/>")), className, classLoader, config)
+        );
+        Assertions.assertTrue(unknownException.getMessage().contains("No field for id slider"), unknownException.getMessage());
+        // a boolean can't be bound to a number
+        var typeException = Assertions.assertThrows(IllegalArgumentException.class, () ->
+            FxmlTranslator.translateFxml(FxmlParser.parseFxml(fxml.formatted("<Slider fx:id=\"slider\"/><Label visible=\"${slider.value * 2}\"/>")), className, classLoader, config)
+        );
+        Assertions.assertTrue(typeException.getMessage().contains("Can't bind visible"), typeException.getMessage());
+        var notNumberException = Assertions.assertThrows(IllegalArgumentException.class, () ->
+            FxmlTranslator.translateFxml(FxmlParser.parseFxml(fxml.formatted("<Label fx:id=\"label\"/><Label prefWidth=\"${label.text * 2}\"/>")), className, classLoader, config)
+        );
+        Assertions.assertTrue(notNumberException.getMessage().contains("Not a number"), notNumberException.getMessage());
+    }
+
+    @Test
+    public void testConstants(@TempDir Path outputDir) throws Exception {
+        var fxmlDoc = FxmlParser.parseFxml("""
+            <?import javafx.scene.layout.*?>
+            <?import javafx.scene.control.*?>
+            <?import javafx.scene.paint.*?>
+            <?import javafx.scene.text.*?>
+            <?import javafx.geometry.*?>
+            <VBox xmlns:fx="http://javafx.com/fxml">
+                <fx:define>
+                    <String fx:id="fontName" fx:value="Arial"/>
+                </fx:define>
+                <padding><Insets top="5" right="5" bottom="5" left="5"/></padding>
+                <Label text="$fontName" textFill="red">
+                    <font><Font name="Arial" size="12"/></font>
+                    <VBox.margin><Insets top="5" right="5" bottom="5" left="5"/></VBox.margin>
+                </Label>
+                <Label textFill="red">
+                    <font><Font name="$fontName" size="12"/></font>
+                </Label>
+                <Label><textFill><Color fx:constant="BLUE"/></textFill></Label>
+            </VBox>
+            """);
+        var classDeclaration = FxmlTranslator.translateFxml(fxmlDoc, className, getClass().getClassLoader(), new FxmlTranslator.Config(false, true, false));
+        var source = JavaCode.toJavaSource(classDeclaration);
+        for (var statement : List.of(
+            "this.fontName = \"Arial\";",
+            "vBox.setPadding(INSETS);",
+            "VBox.setMargin(label, INSETS);",
+            "label.setTextFill(PAINT);",
+            "label1.setTextFill(PAINT);",
+            "label.setFont(FONT);",
+            // not constant
+            "Font font = new Font(this.fontName, 12);",
+            "label2.setTextFill(javafx.scene.paint.Color.BLUE);",
+            "private static final Insets INSETS = new Insets(5, 5, 5, 5);",
+            "private static final Paint PAINT = Paint.valueOf(\"red\");",
+            "private static final Font FONT = new Font(\"Arial\", 12);"
+        )) {
+            Assertions.assertTrue(source.contains(statement), statement + " not in\n" + source);
+        }
+        // shared
+        Assertions.assertFalse(source.contains("INSETS2"), source);
+        compile(classDeclaration, outputDir);
+    }
+
+    @Test
+    public void testLazySubtrees(@TempDir Path outputDir) throws Exception {
+        var fxml = """
+            <?import javafx.scene.layout.*?>
+            <?import javafx.scene.control.*?>
+            <VBox xmlns:fx="http://javafx.com/fxml" %s>
+                <TabPane>
+                    <Tab text="General"><Label fx:id="generalLabel" text="General"/></Tab>
+                    <Tab text="Advanced"><content><VBox visible="false"><Label text="Hidden"/></VBox></content></Tab>
+                </TabPane>
+                <TitledPane text="More" expanded="false"><Label text="More"/></TitledPane>
+                <Label text="Eager"/>
+            </VBox>
+            """;
+        var config = new FxmlTranslator.Config(false, true, false, false, FxmlTranslator.DEFAULT_METHOD_SIZE_BUDGET, true);
+        var classDeclaration = FxmlTranslator.translateFxml(FxmlParser.parseFxml(fxml.formatted("")), className, getClass().getClassLoader(), config);
+        var source = JavaCode.toJavaSource(classDeclaration);
+        for (var statement : List.of(
+            "this.buildWhen(tab.selectedProperty(), () -> this.build1(fxLoaderContext, tab));",
+            "this.buildWhen(tab1.selectedProperty(), () -> this.build3(fxLoaderContext, tab1));",
+            "this.buildWhen(vBox1.visibleProperty(), () -> this.build2(fxLoaderContext, vBox1));",
+            "this.buildWhen(titledPane.expandedProperty(), () -> this.build4(fxLoaderContext, titledPane));",
+            "private void build1(FxLoaderContext fxLoaderContext, Tab tab) {",
+            "this.generalLabel = label;",
+            "tab.setContent(label);"
+        )) {
+            Assertions.assertTrue(source.contains(statement), statement + " not in\n" + source);
+        }
+        // the condition is set before the subtree's build is deferred, and other children are built as usual
+        Assertions.assertTrue(source.indexOf("titledPane.setExpanded(false);") < source.indexOf("this.buildWhen(titledPane"));
+        Assertions.assertTrue(source.contains("vBox.getChildren().add(label3);"));
+        compile(classDeclaration, outputDir);
+        // with a controller, objects of subtrees built after loading are injected
+        var controllerClassDeclaration = FxmlTranslator.translateFxml(FxmlParser.parseFxml(fxml.formatted("fx:controller=\"no.hal.fxml.translator.FxmlTranslatorTest$Controller\"")), className, getClass().getClassLoader(), config);
+        Assertions.assertTrue(JavaCode.toJavaSource(controllerClassDeclaration).contains("this.controllerHelper.injectFxmlObjects();"));
+        // a subtree with ids that are referenced outside it is built when loaded, since they're needed then
+        var referencedFxml = """
+            <?import javafx.scene.layout.*?>
+            <?import javafx.scene.control.*?>
+            <VBox xmlns:fx="http://javafx.com/fxml">
+                <TabPane>
+                    <Tab text="General"><Label text="General"/></Tab>
+                    <Tab text="Advanced"><Slider fx:id="slider"/></Tab>
+                </TabPane>
+                <Slider value="${slider.value}"/>
+                <HBox><fx:reference source="slider"/></HBox>
+            </VBox>
+            """;
+        var referencedClassDeclaration = FxmlTranslator.translateFxml(FxmlParser.parseFxml(referencedFxml), className, getClass().getClassLoader(), config);
+        var referencedSource = JavaCode.toJavaSource(referencedClassDeclaration);
+        Assertions.assertTrue(referencedSource.contains("this.buildWhen(tab.selectedProperty(), () -> this.build1(fxLoaderContext, tab));"), referencedSource);
+        Assertions.assertFalse(referencedSource.contains("this.buildWhen(tab1."), referencedSource);
+        Assertions.assertTrue(referencedSource.indexOf("this.slider = slider;") < referencedSource.indexOf("this.slider.valueProperty()"), referencedSource);
+        compile(referencedClassDeclaration, outputDir);
+    }
+
+    public static class NamespaceController {
+    }
+
+    // written before helpers got the FxLoader constructor
+    public static class NamespaceControllerHelper extends AbstractFxControllerHelper<NamespaceController> {
+
+        public NamespaceControllerHelper(Map<String, Object> namespace, NamespaceController controller) {
+            super(namespace, controller);
+        }
+
+        public void initializeController() {
+        }
+    }
+
+    @Test
+    public void testControllerHelperConstructor() throws Exception {
+        var fxml = """
+            <?import javafx.scene.control.*?>
+            <Label xmlns:fx="http://javafx.com/fxml" fx:controller="no.hal.fxml.translator.FxmlTranslatorTest$%s"/>
+            """;
+        var config = new FxmlTranslator.Config(false, true, false);
+        // helpers without the FxLoader constructor are given the namespace
+        var namespaceSource = JavaCode.toJavaSource(FxmlTranslator.translateFxml(FxmlParser.parseFxml(fxml.formatted("NamespaceController")), className, getClass().getClassLoader(), config));
+        Assertions.assertTrue(namespaceSource.contains("this.controllerHelper = new FxmlTranslatorTest.NamespaceControllerHelper(this.getNamespace(), "), namespaceSource);
+        // helpers that are generated in the same compilation, aren't found, and are given the loader
+        var loaderSource = JavaCode.toJavaSource(FxmlTranslator.translateFxml(FxmlParser.parseFxml(fxml.formatted("Controller")), className, getClass().getClassLoader(), config));
+        Assertions.assertTrue(loaderSource.contains("this.controllerHelper = new FxmlTranslatorTest.ControllerHelper(this, "), loaderSource);
+    }
+
+    @Test
+    public void testLocations(@TempDir Path outputDir) throws Exception {
+        var fxmlDoc = FxmlParser.parseFxml("""
+            <?import javafx.scene.layout.*?>
+            <?import javafx.scene.control.*?>
+            <?import javafx.scene.image.*?>
+            <VBox xmlns:fx="http://javafx.com/fxml" stylesheets="@../style.css">
+                <ImageView><Image url="@images/icon.png"/></ImageView>
+                <ImageView><Image url="@./images/icon.png"/></ImageView>
+                <ImageView><Image url="@/icon.png"/></ImageView>
+            </VBox>
+            """);
+        var classDeclaration = FxmlTranslator.translateFxml(fxmlDoc, className, getClass().getClassLoader(), new FxmlTranslator.Config(false, true, false));
+        var source = JavaCode.toJavaSource(classDeclaration);
+        for (var statement : List.of(
+            "vBox.getStylesheets().add(STYLE_CSS_LOCATION);",
+            "Image image = new Image(ICON_PNG_LOCATION);",
+            "Image image1 = new Image(ICON_PNG_LOCATION);",
+            "Image image2 = new Image(ICON_PNG_LOCATION2);",
+            "private static final String STYLE_CSS_LOCATION = getResourceLocation(TestOutput.class, \"/no/hal/fxml/style.css\");",
+            "private static final String ICON_PNG_LOCATION = getResourceLocation(TestOutput.class, \"/no/hal/fxml/translator/images/icon.png\");",
+            "private static final String ICON_PNG_LOCATION2 = getResourceLocation(TestOutput.class, \"/icon.png\");"
+        )) {
+            Assertions.assertTrue(source.contains(statement), statement + " not in\n" + source);
+        }
+        compile(classDeclaration, outputDir);
+    }
+
+    // compiles the class into the output directory, and returns the class file
+    private Path compile(ClassDeclaration classDeclaration, Path outputDir) throws IOException {
+        var sourceFile = outputDir.resolve("TestOutput.java");
+        Files.writeString(sourceFile, JavaCode.toJavaSource(classDeclaration));
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        int result = compiler.run(null, null, null, "-proc:none", "-classpath", System.getProperty("java.class.path"), "-d", outputDir.toString(), sourceFile.toString());
+        Assertions.assertEquals(0, result);
+        return outputDir.resolve("no/hal/fxml/translator/TestOutput.class");
+    }
+
+    // the size of each method's code, from the offset of its last instruction in the javap -c listing, e.g.
+    //   private void build1(...);
+    //     Code:
+    //        0: aload_2
+    //        ...
+    //     4711: return
+    private static Map<String, Integer> methodCodeSizes(Path classFile) {
+        var output = new StringWriter();
+        int result = java.util.spi.ToolProvider.findFirst("javap").orElseThrow().run(new PrintWriter(output), new PrintWriter(output), "-c", "-p", classFile.toString());
+        Assertions.assertEquals(0, result, output.toString());
+        Map<String, Integer> codeSizes = new HashMap<>();
+        var methodPattern = Pattern.compile("^  \\S.*?([\\w$]+)\\(.*\\);$");
+        var instructionPattern = Pattern.compile("^\\s+(\\d+): ");
+        String methodName = null;
+        for (var line : output.toString().lines().toList()) {
+            var methodMatcher = methodPattern.matcher(line);
+            var instructionMatcher = instructionPattern.matcher(line);
+            if (methodMatcher.matches()) {
+                methodName = methodMatcher.group(1);
+            } else if (methodName != null && instructionMatcher.find()) {
+                // the last instruction is a return or throw, of one byte
+                codeSizes.merge(methodName, Integer.parseInt(instructionMatcher.group(1)) + 1, Math::max);
+            }
+        }
+        return codeSizes;
+    }
+}
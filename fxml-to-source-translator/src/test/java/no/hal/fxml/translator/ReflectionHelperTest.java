@@ -10,7 +10,11 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import javafx.scene.control.Label;
+import javafx.scene.image.Image;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
 import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
 
 public class ReflectionHelperTest {
 
@@ -30,6 +34,14 @@ public class ReflectionHelperTest {
         Assertions.assertEquals(List.of("red", "green", "blue", "opacity"), new ArrayList<>(reflectionHelper.getNamedConstructorArgs(cons).keySet()));
     }
 
+    @Test
+    public void testGetNamedArgsConstructorForProperties() {
+        Constructor<?> cons = reflectionHelper.getNamedArgsConstructor(Image.class, List.of("url")).get();
+        Assertions.assertEquals(List.of("url"), new ArrayList<>(reflectionHelper.getNamedConstructorArgs(cons).keySet()));
+        cons = reflectionHelper.getNamedArgsConstructor(Image.class, List.of("url", "backgroundLoading")).get();
+        Assertions.assertEquals(List.of("url", "backgroundLoading"), new ArrayList<>(reflectionHelper.getNamedConstructorArgs(cons).keySet()));
+    }
+
     @Test
     public void testGetGetter() {
         Assertions.assertTrue(reflectionHelper.getGetter(Label.class, "text").isPresent());
@@ -43,6 +55,37 @@ public class ReflectionHelperTest {
         Assertions.assertFalse(reflectionHelper.getSetter(Label.class, "xyz").isPresent());
     }
 
+    @Test
+    public void testGetStaticSetter() {
+        Assertions.assertTrue(reflectionHelper.getStaticSetter(GridPane.class, "rowIndex", Label.class).isPresent());
+        Assertions.assertEquals(Integer.class, reflectionHelper.getStaticSetter(GridPane.class, "rowIndex", Label.class).get().getParameterTypes()[1]);
+        Assertions.assertFalse(reflectionHelper.getStaticSetter(GridPane.class, "rowIndex", String.class).isPresent());
+        Assertions.assertFalse(reflectionHelper.getStaticSetter(GridPane.class, "xyz", Label.class).isPresent());
+    }
+
+    @Test
+    public void testCoerceLiteral() {
+        Assertions.assertEquals("1", reflectionHelper.coerceLiteral("1", Integer.class));
+        Assertions.assertEquals("1", reflectionHelper.coerceLiteral("1", double.class));
+        Assertions.assertEquals("1.0", reflectionHelper.coerceLiteral("1", Double.class));
+        Assertions.assertEquals("1.5f", reflectionHelper.coerceLiteral("1.5", float.class));
+        Assertions.assertEquals("2L", reflectionHelper.coerceLiteral("2", long.class));
+        Assertions.assertEquals("Double.POSITIVE_INFINITY", reflectionHelper.coerceLiteral("Infinity", double.class));
+        Assertions.assertEquals("true", reflectionHelper.coerceLiteral("true", Boolean.class));
+        Assertions.assertEquals("ALWAYS", reflectionHelper.coerceLiteral("ALWAYS", Priority.class));
+        Assertions.assertThrows(NumberFormatException.class, () -> reflectionHelper.coerceLiteral("one", Integer.class));
+    }
+
+    @Test
+    public void testImmutableAndValueOf() {
+        Assertions.assertTrue(reflectionHelper.isImmutable(Color.class));
+        Assertions.assertFalse(reflectionHelper.isImmutable(Label.class));
+        Assertions.assertTrue(reflectionHelper.getValueOf(Paint.class).isPresent());
+        Assertions.assertFalse(reflectionHelper.getValueOf(Double.class).isPresent());
+        Assertions.assertFalse(reflectionHelper.getValueOf(Priority.class).isPresent());
+        Assertions.assertFalse(reflectionHelper.getValueOf(Label.class).isPresent());
+    }
+
     @Test
     public void testImplements() {
         Assertions.assertTrue(reflectionHelper.implementsList(ArrayList.class));